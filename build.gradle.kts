@@ -1,6 +1,7 @@
 plugins {
     id("java-library")
     id("org.allaymc.gradle.plugin") version "0.2.1"
+    id("me.champeau.jmh") version "0.7.3"
 }
 
 group = "org.allaymc.blocklocker"
@@ -26,4 +27,44 @@ allay {
 dependencies {
     compileOnly(group = "org.projectlombok", name = "lombok", version = "1.18.34")
     annotationProcessor(group = "org.projectlombok", name = "lombok", version = "1.18.34")
+    // Driver for storage.backend "sqlite"
+    implementation(group = "org.xerial", name = "sqlite-jdbc", version = "3.46.1.0")
+
+    testImplementation(platform("org.junit:junit-bom:5.11.3"))
+    testImplementation(group = "org.junit.jupiter", name = "junit-jupiter")
+    testRuntimeOnly(group = "org.junit.platform", name = "junit-platform-launcher")
+}
+
+configurations.named("testImplementation") {
+    // The Allay API is compileOnly for the plugin but needed on the test classpath
+    extendsFrom(configurations.compileOnly.get())
+}
+
+tasks.test {
+    useJUnitPlatform()
+}
+
+tasks.withType<Jar>().configureEach {
+    // The SQLite driver carries native libraries for every platform; keep the 64-bit server ones
+    exclude(
+        "org/sqlite/native/Linux-Android/**",
+        "org/sqlite/native/*/x86/**",
+        "org/sqlite/native/*/arm/**",
+        "org/sqlite/native/*/armv6/**",
+        "org/sqlite/native/*/armv7/**",
+        "org/sqlite/native/*/ppc64/**",
+        "org/sqlite/native/*/riscv64/**"
+    )
+}
+
+// Benchmarks live in src/jmh/java; run with ./gradlew jmh (results in build/results/jmh)
+configurations.named("jmhImplementation") {
+    // The Allay API is compileOnly for the plugin but needed to run the benchmarks
+    extendsFrom(configurations.compileOnly.get())
+}
+
+jmh {
+    jmhVersion = "1.37"
+    profilers = listOf("gc")
+    resultFormat = "JSON"
 }
@@ -0,0 +1,87 @@
+package org.allaymc.blocklocker.benchmark;
+
+import org.allaymc.blocklocker.data.Access;
+import org.allaymc.blocklocker.data.ProtectedBlock;
+import org.allaymc.blocklocker.data.TrustGroups;
+import org.allaymc.blocklocker.data.TrustSet;
+import org.allaymc.blocklocker.index.ProtectionIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The access check of the index, as run on every interaction, for the owner, a trusted
+ * player, a member of a group the block trusts and a stranger, with growing trust lists.
+ * Groups and owner-wide trust are resolved, as for real players.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AccessBenchmark {
+
+    @Param({"0", "10", "100"})
+    public int trusted;
+
+    private ProtectionIndex index;
+    private UUID owner;
+    private UUID trustedPlayer;
+    private UUID groupMember;
+    private UUID stranger;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(42);
+        owner = new UUID(random.nextLong(), random.nextLong());
+        stranger = new UUID(random.nextLong(), random.nextLong());
+        groupMember = new UUID(random.nextLong(), random.nextLong());
+        index = new ProtectionIndex();
+        TrustGroups.Group group = index.getTrustGroups().create(owner, "friends");
+        index.getTrustGroups().setMember(group.id(), groupMember, true);
+        List<UUID> trustedPlayers = new ArrayList<>();
+        for (int i = 0; i < trusted; i++) {
+            trustedPlayers.add(new UUID(random.nextLong(), random.nextLong()));
+        }
+        trustedPlayer = trustedPlayers.isEmpty() ? owner : trustedPlayers.get(trustedPlayers.size() - 1);
+        trustedPlayers.add(group.id());
+        index.put(new ProtectedBlock(BenchmarkData.WORLD, BenchmarkData.DIMENSION, 0, 64, 0, owner, "owner",
+                0, TrustSet.of(trustedPlayers), false, false, ProtectedBlock.NO_MEMBERS));
+    }
+
+    @Benchmark
+    public Access accessOwner() {
+        return index.access(BenchmarkData.WORLD, BenchmarkData.DIMENSION, 0, 64, 0, owner);
+    }
+
+    @Benchmark
+    public Access accessTrusted() {
+        return index.access(BenchmarkData.WORLD, BenchmarkData.DIMENSION, 0, 64, 0, trustedPlayer);
+    }
+
+    @Benchmark
+    public Access accessGroupMember() {
+        return index.access(BenchmarkData.WORLD, BenchmarkData.DIMENSION, 0, 64, 0, groupMember);
+    }
+
+    @Benchmark
+    public Access accessStranger() {
+        return index.access(BenchmarkData.WORLD, BenchmarkData.DIMENSION, 0, 64, 0, stranger);
+    }
+}
@@ -0,0 +1,108 @@
+package org.allaymc.blocklocker.benchmark;
+
+import org.allaymc.blocklocker.data.ProtectedBlock;
+import org.allaymc.blocklocker.data.TrustSet;
+import org.allaymc.blocklocker.index.BlockKeys;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Deterministic protection datasets shaped like a real server: players build bases,
+ * so protections come in clusters of many blocks per owner, and neighbouring bases
+ * overlap so that a chunk usually holds the blocks of a few owners.
+ */
+public final class BenchmarkData {
+
+    public static final String WORLD = "world";
+    public static final int DIMENSION = 0;
+
+    // Average protections per owner and the size of a base in chunks
+    private static final int BLOCKS_PER_OWNER = 250;
+    private static final int BASE_CHUNKS = 3;
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * A generated dataset: the protections and the owners that hold them.
+     */
+    public record Dataset(List<ProtectedBlock> blocks, UUID[] owners) {
+    }
+
+    /**
+     * Generate a dataset of the given size. The same seed always gives the same dataset.
+     */
+    public static Dataset generate(int count, long seed) {
+        Random random = new Random(seed);
+        int ownerCount = Math.max(1, count / BLOCKS_PER_OWNER);
+        UUID[] owners = new UUID[ownerCount];
+        int[] baseChunkX = new int[ownerCount];
+        int[] baseChunkZ = new int[ownerCount];
+
+        // Bases on a grid two chunks apart, so each 3x3 base overlaps its neighbours
+        int side = (int) Math.ceil(Math.sqrt(ownerCount));
+        for (int i = 0; i < ownerCount; i++) {
+            owners[i] = new UUID(random.nextLong(), random.nextLong());
+            baseChunkX[i] = (i % side - side / 2) * 2 + random.nextInt(2);
+            baseChunkZ[i] = (i / side - side / 2) * 2 + random.nextInt(2);
+        }
+
+        List<ProtectedBlock> blocks = new ArrayList<>(count);
+        Set<Long> used = new HashSet<>(count * 2);
+        long createdAt = 1_700_000_000_000L;
+        while (blocks.size() < count) {
+            int owner = random.nextInt(ownerCount);
+            int x = (baseChunkX[owner] << 4) + random.nextInt(BASE_CHUNKS << 4);
+            int z = (baseChunkZ[owner] << 4) + random.nextInt(BASE_CHUNKS << 4);
+            int y = 60 + random.nextInt(24);
+            // Every fifth container is a double chest reaching one block east
+            boolean pair = random.nextInt(5) == 0;
+            long position = BlockKeys.pack(x, y, z);
+            long member = BlockKeys.pack(x + 1, y, z);
+            if (!used.add(position)) {
+                continue;
+            }
+            if (pair && !used.add(member)) {
+                pair = false;
+            }
+
+            TrustSet trusted = TrustSet.EMPTY;
+            if (random.nextInt(4) == 0) {
+                // Trust a neighbour, as players in shared bases do
+                trusted = TrustSet.EMPTY.with(owners[(owner + 1) % ownerCount]);
+            }
+            blocks.add(new ProtectedBlock(WORLD, DIMENSION, x, y, z, owners[owner], "player" + owner,
+                    createdAt + blocks.size() * 1000L, trusted, false, false,
+                    pair ? new long[]{member} : ProtectedBlock.NO_MEMBERS));
+        }
+        return new Dataset(blocks, owners);
+    }
+
+    /**
+     * Lookup positions for a dataset: half of them hit a protection, a quarter miss inside
+     * the protected area and a quarter fall into the wilderness around it.
+     *
+     * @param count number of positions, must be a power of two
+     */
+    public static long[] queries(Dataset dataset, int count, long seed) {
+        Random random = new Random(seed);
+        List<ProtectedBlock> blocks = dataset.blocks();
+        long[] queries = new long[count];
+        for (int i = 0; i < count; i++) {
+            ProtectedBlock block = blocks.get(random.nextInt(blocks.size()));
+            queries[i] = switch (i & 3) {
+                case 0, 1 -> BlockKeys.pack(block.getX(), block.getY(), block.getZ());
+                case 2 -> BlockKeys.pack(block.getX() + random.nextInt(16) - 8, block.getY() + random.nextInt(8) - 4,
+                        block.getZ() + random.nextInt(16) - 8);
+                default -> BlockKeys.pack(block.getX() + 2000 + random.nextInt(1000), 64,
+                        block.getZ() + 2000 + random.nextInt(1000));
+            };
+        }
+        return queries;
+    }
+}
@@ -0,0 +1,117 @@
+package org.allaymc.blocklocker.benchmark;
+
+import org.allaymc.blocklocker.data.ProtectedBlock;
+import org.allaymc.blocklocker.index.ProtectionIndex;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Retained heap of the protection index with every region loaded, and of the owner
+ * index that is kept for all protections. Reported as auxiliary counters in bytes per
+ * protection next to the time to build the index. The generated dataset is dropped
+ * before measuring, so only what the index itself keeps is counted. With
+ * {@code mapped} the owner index lives in memory-mapped files and should cost next to
+ * no heap, while the resident rows read by access checks stay on the heap in both modes;
+ * {@code heapBytesPerProtection} is the sum, to compare the two modes directly.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class FootprintBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int protections;
+
+    @Param({"false", "true"})
+    public boolean mapped;
+
+    private Path tableFolder;
+
+    @Setup
+    public void setUp() throws IOException {
+        tableFolder = Files.createTempDirectory("blocklocker-owners");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(tableFolder)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    /**
+     * Bytes per protection measured in the last iteration.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+
+        public double residentBytesPerProtection;
+        public double ownerBytesPerProtection;
+        public double heapBytesPerProtection;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            residentBytesPerProtection = 0;
+            ownerBytesPerProtection = 0;
+            heapBytesPerProtection = 0;
+        }
+    }
+
+    @Benchmark
+    public ProtectionIndex build(Footprint footprint) throws IOException {
+        long before = usedHeap();
+        ProtectionIndex index = buildIndex();
+        long withOwners = usedHeap();
+        index.getOwners().clear();
+        long withoutOwners = usedHeap();
+        footprint.residentBytesPerProtection = (withoutOwners - before) / (double) protections;
+        footprint.ownerBytesPerProtection = (withOwners - withoutOwners) / (double) protections;
+        footprint.heapBytesPerProtection = (withOwners - before) / (double) protections;
+        return index;
+    }
+
+    // Separate method, so the dataset is unreachable once it returns
+    private ProtectionIndex buildIndex() throws IOException {
+        ProtectionIndex index = new ProtectionIndex();
+        if (mapped) {
+            index.getOwners().mapInto(tableFolder);
+        }
+        for (ProtectedBlock block : BenchmarkData.generate(protections, 42).blocks()) {
+            index.put(block);
+        }
+        return index;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
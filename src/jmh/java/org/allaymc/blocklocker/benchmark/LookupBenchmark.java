@@ -0,0 +1,81 @@
+package org.allaymc.blocklocker.benchmark;
+
+import org.allaymc.blocklocker.data.ProtectedBlock;
+import org.allaymc.blocklocker.index.BlockKeys;
+import org.allaymc.blocklocker.index.OwnedProtection;
+import org.allaymc.blocklocker.index.ProtectionIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookup costs behind ProtectionManager.getProtection, canAccess and getPlayerProtections,
+ * which delegate to the protection index and its owner index. The manager itself needs a
+ * running server, so the benchmarks call the index directly.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LookupBenchmark {
+
+    private static final int QUERY_COUNT = 1 << 16;
+
+    @Param({"10000", "100000", "1000000"})
+    public int protections;
+
+    private ProtectionIndex index;
+    private long[] queries;
+    private UUID[] players;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        BenchmarkData.Dataset dataset = BenchmarkData.generate(protections, 42);
+        index = new ProtectionIndex();
+        for (ProtectedBlock block : dataset.blocks()) {
+            index.put(block);
+        }
+        queries = BenchmarkData.queries(dataset, QUERY_COUNT, 7);
+        players = dataset.owners();
+    }
+
+    private long nextQuery() {
+        return queries[cursor++ & (QUERY_COUNT - 1)];
+    }
+
+    @Benchmark
+    public ProtectedBlock getProtection() {
+        long query = nextQuery();
+        return index.get(BenchmarkData.WORLD, BenchmarkData.DIMENSION,
+                BlockKeys.unpackX(query), BlockKeys.unpackY(query), BlockKeys.unpackZ(query));
+    }
+
+    @Benchmark
+    public boolean canAccess() {
+        long query = nextQuery();
+        return index.access(BenchmarkData.WORLD, BenchmarkData.DIMENSION,
+                BlockKeys.unpackX(query), BlockKeys.unpackY(query), BlockKeys.unpackZ(query),
+                players[cursor % players.length]).isAllowed();
+    }
+
+    @Benchmark
+    public List<OwnedProtection> getPlayerProtections() {
+        return index.getOwners().getOwnedBy(players[cursor++ % players.length]);
+    }
+}
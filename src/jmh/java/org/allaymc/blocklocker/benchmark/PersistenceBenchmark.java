@@ -0,0 +1,166 @@
+package org.allaymc.blocklocker.benchmark;
+
+import org.allaymc.blocklocker.config.BlockLockerConfig;
+import org.allaymc.blocklocker.data.ProtectedBlock;
+import org.allaymc.blocklocker.index.DimensionIndex;
+import org.allaymc.blocklocker.index.ProtectionIndex;
+import org.allaymc.blocklocker.index.Region;
+import org.allaymc.blocklocker.metrics.BlockLockerMetrics;
+import org.allaymc.blocklocker.storage.JournalStorage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.helpers.NOPLogger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Throughput and allocation of ProtectionManager.saveAll and loadData, which are
+ * JournalStorage.compact and JournalStorage.load plus loading every region.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class PersistenceBenchmark {
+
+    /**
+     * Open storage holding a generated dataset, with every region marked as changed before
+     * each save, as after a full import.
+     */
+    @State(Scope.Benchmark)
+    public static class Open {
+
+        @Param({"10000", "100000", "1000000"})
+        public int protections;
+
+        Path dataFolder;
+        ProtectionIndex index;
+        JournalStorage storage;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            dataFolder = Files.createTempDirectory("blocklocker-bench");
+            index = new ProtectionIndex();
+            storage = store(dataFolder, index, protections);
+        }
+
+        @Setup(Level.Invocation)
+        public void markAllDirty() {
+            for (DimensionIndex dimension : index.getDimensions()) {
+                for (Region region : dimension.getRegions()) {
+                    dimension.markDirty(region);
+                }
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            storage.close();
+            delete(dataFolder);
+        }
+    }
+
+    /**
+     * A generated dataset on disk with its storage closed, to be opened like on startup.
+     */
+    @State(Scope.Benchmark)
+    public static class Closed {
+
+        @Param({"10000", "100000", "1000000"})
+        public int protections;
+
+        Path dataFolder;
+
+        // Region coordinates of every region holding protections, x in the high and z in the low half
+        long[] regions;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            dataFolder = Files.createTempDirectory("blocklocker-bench");
+            ProtectionIndex index = new ProtectionIndex();
+            store(dataFolder, index, protections).close();
+            List<Long> occupied = new ArrayList<>();
+            for (DimensionIndex dimension : index.getDimensions()) {
+                for (Region region : dimension.getRegions()) {
+                    occupied.add(((long) region.getRegionX() << 32) | (region.getRegionZ() & 0xFFFFFFFFL));
+                }
+            }
+            regions = occupied.stream().mapToLong(Long::longValue).toArray();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            delete(dataFolder);
+        }
+    }
+
+    @Benchmark
+    public void saveAll(Open open) throws IOException {
+        open.storage.compact();
+    }
+
+    @Benchmark
+    public ProtectionIndex loadData(Closed closed) throws IOException {
+        ProtectionIndex loaded = new ProtectionIndex();
+        JournalStorage loading = new JournalStorage(closed.dataFolder, NOPLogger.NOP_LOGGER, loaded,
+                new BlockLockerMetrics(), config());
+        try {
+            loading.load();
+            for (long region : closed.regions) {
+                loading.ensureLoaded(BenchmarkData.WORLD, BenchmarkData.DIMENSION,
+                        (int) (region >> 32) << Region.SHIFT, (int) region << Region.SHIFT);
+            }
+        } finally {
+            loading.close();
+        }
+        return loaded;
+    }
+
+    // Open a fresh storage in a folder holding a generated dataset; the index is filled
+    // first, while it still holds every protection, and written by the load
+    private static JournalStorage store(Path dataFolder, ProtectionIndex index, int protections) throws IOException {
+        for (ProtectedBlock block : BenchmarkData.generate(protections, 42).blocks()) {
+            index.put(block);
+        }
+        JournalStorage storage = new JournalStorage(dataFolder, NOPLogger.NOP_LOGGER, index,
+                new BlockLockerMetrics(), config());
+        storage.load();
+        return storage;
+    }
+
+    private static BlockLockerConfig.Storage config() {
+        BlockLockerConfig.Storage config = new BlockLockerConfig.Storage();
+        // Regions must stay in memory for the whole run, there are no loaded chunks
+        config.setRegionEvictAfterSeconds(Integer.MAX_VALUE);
+        return config;
+    }
+
+    private static void delete(Path folder) throws IOException {
+        List<Path> files;
+        try (Stream<Path> stream = Files.walk(folder)) {
+            files = stream.sorted(Comparator.reverseOrder()).toList();
+        }
+        for (Path file : files) {
+            Files.deleteIfExists(file);
+        }
+    }
+}
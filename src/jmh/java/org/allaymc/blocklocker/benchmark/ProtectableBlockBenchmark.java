@@ -0,0 +1,61 @@
+package org.allaymc.blocklocker.benchmark;
+
+import org.allaymc.api.block.type.BlockType;
+import org.allaymc.blocklocker.util.ProtectableBlockTypes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The protectable block type check done on every lock attempt and chest placement
+ * (ProtectableBlockTypes.contains, which replaced BlockUtils.isProtectableBlock).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProtectableBlockBenchmark {
+
+    // Roughly the number of block types in the registry, and how many of them are protectable
+    private static final int BLOCK_TYPES = 1200;
+    private static final int PROTECTABLE_TYPES = 60;
+
+    private ProtectableBlockTypes protectableBlocks;
+    private BlockType<?>[] types;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        // Stand-in block types: the check only uses their identity
+        types = new BlockType<?>[BLOCK_TYPES];
+        for (int i = 0; i < BLOCK_TYPES; i++) {
+            types[i] = (BlockType<?>) Proxy.newProxyInstance(BlockType.class.getClassLoader(),
+                    new Class<?>[]{BlockType.class}, (proxy, method, args) -> null);
+        }
+        List<BlockType<?>> protectable = new ArrayList<>();
+        for (int i = 0; i < BLOCK_TYPES; i += BLOCK_TYPES / PROTECTABLE_TYPES) {
+            protectable.add(types[i]);
+        }
+        protectableBlocks = ProtectableBlockTypes.of(protectable);
+    }
+
+    @Benchmark
+    public boolean isProtectableBlock() {
+        return protectableBlocks.contains(types[cursor++ % BLOCK_TYPES]);
+    }
+}
@@ -5,9 +5,15 @@ import org.allaymc.api.plugin.Plugin;
 import org.allaymc.api.registry.Registries;
 import org.allaymc.api.server.Server;
 import org.allaymc.blocklocker.command.BlockLockerCommand;
+import org.allaymc.blocklocker.config.BlockLockerConfig;
+import org.allaymc.blocklocker.listener.AutomationListener;
 import org.allaymc.blocklocker.listener.BlockListener;
+import org.allaymc.blocklocker.listener.BulkChangeListener;
 import org.allaymc.blocklocker.listener.PlayerEventListener;
+import org.allaymc.blocklocker.listener.WorldEventListener;
 import org.allaymc.blocklocker.manager.ProtectionManager;
+import org.allaymc.blocklocker.metrics.MetricsReporter;
+import org.allaymc.blocklocker.util.ProtectableBlockTypes;
 
 /**
  * BlockLocker - A block protection and locking system for AllayMC servers.
@@ -21,9 +27,17 @@ public class BlockLockerPlugin extends Plugin {
     @Getter
     private static BlockLockerPlugin instance;
 
+    @Getter
+    private BlockLockerConfig config;
+
+    @Getter
+    private ProtectableBlockTypes protectableBlocks;
+
     @Getter
     private ProtectionManager protectionManager;
 
+    private MetricsReporter metricsReporter;
+
     @Override
     public void onLoad() {
         instance = this;
@@ -32,23 +46,60 @@ public class BlockLockerPlugin extends Plugin {
 
     @Override
     public void onEnable() {
+        // Load configuration
+        this.config = BlockLockerConfig.load(getPluginContainer().dataFolder().resolve("config.json"), pluginLogger);
+
+        // Resolve which block types can be locked
+        this.protectableBlocks = ProtectableBlockTypes.resolve(config.getProtectableBlocks(), pluginLogger);
+
         // Initialize protection manager
         this.protectionManager = new ProtectionManager(this);
 
+        // Publish runtime metrics over JMX and, if configured, to metrics.csv
+        this.metricsReporter = new MetricsReporter(protectionManager, getPluginContainer().dataFolder(),
+                pluginLogger, config.getMetrics());
+        metricsReporter.start();
+
         // Register commands
         Registries.COMMANDS.register(new BlockLockerCommand());
 
         // Register event listeners
-        Server.getInstance().getEventBus().registerListener(new BlockListener(protectionManager));
+        Server.getInstance().getEventBus().registerListener(new BlockListener(protectionManager, protectableBlocks));
         Server.getInstance().getEventBus().registerListener(new PlayerEventListener(this));
+        WorldEventListener worldListener = new WorldEventListener(protectionManager);
+        Server.getInstance().getEventBus().registerListener(worldListener);
+        Server.getInstance().getEventBus().registerListener(new AutomationListener(protectionManager, protectableBlocks));
+        Server.getInstance().getEventBus().registerListener(new BulkChangeListener(protectionManager));
+
+        // Expire protections of inactive owners a little every tick
+        Server.getInstance().getScheduler().scheduleRepeating(this, protectionManager.getExpirySweeper(), 1);
+
+        // Drop protections of blocks destroyed without a player breaking them, as their chunks load
+        Server.getInstance().getScheduler().scheduleRepeating(this, protectionManager.getChunkValidator(), 1);
+
+        // Run admin purges, transfers and wipes a slice per tick
+        Server.getInstance().getScheduler().scheduleRepeating(this, protectionManager.getBulkJobs(), 1);
+
+        // Once protection data is loaded, count the chunks that were loaded without us seeing it
+        Server.getInstance().getScheduler().scheduleRepeating(this, () -> {
+            if (protectionManager.isLoading()) {
+                return true;
+            }
+            worldListener.seedLoadedChunks();
+            return false;
+        }, 1);
 
         this.pluginLogger.info("BlockLocker has been enabled! Players can now lock their blocks.");
     }
 
     @Override
     public void onDisable() {
+        if (metricsReporter != null) {
+            metricsReporter.stop();
+        }
         if (protectionManager != null) {
-            protectionManager.saveAll();
+            // Drains the journal writer, then compacts so every changed region is written
+            protectionManager.shutdown();
         }
         this.pluginLogger.info("BlockLocker has been disabled.");
     }
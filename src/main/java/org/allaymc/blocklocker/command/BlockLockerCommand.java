@@ -7,18 +7,47 @@ import org.allaymc.api.permission.Tristate;
 import org.allaymc.api.player.Player;
 import org.allaymc.api.server.Server;
 import org.allaymc.blocklocker.BlockLockerPlugin;
-import org.allaymc.blocklocker.data.ProtectedBlock;
+import org.allaymc.blocklocker.config.BlockLockerConfig;
+import org.allaymc.blocklocker.data.TrustGroups;
+import org.allaymc.blocklocker.data.TrustSet;
+import org.allaymc.blocklocker.index.OwnedProtection;
+import org.allaymc.blocklocker.index.OwnerTable;
+import org.allaymc.blocklocker.manager.BulkJobs;
+import org.allaymc.blocklocker.manager.ExpirySweeper;
+import org.allaymc.blocklocker.manager.PlayerSession;
+import org.allaymc.blocklocker.manager.ProtectionLimits;
 import org.allaymc.blocklocker.manager.ProtectionManager;
+import org.allaymc.blocklocker.metrics.BlockLockerMetrics;
+import org.allaymc.blocklocker.metrics.LatencyHistogram;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.ToDoubleFunction;
 
 /**
  * Main command handler for BlockLocker plugin.
  */
 public class BlockLockerCommand extends Command {
 
+    private static final int PAGE_SIZE = 10;
+    private static final String[] FLAG_VALUES = {"on", "off"};
+    private static final String[] EXPIRE_ACTIONS = {"status", "dryrun", "run", "pause", "resume"};
+    private static final String[] GROUP_ACTIONS = {"list", "create", "delete", "add", "remove"};
+    private static final String GROUP_NAME_PATTERN = "[A-Za-z0-9_-]{1,16}";
+    private static final String GROUPS_UNREADABLE_MESSAGE =
+            "§cTrust groups cannot be changed right now: the saved groups could not be read. Ask an admin to check the server log.";
+    private static final DateTimeFormatter DATE_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd").withZone(ZoneId.systemDefault());
+
     public BlockLockerCommand() {
         super("blocklocker", "Block protection commands", "blocklocker.use");
         aliases.add("bl");
@@ -103,6 +132,121 @@ public class BlockLockerCommand extends Command {
                 return handleTrust(player, targetName, false, context);
             })
             .root()
+            // /blocklocker trustall <player>
+            .key("trustall")
+            .str("target")
+            .exec(context -> {
+                if (!(context.getSender() instanceof EntityPlayer player)) {
+                    context.getSender().sendMessage("§cThis command can only be used by players.");
+                    return context.fail();
+                }
+
+                if (player.hasPermission("blocklocker.use") != Tristate.TRUE) {
+                    player.sendMessage("§cYou don't have permission to use this command!");
+                    return context.fail();
+                }
+
+                String targetName = context.getResult(1);
+                return handleTrustEverywhere(player, targetName, true, context);
+            })
+            .root()
+            // /blocklocker untrustall <player>
+            .key("untrustall")
+            .str("target")
+            .exec(context -> {
+                if (!(context.getSender() instanceof EntityPlayer player)) {
+                    context.getSender().sendMessage("§cThis command can only be used by players.");
+                    return context.fail();
+                }
+
+                if (player.hasPermission("blocklocker.use") != Tristate.TRUE) {
+                    player.sendMessage("§cYou don't have permission to use this command!");
+                    return context.fail();
+                }
+
+                String targetName = context.getResult(1);
+                return handleTrustEverywhere(player, targetName, false, context);
+            })
+            .root()
+            // /blocklocker group [list|create|delete|add|remove] [name] [player]
+            .key("group")
+            .enums("action", "list", GROUP_ACTIONS)
+            .optional()
+            .str("name", "")
+            .optional()
+            .str("player", "")
+            .optional()
+            .exec(context -> {
+                if (!(context.getSender() instanceof EntityPlayer player)) {
+                    context.getSender().sendMessage("§cThis command can only be used by players.");
+                    return context.fail();
+                }
+
+                if (player.hasPermission("blocklocker.use") != Tristate.TRUE) {
+                    player.sendMessage("§cYou don't have permission to use this command!");
+                    return context.fail();
+                }
+
+                String action = context.getResult(1);
+                String groupName = context.getResult(2);
+                String targetName = context.getResult(3);
+                return handleGroup(player, action, groupName, targetName, context);
+            })
+            .root()
+            // /blocklocker trustgroup <group>
+            .key("trustgroup")
+            .str("group")
+            .exec(context -> {
+                if (!(context.getSender() instanceof EntityPlayer player)) {
+                    context.getSender().sendMessage("§cThis command can only be used by players.");
+                    return context.fail();
+                }
+
+                if (player.hasPermission("blocklocker.use") != Tristate.TRUE) {
+                    player.sendMessage("§cYou don't have permission to use this command!");
+                    return context.fail();
+                }
+
+                String groupName = context.getResult(1);
+                ProtectionManager manager = BlockLockerPlugin.getInstance().getProtectionManager();
+                TrustGroups.Group group = manager.getTrustGroups().find(player.getUniqueId(), groupName);
+                if (group == null) {
+                    player.sendMessage("§cYou have no group '" + groupName + "'. Create it with §f/blocklocker group create "
+                            + groupName + "§c.");
+                    return context.fail();
+                }
+                manager.enableTrustMode(player.getUniqueId(), group.id());
+                player.sendMessage("§aTrust mode enabled! Right-click a locked block to add or remove group "
+                        + group.name() + ".");
+                return context.success();
+            })
+            .root()
+            // /blocklocker flag <hoppers|redstone> <on|off>
+            .key("flag")
+            .enums("flag", "hoppers", PlayerSession.Flag.NAMES)
+            .enums("value", "on", FLAG_VALUES)
+            .exec(context -> {
+                if (!(context.getSender() instanceof EntityPlayer player)) {
+                    context.getSender().sendMessage("§cThis command can only be used by players.");
+                    return context.fail();
+                }
+
+                if (player.hasPermission("blocklocker.use") != Tristate.TRUE) {
+                    player.sendMessage("§cYou don't have permission to use this command!");
+                    return context.fail();
+                }
+
+                String flagName = context.getResult(1);
+                String value = context.getResult(2);
+                PlayerSession.Flag flag = PlayerSession.Flag.valueOf(flagName.toUpperCase(Locale.ROOT));
+                boolean enabled = value.equals("on");
+                ProtectionManager manager = BlockLockerPlugin.getInstance().getProtectionManager();
+                manager.enableFlagMode(player.getUniqueId(), flag, enabled);
+                player.sendMessage("§aFlag mode enabled! Right-click one of your locked blocks to turn "
+                        + flagName + " " + value + ".");
+                return context.success();
+            })
+            .root()
             // /blocklocker info
             .key("info")
             .exec(context -> {
@@ -116,16 +260,145 @@ public class BlockLockerCommand extends Command {
                 return context.success();
             })
             .root()
-            // /blocklocker list
+            // /blocklocker list [page] [created|world|distance]
             .key("list")
+            .intNum("page", 1)
+            .optional()
+            .enums("sort", "created", ListSort.NAMES)
+            .optional()
             .exec(context -> {
                 if (!(context.getSender() instanceof EntityPlayer player)) {
                     context.getSender().sendMessage("§cThis command can only be used by players.");
                     return context.fail();
                 }
 
+                int page = context.getResult(1);
+                String sort = context.getResult(2);
                 ProtectionManager manager = BlockLockerPlugin.getInstance().getProtectionManager();
-                sendInfo(player, manager);
+                sendList(player, manager, page, ListSort.valueOf(sort.toUpperCase(Locale.ROOT)));
+                return context.success();
+            })
+            .root()
+            // /blocklocker export
+            .key("export")
+            .exec(context -> {
+                if (context.getSender().hasPermission("blocklocker.admin") != Tristate.TRUE) {
+                    context.getSender().sendMessage("§cYou don't have permission to use this command!");
+                    return context.fail();
+                }
+
+                ProtectionManager manager = BlockLockerPlugin.getInstance().getProtectionManager();
+                var sender = context.getSender();
+                sender.sendMessage("§7Exporting protection data...");
+                // Serializing every protection can take a while; keep it off the server thread
+                CompletableFuture.runAsync(() -> {
+                    try {
+                        Path file = manager.exportJson();
+                        sender.sendMessage("§aExported protection data to " + file.getFileName());
+                    } catch (IOException e) {
+                        sender.sendMessage("§cExport failed: " + e.getMessage());
+                    }
+                });
+                return context.success();
+            })
+            .root()
+            // /blocklocker stats
+            .key("stats")
+            .exec(context -> {
+                if (context.getSender().hasPermission("blocklocker.admin") != Tristate.TRUE) {
+                    context.getSender().sendMessage("§cYou don't have permission to use this command!");
+                    return context.fail();
+                }
+
+                sendStats(context.getSender(), BlockLockerPlugin.getInstance().getProtectionManager());
+                return context.success();
+            })
+            .root()
+            // /blocklocker expire <status|dryrun|run|pause|resume>
+            .key("expire")
+            .enums("action", "status", EXPIRE_ACTIONS)
+            .optional()
+            .exec(context -> {
+                if (context.getSender().hasPermission("blocklocker.admin") != Tristate.TRUE) {
+                    context.getSender().sendMessage("§cYou don't have permission to use this command!");
+                    return context.fail();
+                }
+
+                String action = context.getResult(1);
+                return handleExpire(context.getSender(), action, context);
+            })
+            .root()
+            // /blocklocker purge <player>
+            .key("purge")
+            .str("player")
+            .exec(context -> {
+                if (context.getSender().hasPermission("blocklocker.admin") != Tristate.TRUE) {
+                    context.getSender().sendMessage("§cYou don't have permission to use this command!");
+                    return context.fail();
+                }
+
+                String playerName = context.getResult(1);
+                return handlePurge(context.getSender(), playerName, context);
+            })
+            .root()
+            // /blocklocker transfer <from> <to>
+            .key("transfer")
+            .str("from")
+            .str("to")
+            .exec(context -> {
+                if (context.getSender().hasPermission("blocklocker.admin") != Tristate.TRUE) {
+                    context.getSender().sendMessage("§cYou don't have permission to use this command!");
+                    return context.fail();
+                }
+
+                String fromName = context.getResult(1);
+                String toName = context.getResult(2);
+                return handleTransfer(context.getSender(), fromName, toName, context);
+            })
+            .root()
+            // /blocklocker wipe <world> [x1,z1,x2,z2]
+            .key("wipe")
+            .str("world")
+            .str("box", "")
+            .optional()
+            .exec(context -> {
+                if (context.getSender().hasPermission("blocklocker.admin") != Tristate.TRUE) {
+                    context.getSender().sendMessage("§cYou don't have permission to use this command!");
+                    return context.fail();
+                }
+
+                String worldName = context.getResult(1);
+                String box = context.getResult(2);
+                return handleWipe(context.getSender(), worldName, box, context);
+            })
+            .root()
+            // /blocklocker jobs
+            .key("jobs")
+            .exec(context -> {
+                if (context.getSender().hasPermission("blocklocker.admin") != Tristate.TRUE) {
+                    context.getSender().sendMessage("§cYou don't have permission to use this command!");
+                    return context.fail();
+                }
+
+                sendJobs(context.getSender(), BlockLockerPlugin.getInstance().getProtectionManager());
+                return context.success();
+            })
+            .root()
+            // /blocklocker cancel <job>
+            .key("cancel")
+            .intNum("job")
+            .exec(context -> {
+                if (context.getSender().hasPermission("blocklocker.admin") != Tristate.TRUE) {
+                    context.getSender().sendMessage("§cYou don't have permission to use this command!");
+                    return context.fail();
+                }
+
+                int id = context.getResult(1);
+                ProtectionManager manager = BlockLockerPlugin.getInstance().getProtectionManager();
+                if (!manager.getBulkJobs().cancel(id)) {
+                    context.getSender().sendMessage("§cThere is no job #" + id + ". Use §f/blocklocker jobs§c to list them.");
+                    return context.fail();
+                }
                 return context.success();
             })
             .root()
@@ -169,41 +442,424 @@ public class BlockLockerCommand extends Command {
         return context.success();
     }
 
+    private org.allaymc.api.command.CommandResult handleTrustEverywhere(EntityPlayer player, String targetName, boolean trusted,
+                                                                         org.allaymc.api.command.tree.CommandContext context) {
+        ProtectionManager manager = BlockLockerPlugin.getInstance().getProtectionManager();
+        UUID targetUuid = findOwner(manager, targetName);
+        if (targetUuid == null) {
+            player.sendMessage("§cPlayer '" + targetName + "' not found. They must be online or given by UUID.");
+            return context.fail();
+        }
+        if (targetUuid.equals(player.getUniqueId())) {
+            player.sendMessage("§cYou cannot trust yourself!");
+            return context.fail();
+        }
+        if (manager.getTrustGroups().isUnreadable()) {
+            player.sendMessage(GROUPS_UNREADABLE_MESSAGE);
+            return context.fail();
+        }
+        if (!manager.setTrustedEverywhere(player.getUniqueId(), targetUuid, trusted)) {
+            player.sendMessage("§7" + targetName + (trusted ? " is already" : " is not") + " trusted on all your blocks.");
+            return context.success();
+        }
+        player.sendMessage(trusted
+                ? "§a" + targetName + " is now trusted on all your locked blocks."
+                : "§a" + targetName + " is no longer trusted on all your locked blocks.");
+        return context.success();
+    }
+
+    private org.allaymc.api.command.CommandResult handleGroup(EntityPlayer player, String action, String groupName,
+                                                               String targetName, org.allaymc.api.command.tree.CommandContext context) {
+        ProtectionManager manager = BlockLockerPlugin.getInstance().getProtectionManager();
+        UUID owner = player.getUniqueId();
+        if (action.equals("list")) {
+            sendGroups(player, manager);
+            return context.success();
+        }
+        if (!groupName.matches(GROUP_NAME_PATTERN)) {
+            player.sendMessage("§cGroup names are 1 to 16 letters, digits, - or _.");
+            return context.fail();
+        }
+        if (manager.getTrustGroups().isUnreadable()) {
+            player.sendMessage(GROUPS_UNREADABLE_MESSAGE);
+            return context.fail();
+        }
+        switch (action) {
+            case "create" -> {
+                if (manager.createTrustGroup(owner, groupName) == null) {
+                    player.sendMessage("§cYou already have a group '" + groupName + "'.");
+                    return context.fail();
+                }
+                player.sendMessage("§aCreated group " + groupName + ". Add players with §f/blocklocker group add "
+                        + groupName + " <player>§a, then §f/blocklocker trustgroup " + groupName + "§a on your blocks.");
+            }
+            case "delete" -> {
+                if (!manager.deleteTrustGroup(owner, groupName)) {
+                    player.sendMessage("§cYou have no group '" + groupName + "'.");
+                    return context.fail();
+                }
+                player.sendMessage("§aDeleted group " + groupName + ". Its members lost access through it on all your blocks.");
+            }
+            default -> {
+                TrustGroups.Group group = manager.getTrustGroups().find(owner, groupName);
+                if (group == null) {
+                    player.sendMessage("§cYou have no group '" + groupName + "'.");
+                    return context.fail();
+                }
+                if (targetName.isEmpty()) {
+                    player.sendMessage("§cUsage: /blocklocker group " + action + " <group> <player>");
+                    return context.fail();
+                }
+                UUID targetUuid = findOwner(manager, targetName);
+                if (targetUuid == null) {
+                    player.sendMessage("§cPlayer '" + targetName + "' not found. They must be online or given by UUID.");
+                    return context.fail();
+                }
+                boolean add = action.equals("add");
+                if (!manager.setTrustGroupMember(group.id(), targetUuid, add)) {
+                    player.sendMessage("§7" + targetName + (add ? " is already" : " is not") + " in group " + group.name() + ".");
+                    return context.success();
+                }
+                player.sendMessage(add
+                        ? "§aAdded " + targetName + " to group " + group.name() + "."
+                        : "§aRemoved " + targetName + " from group " + group.name() + ".");
+            }
+        }
+        return context.success();
+    }
+
+    private void sendGroups(EntityPlayer player, ProtectionManager manager) {
+        TrustGroups trustGroups = manager.getTrustGroups();
+        List<TrustGroups.Group> groups = trustGroups.getGroups(player.getUniqueId());
+        TrustSet everywhere = trustGroups.getOwnerWide(player.getUniqueId());
+        player.sendMessage("§6===== Your Trust Groups =====");
+        player.sendMessage("§eTrusted on all blocks: §f" + (everywhere.isEmpty() ? "§7nobody" : playerNames(manager, everywhere)));
+        if (groups.isEmpty()) {
+            player.sendMessage("§7No groups. Create one with §f/blocklocker group create <name>§7.");
+        }
+        for (TrustGroups.Group group : groups) {
+            player.sendMessage("§e" + group.name() + ": §f" + (group.members().isEmpty() ? "§7empty" : playerNames(manager, group.members())));
+        }
+        player.sendMessage("§6=============================");
+    }
+
+    // Last known names where available, UUIDs otherwise
+    private static String playerNames(ProtectionManager manager, TrustSet players) {
+        OwnerTable owners = manager.getProtectedBlocks().getOwnerTable();
+        StringBuilder names = new StringBuilder();
+        for (UUID uuid : players) {
+            Player online = Server.getInstance().getPlayerManager().getPlayers().get(uuid);
+            String name = online != null ? online.getOriginName() : owners.name(owners.idOf(uuid));
+            if (!names.isEmpty()) {
+                names.append(", ");
+            }
+            names.append(name != null ? name : uuid.toString());
+        }
+        return names.toString();
+    }
+
+    private org.allaymc.api.command.CommandResult handleExpire(org.allaymc.api.command.CommandSender sender, String action,
+                                                                org.allaymc.api.command.tree.CommandContext context) {
+        ProtectionManager manager = BlockLockerPlugin.getInstance().getProtectionManager();
+        ExpirySweeper sweeper = manager.getExpirySweeper();
+        BlockLockerConfig.Expiry config = BlockLockerPlugin.getInstance().getConfig().getExpiry();
+        switch (action) {
+            case "dryrun", "run" -> {
+                if (config.getInactiveDays() <= 0) {
+                    sender.sendMessage("§cExpiry is disabled. Set expiry.inactiveDays in config.json to enable it.");
+                    return context.fail();
+                }
+                if (!sweeper.start(action.equals("dryrun"), message -> sender.sendMessage("§a" + message))) {
+                    sender.sendMessage("§cA sweep is already running or protection data is still loading.");
+                    return context.fail();
+                }
+                sender.sendMessage("§aStarted " + (action.equals("dryrun") ? "expiry dry run" : "expiry sweep")
+                        + (sweeper.isPaused() ? ", but the sweeper is paused. Use §f/blocklocker expire resume§a." : "."));
+            }
+            case "pause" -> {
+                sweeper.pause();
+                sender.sendMessage("§aExpiry sweeper paused.");
+            }
+            case "resume" -> {
+                sweeper.resume();
+                sender.sendMessage("§aExpiry sweeper resumed.");
+            }
+            default -> {
+                sender.sendMessage("§6===== BlockLocker Expiry =====");
+                sender.sendMessage(config.getInactiveDays() > 0
+                        ? "§ePolicy: §fowners inactive for " + config.getInactiveDays() + " days§7, protections older than §f"
+                        + config.getMinAgeDays() + " days"
+                        : "§ePolicy: §fdisabled");
+                sender.sendMessage("§eSweeper: §f" + (sweeper.isPaused() ? "paused, " : "")
+                        + (sweeper.getState() != ExpirySweeper.State.IDLE && sweeper.isDryRun() ? "dry run, " : "")
+                        + sweeper.getProgress());
+                long lastSweep = manager.getActivity().getLastSweepAt();
+                sender.sendMessage("§eLast sweep: §f" + (lastSweep > 0 ? DATE_FORMAT.format(Instant.ofEpochMilli(lastSweep)) : "never"));
+                sender.sendMessage("§6==============================");
+            }
+        }
+        return context.success();
+    }
+
+    private org.allaymc.api.command.CommandResult handlePurge(org.allaymc.api.command.CommandSender sender, String playerName,
+                                                               org.allaymc.api.command.tree.CommandContext context) {
+        ProtectionManager manager = BlockLockerPlugin.getInstance().getProtectionManager();
+        UUID owner = findOwner(manager, playerName);
+        if (owner == null) {
+            sender.sendMessage("§cNo protections known for '" + playerName + "'. Offline players can also be given by UUID.");
+            return context.fail();
+        }
+        BulkJobs.Job job = manager.getBulkJobs().purge(owner, "purge " + playerName,
+                message -> sender.sendMessage("§a" + message));
+        sender.sendMessage("§aQueued job #" + job.getId() + " removing the " + manager.getProtectionCount(owner)
+                + " protections of " + playerName + ".");
+        return context.success();
+    }
+
+    private org.allaymc.api.command.CommandResult handleTransfer(org.allaymc.api.command.CommandSender sender, String fromName,
+                                                                  String toName, org.allaymc.api.command.tree.CommandContext context) {
+        ProtectionManager manager = BlockLockerPlugin.getInstance().getProtectionManager();
+        UUID from = findOwner(manager, fromName);
+        if (from == null) {
+            sender.sendMessage("§cNo protections known for '" + fromName + "'. Offline players can also be given by UUID.");
+            return context.fail();
+        }
+        UUID to = findOwner(manager, toName);
+        if (to == null) {
+            sender.sendMessage("§cPlayer '" + toName + "' not found. They must be online or already own protections.");
+            return context.fail();
+        }
+        if (to.equals(from)) {
+            sender.sendMessage("§cCannot transfer protections to their own owner.");
+            return context.fail();
+        }
+        Player online = Server.getInstance().getPlayerManager().getPlayerByName(toName);
+        OwnerTable owners = manager.getProtectedBlocks().getOwnerTable();
+        String newOwnerName = online != null ? online.getOriginName() : owners.name(owners.idOf(to));
+        BulkJobs.Job job = manager.getBulkJobs().transfer(from, to, newOwnerName != null ? newOwnerName : toName,
+                "transfer " + fromName + " to " + toName, message -> sender.sendMessage("§a" + message));
+        sender.sendMessage("§aQueued job #" + job.getId() + " transferring the " + manager.getProtectionCount(from)
+                + " protections of " + fromName + " to " + toName + ".");
+        return context.success();
+    }
+
+    private org.allaymc.api.command.CommandResult handleWipe(org.allaymc.api.command.CommandSender sender, String worldName,
+                                                              String box, org.allaymc.api.command.tree.CommandContext context) {
+        BulkJobs.Area area;
+        if (box.isEmpty()) {
+            area = new BulkJobs.Area(worldName, false, 0, 0, 0, 0);
+        } else {
+            String[] parts = box.split(",");
+            int[] corners = new int[4];
+            try {
+                if (parts.length != 4) {
+                    throw new NumberFormatException();
+                }
+                for (int i = 0; i < 4; i++) {
+                    corners[i] = Integer.parseInt(parts[i].trim());
+                }
+            } catch (NumberFormatException e) {
+                sender.sendMessage("§cThe box must be given as x1,z1,x2,z2, for example §f-100,-100,100,100§c.");
+                return context.fail();
+            }
+            area = new BulkJobs.Area(worldName, true, Math.min(corners[0], corners[2]), Math.min(corners[1], corners[3]),
+                    Math.max(corners[0], corners[2]), Math.max(corners[1], corners[3]));
+        }
+        ProtectionManager manager = BlockLockerPlugin.getInstance().getProtectionManager();
+        String description = "wipe " + worldName + (box.isEmpty() ? "" : " " + box);
+        BulkJobs.Job job = manager.getBulkJobs().wipe(area, description, message -> sender.sendMessage("§a" + message));
+        sender.sendMessage("§aQueued job #" + job.getId() + " removing all protections in " + worldName
+                + (box.isEmpty() ? "" : " between " + area.minX() + ", " + area.minZ() + " and " + area.maxX() + ", " + area.maxZ())
+                + ". Use §f/blocklocker cancel " + job.getId() + "§a to stop it.");
+        return context.success();
+    }
+
+    // Online players by name, others by UUID or by the last name the owner index knows
+    private static UUID findOwner(ProtectionManager manager, String name) {
+        Player online = Server.getInstance().getPlayerManager().getPlayerByName(name);
+        if (online != null) {
+            return online.getLoginData().getUuid();
+        }
+        try {
+            return UUID.fromString(name);
+        } catch (IllegalArgumentException e) {
+            OwnerTable owners = manager.getProtectedBlocks().getOwnerTable();
+            return owners.uuid(owners.findByName(name));
+        }
+    }
+
+    private void sendJobs(org.allaymc.api.command.CommandSender sender, ProtectionManager manager) {
+        List<BulkJobs.Job> jobs = manager.getBulkJobs().getJobs();
+        if (jobs.isEmpty()) {
+            sender.sendMessage("§7No jobs are running.");
+            return;
+        }
+        sender.sendMessage("§6===== BlockLocker Jobs =====");
+        for (int i = 0; i < jobs.size(); i++) {
+            BulkJobs.Job job = jobs.get(i);
+            sender.sendMessage("§e#" + job.getId() + " §f" + job.getDescription() + " §7- "
+                    + (i == 0 ? job.getProgress() : "waiting"));
+        }
+        sender.sendMessage("§7Use §f/blocklocker cancel <job> §7to stop one.");
+    }
+
     private void sendInfo(EntityPlayer player, ProtectionManager manager) {
-        List<ProtectedBlock> protections = manager.getPlayerProtections(player.getUniqueId());
+        ProtectionLimits.Usage total = manager.getLimits().total(player);
+        int count = total.count();
 
         player.sendMessage("§6===== BlockLocker Info =====");
-        player.sendMessage("§eYour protected blocks: §f" + protections.size());
+        player.sendMessage("§eYour protected blocks: §f" + count + (total.isLimited() ? " §7/ §f" + total.limit() : ""));
+        String worldName = player.getWorld().getWorldData().getDisplayName();
+        ProtectionLimits.Usage inWorld = manager.getLimits().inWorld(player, worldName);
+        if (inWorld.isLimited()) {
+            player.sendMessage("§eIn this world: §f" + inWorld.count() + " §7/ §f" + inWorld.limit());
+        }
 
-        if (protections.isEmpty()) {
+        if (count == 0) {
             player.sendMessage("§7You don't have any locked blocks.");
             player.sendMessage("§7Use §f/blocklocker lock §7to lock a block.");
         } else {
-            player.sendMessage("§7Your locked blocks:");
-            int count = 0;
-            for (ProtectedBlock block : protections) {
-                if (count >= 10) {
-                    player.sendMessage("§7... and " + (protections.size() - 10) + " more");
-                    break;
-                }
-                player.sendMessage(String.format("§8- §7%s at %d, %d, %d (%s trusted)",
-                        block.getWorldName(), block.getX(), block.getY(), block.getZ(),
-                        block.getTrustedPlayers().size()));
-                count++;
-            }
+            player.sendMessage("§7Use §f/blocklocker list [page] §7to see them.");
         }
 
         player.sendMessage("§6==========================");
     }
 
+    private void sendList(EntityPlayer player, ProtectionManager manager, int page, ListSort sort) {
+        List<OwnedProtection> protections = manager.getPlayerProtections(player.getUniqueId());
+        if (protections.isEmpty()) {
+            player.sendMessage("§7You don't have any locked blocks.");
+            player.sendMessage("§7Use §f/blocklocker lock §7to lock a block.");
+            return;
+        }
+
+        var location = player.getLocation();
+        String worldName = player.getWorld().getWorldData().getDisplayName();
+        int dimensionId = player.getDimension().getDimensionInfo().dimensionId();
+        ToDoubleFunction<OwnedProtection> distance = block -> {
+            if (!block.getWorldName().equals(worldName) || block.getDimensionId() != dimensionId) {
+                return Double.POSITIVE_INFINITY; // Other worlds go last
+            }
+            double dx = block.getX() + 0.5 - location.x();
+            double dy = block.getY() + 0.5 - location.y();
+            double dz = block.getZ() + 0.5 - location.z();
+            return Math.sqrt(dx * dx + dy * dy + dz * dz);
+        };
+        protections.sort(switch (sort) {
+            case WORLD -> Comparator.comparing(OwnedProtection::getWorldName)
+                    .thenComparingInt(OwnedProtection::getDimensionId)
+                    .thenComparingInt(OwnedProtection::getX)
+                    .thenComparingInt(OwnedProtection::getZ)
+                    .thenComparingInt(OwnedProtection::getY);
+            case DISTANCE -> Comparator.comparingDouble(distance);
+            case CREATED -> Comparator.comparingLong(OwnedProtection::getCreatedAt).reversed();
+        });
+
+        int pages = (protections.size() + PAGE_SIZE - 1) / PAGE_SIZE;
+        page = Math.max(1, Math.min(page, pages));
+        player.sendMessage("§6===== Your Locked Blocks (" + page + "/" + pages + ", by "
+                + sort.name().toLowerCase(Locale.ROOT) + ") =====");
+        int end = Math.min(page * PAGE_SIZE, protections.size());
+        for (int i = (page - 1) * PAGE_SIZE; i < end; i++) {
+            OwnedProtection block = protections.get(i);
+            double blocksAway = distance.applyAsDouble(block);
+            player.sendMessage(String.format("§8- §7%s at %d, %d, %d%s §8(%s)",
+                    block.getWorldName(), block.getX(), block.getY(), block.getZ(),
+                    Double.isInfinite(blocksAway) ? "" : String.format(" §8[%.0fm]", blocksAway),
+                    DATE_FORMAT.format(Instant.ofEpochMilli(block.getCreatedAt()))));
+        }
+        if (page < pages) {
+            player.sendMessage("§7Use §f/blocklocker list " + (page + 1) + " " + sort.name().toLowerCase(Locale.ROOT)
+                    + " §7for the next page.");
+        }
+    }
+
+    /**
+     * Sort orders for /blocklocker list.
+     */
+    private enum ListSort {
+        CREATED,
+        WORLD,
+        DISTANCE;
+
+        static final String[] NAMES = {"created", "world", "distance"};
+    }
+
+    private void sendStats(org.allaymc.api.command.CommandSender sender, ProtectionManager manager) {
+        BlockLockerMetrics metrics = manager.getMetrics();
+        long skips = manager.getFilterSkips();
+        long lookups = skips + manager.getFilterPasses();
+        sender.sendMessage("§6===== BlockLocker Stats =====");
+        sender.sendMessage("§eProtected blocks: §f" + manager.getTotalProtections()
+                + " §7(" + manager.getResidentProtections() + " in memory)");
+        sender.sendMessage("§ePending changes: §f" + manager.getPendingChanges()
+                + " §7journal records, §f" + manager.getDirtyRegions() + " §7unsaved regions");
+        sender.sendMessage("§eInteract handler: " + formatLatency(metrics.getInteractLatency()));
+        sender.sendMessage("§eBreak handler: " + formatLatency(metrics.getBreakLatency()));
+        long hits = metrics.getLookupHits().sum();
+        long misses = metrics.getLookupMisses().sum();
+        sender.sendMessage(String.format("§eLookups: §f%d §7hits, §f%d §7misses (%.1f%% hit)",
+                hits, misses, hits + misses > 0 ? hits * 100.0 / (hits + misses) : 0.0));
+        sender.sendMessage(String.format("§eOccupancy filter: §f%d§7/§f%d §7lookups skipped (%.1f%%)",
+                skips, lookups, lookups > 0 ? skips * 100.0 / lookups : 0.0));
+        long cacheHits = manager.getAutomationCache().getHits();
+        long cacheLookups = cacheHits + manager.getAutomationCache().getMisses();
+        sender.sendMessage(String.format("§eHopper/redstone cache: §f%d§7/§f%d §7hits (%.1f%%)",
+                cacheHits, cacheLookups, cacheLookups > 0 ? cacheHits * 100.0 / cacheLookups : 0.0));
+        sender.sendMessage("§eDenied: §f" + metrics.getInteractDenials().sum() + " §7interact, §f"
+                + metrics.getBreakDenials().sum() + " §7break, §f" + metrics.getPlaceDenials().sum() + " §7place, §f"
+                + metrics.getAutomationDenials().sum() + " §7hopper/redstone, §f" + metrics.getBulkDenials().sum()
+                + " §7explosion/piston, §f" + metrics.getNotReadyDenials().sum() + " §7still loading");
+        sender.sendMessage("§eOrphaned blocks removed: §f" + metrics.getOrphansRemoved().sum()
+                + " §7(" + manager.getChunkValidator().getPendingChunks() + " chunks waiting for a check)");
+        LatencyHistogram saves = metrics.getSaveLatency();
+        LatencyHistogram loads = metrics.getRegionLoadLatency();
+        sender.sendMessage(String.format("§eSaves: §f%d §7(mean §f%.1f§7ms, max §f%.1f§7ms), §f%s §7written",
+                saves.getCount(), saves.getMeanNanos() / 1e6, saves.getMaxNanos() / 1e6,
+                formatBytes(metrics.getBytesWritten().sum())));
+        sender.sendMessage(String.format("§eLoads: §f%.1f§7ms startup, §f%d §7regions (mean §f%.1f§7ms, max §f%.1f§7ms)",
+                metrics.getStartupLoadNanos() / 1e6, loads.getCount(), loads.getMeanNanos() / 1e6,
+                loads.getMaxNanos() / 1e6));
+        sender.sendMessage("§6============================");
+    }
+
+    private static String formatLatency(LatencyHistogram histogram) {
+        return String.format("§f%d §7calls, mean §f%.1f§7µs, p99 §f%.1f§7µs, max §f%.1f§7µs",
+                histogram.getCount(), histogram.getMeanNanos() / 1e3,
+                histogram.getPercentileNanos(0.99) / 1e3, histogram.getMaxNanos() / 1e3);
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        }
+        if (bytes < 1024 * 1024) {
+            return String.format("%.1f KiB", bytes / 1024.0);
+        }
+        return String.format("%.1f MiB", bytes / (1024.0 * 1024));
+    }
+
     private void sendHelp(org.allaymc.api.command.CommandSender sender) {
         sender.sendMessage("§6===== BlockLocker Commands =====");
         sender.sendMessage("§e/blocklocker lock §7- Enable lock mode, then right-click a block");
         sender.sendMessage("§e/blocklocker unlock §7- Enable unlock mode, then right-click a block");
         sender.sendMessage("§e/blocklocker trust <player> §7- Enable trust mode to add a player");
         sender.sendMessage("§e/blocklocker untrust <player> §7- Enable trust mode to remove a player");
+        sender.sendMessage("§e/blocklocker trustall <player> §7- Trust a player on all your locked blocks");
+        sender.sendMessage("§e/blocklocker untrustall <player> §7- Stop trusting a player on all your locked blocks");
+        sender.sendMessage("§e/blocklocker group [list|create|delete|add|remove] [group] [player] §7- Manage your trust groups");
+        sender.sendMessage("§e/blocklocker trustgroup <group> §7- Enable trust mode to add or remove a group");
+        sender.sendMessage("§e/blocklocker flag <hoppers|redstone> <on|off> §7- Allow or deny hoppers/redstone on a block");
         sender.sendMessage("§e/blocklocker info §7- Show your protection statistics");
-        sender.sendMessage("§e/blocklocker list §7- List your protected blocks");
+        sender.sendMessage("§e/blocklocker list [page] [created|world|distance] §7- List your protected blocks");
+        sender.sendMessage("§e/blocklocker stats §7- Show protection and performance statistics (admin)");
+        sender.sendMessage("§e/blocklocker export §7- Export protection data as JSON (admin)");
+        sender.sendMessage("§e/blocklocker expire [status|dryrun|run|pause|resume] §7- Expire protections of inactive owners (admin)");
+        sender.sendMessage("§e/blocklocker purge <player> §7- Remove all protections of a player (admin)");
+        sender.sendMessage("§e/blocklocker transfer <from> <to> §7- Give all protections of a player to another (admin)");
+        sender.sendMessage("§e/blocklocker wipe <world> [x1,z1,x2,z2] §7- Remove all protections in a world or area (admin)");
+        sender.sendMessage("§e/blocklocker jobs §7- Show running purges, transfers and wipes (admin)");
+        sender.sendMessage("§e/blocklocker cancel <job> §7- Stop a purge, transfer or wipe (admin)");
         sender.sendMessage("§e/blocklocker help §7- Show this help message");
         sender.sendMessage("§6================================");
         sender.sendMessage("§7Protectable blocks: chests, doors, furnaces, hoppers, dispensers, barrels, anvils, enchanting tables, beacons");
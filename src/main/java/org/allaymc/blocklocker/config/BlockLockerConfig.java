@@ -0,0 +1,200 @@
+package org.allaymc.blocklocker.config;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import lombok.Data;
+import org.allaymc.blocklocker.storage.AtomicFiles;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Plugin configuration, stored as {@code config.json} in the plugin data folder.
+ * Missing options keep their defaults, and the file is rewritten on load so that
+ * newly added options show up for server owners. A file that cannot be read is never
+ * rewritten; see {@link #isBroken()}.
+ */
+@Data
+public class BlockLockerConfig {
+
+    private Storage storage = new Storage();
+
+    private ProtectableBlocks protectableBlocks = new ProtectableBlocks();
+
+    private Metrics metrics = new Metrics();
+
+    private Expiry expiry = new Expiry();
+
+    private Validation validation = new Validation();
+
+    private Limits limits = new Limits();
+
+    private Bulk bulk = new Bulk();
+
+    // Set when config.json could not be read and the defaults are used instead
+    private transient boolean broken;
+
+    /**
+     * Settings for persisting protection data.
+     */
+    @Data
+    public static class Storage {
+
+        // Where protections are stored: "regions" (binary region files), "json" (readable
+        // region files) or "sqlite" (embedded database); existing data is migrated on switch
+        private String backend = "regions";
+
+        // Journal size after which it is folded into a new snapshot
+        private long compactionThresholdBytes = 4L * 1024 * 1024;
+
+        // Deflate-compress binary snapshots
+        private boolean compressSnapshots = true;
+
+        // Regions with no loaded chunks are dropped from memory after this long without access
+        private int regionEvictAfterSeconds = 300;
+
+        // Threads decoding protection data at startup and when regions load, 0 uses one per core
+        private int loadThreads = 0;
+
+        // Keep the owner index in memory-mapped files instead of the heap, for very large datasets;
+        // the protections of loaded regions stay on the heap either way
+        private boolean mappedOwnerIndex = false;
+    }
+
+    /**
+     * Block types that can be locked, as glob patterns ({@code *}, {@code ?}) over block
+     * identifiers. Patterns without a namespace match any namespace.
+     */
+    @Data
+    public static class ProtectableBlocks {
+
+        private List<String> include = new ArrayList<>(List.of(
+                "*chest", "*door", "*furnace", "brewing_stand", "hopper", "dropper", "dispenser",
+                "barrel", "*shulker_box", "*anvil", "enchanting_table", "beacon"));
+
+        private List<String> exclude = new ArrayList<>();
+    }
+
+    /**
+     * Where runtime metrics are published; {@code /blocklocker stats} always shows them.
+     */
+    @Data
+    public static class Metrics {
+
+        // Register the metrics as a JMX MBean
+        private boolean jmx = true;
+
+        // Append the metrics to metrics.csv this often, 0 disables the dump
+        private int csvIntervalSeconds = 0;
+    }
+
+    /**
+     * When protections of inactive owners are removed, see {@code /blocklocker expire}.
+     */
+    @Data
+    public static class Expiry {
+
+        // Protections of owners inactive for this many days expire, 0 disables expiry
+        private int inactiveDays = 0;
+
+        // Protections younger than this are kept even if their owner is inactive
+        private int minAgeDays = 30;
+
+        // Start a sweep automatically this often, 0 only sweeps on command
+        private int sweepIntervalHours = 24;
+
+        // Time a sweep may use per server tick
+        private double tickBudgetMillis = 2.0;
+    }
+
+    /**
+     * Checking the protections of loaded chunks against the blocks actually there.
+     */
+    @Data
+    public static class Validation {
+
+        // Drop protections whose block was destroyed without a player breaking it
+        private boolean enabled = true;
+
+        // Time chunk validation may use per server tick
+        private double tickBudgetMillis = 1.0;
+    }
+
+    /**
+     * How many blocks a player may lock. A limit of -1 means no limit.
+     */
+    @Data
+    public static class Limits {
+
+        // Protections a player may own in total
+        private int defaultLimit = -1;
+
+        // Limits for players with the permission blocklocker.limit.<group>; the highest one applies
+        private Map<String, Integer> groups = new LinkedHashMap<>();
+
+        // Protections a player may own in a world (all its dimensions), on top of the total limit
+        private Map<String, Integer> worlds = new LinkedHashMap<>();
+    }
+
+    /**
+     * Pacing of bulk admin jobs, see {@code /blocklocker purge}, {@code transfer} and {@code wipe}.
+     */
+    @Data
+    public static class Bulk {
+
+        // Protections a job may change per server tick
+        private int recordsPerTick = 250;
+
+        // Time a job may use per server tick
+        private double tickBudgetMillis = 2.0;
+    }
+
+    /**
+     * Load the configuration from a file, creating it with defaults if it does not exist.
+     * <p>
+     * If the file exists but cannot be read, the defaults are returned marked as
+     * {@link #isBroken() broken}, a copy of the file is kept as {@code config.json.broken},
+     * and the file itself is left alone, so a typo never replaces the server owner's settings.
+     */
+    public static BlockLockerConfig load(Path file, Logger logger) {
+        Gson gson = new GsonBuilder().setPrettyPrinting().create();
+        BlockLockerConfig config = null;
+        if (Files.exists(file)) {
+            try (Reader reader = Files.newBufferedReader(file)) {
+                config = gson.fromJson(reader, BlockLockerConfig.class);
+            } catch (IOException | JsonParseException e) {
+                Path backup = file.resolveSibling(file.getFileName() + ".broken");
+                try {
+                    Files.copy(file, backup, StandardCopyOption.REPLACE_EXISTING);
+                } catch (IOException copyError) {
+                    logger.error("Failed to keep a copy of the config: " + copyError.getMessage());
+                }
+                logger.error("Failed to read config, a copy was kept as " + backup.getFileName()
+                        + "; protection data is not loaded until it is fixed: " + e.getMessage());
+                BlockLockerConfig defaults = new BlockLockerConfig();
+                defaults.broken = true;
+                return defaults;
+            }
+        }
+        if (config == null) {
+            config = new BlockLockerConfig();
+        }
+
+        BlockLockerConfig loaded = config;
+        try {
+            AtomicFiles.write(file, writer -> gson.toJson(loaded, writer));
+        } catch (IOException e) {
+            logger.error("Failed to write config: " + e.getMessage());
+        }
+        return config;
+    }
+}
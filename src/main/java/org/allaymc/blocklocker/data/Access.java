@@ -0,0 +1,23 @@
+package org.allaymc.blocklocker.data;
+
+/**
+ * Result of checking a player against the protection at a position, answered
+ * straight from the index without building a {@link ProtectedBlock}.
+ */
+public enum Access {
+
+    /**
+     * The position is not protected.
+     */
+    NONE,
+    OWNER,
+    TRUSTED,
+    DENIED;
+
+    /**
+     * Whether the player may use the block.
+     */
+    public boolean isAllowed() {
+        return this != DENIED;
+    }
+}
@@ -3,20 +3,24 @@ package org.allaymc.blocklocker.data;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.allaymc.blocklocker.index.BlockKeys;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.UUID;
 
 /**
  * Represents a protected/locked block in the world.
  * Stores owner information, trusted players, and protection settings.
+ * <p>
+ * The index does not keep these objects: the ones it returns are views built from
+ * its compact rows, so changing one only takes effect once it is written back.
  */
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class ProtectedBlock {
 
+    public static final long[] NO_MEMBERS = new long[0];
+
     private String worldName;
     private int dimensionId;
     private int x;
@@ -25,10 +29,15 @@ public class ProtectedBlock {
     private UUID ownerUuid;
     private String ownerName;
     private long createdAt;
-    private List<UUID> trustedPlayers;
+    private TrustSet trustedPlayers = TrustSet.EMPTY;
     private boolean allowRedstone;
     private boolean allowHoppers;
 
+    // Other blocks of a multi-block structure (door half, double chest half) as packed
+    // positions (see BlockKeys#pack); this block is the structure's anchor. Never changed
+    // in place, use withStructure
+    private long[] members = NO_MEMBERS;
+
     public ProtectedBlock(String worldName, int dimensionId, int x, int y, int z, UUID ownerUuid, String ownerName) {
         this.worldName = worldName;
         this.dimensionId = dimensionId;
@@ -38,18 +47,54 @@ public class ProtectedBlock {
         this.ownerUuid = ownerUuid;
         this.ownerName = ownerName;
         this.createdAt = System.currentTimeMillis();
-        this.trustedPlayers = new ArrayList<>();
+        this.trustedPlayers = TrustSet.EMPTY;
         this.allowRedstone = false;
         this.allowHoppers = false;
+        this.members = NO_MEMBERS;
     }
 
     /**
-     * Get the unique key for this block location.
+     * Get a human-readable key for this block location.
+     * Only meant for legacy data import and logging; lookups use packed keys
+     * (see {@link BlockKeys}).
      */
     public String getLocationKey() {
         return worldName + ":" + dimensionId + ":" + x + ":" + y + ":" + z;
     }
 
+    /**
+     * Copy this protection with a different owner, keeping its trust list, flags and members.
+     */
+    public ProtectedBlock withOwner(UUID newOwnerUuid, String newOwnerName) {
+        return new ProtectedBlock(worldName, dimensionId, x, y, z, newOwnerUuid, newOwnerName,
+                createdAt, trustedPlayers, allowRedstone, allowHoppers, members);
+    }
+
+    /**
+     * Copy this protection to another anchor position with other members, keeping everything else.
+     */
+    public ProtectedBlock withStructure(int anchorX, int anchorY, int anchorZ, long[] newMembers) {
+        return new ProtectedBlock(worldName, dimensionId, anchorX, anchorY, anchorZ, ownerUuid, ownerName,
+                createdAt, trustedPlayers, allowRedstone, allowHoppers, newMembers);
+    }
+
+    /**
+     * Whether this protection covers more than one block.
+     */
+    public boolean hasMembers() {
+        return members.length > 0;
+    }
+
+    /**
+     * Packed positions of all blocks covered by this protection, anchor first.
+     */
+    public long[] getBlockPositions() {
+        long[] positions = new long[members.length + 1];
+        positions[0] = BlockKeys.pack(x, y, z);
+        System.arraycopy(members, 0, positions, 1, members.length);
+        return positions;
+    }
+
     /**
      * Check if a player is the owner of this block.
      */
@@ -58,32 +103,33 @@ public class ProtectedBlock {
     }
 
     /**
-     * Check if a player is trusted (has access) to this block.
+     * Check if a player is in this block's trust list. O(1). Trust through groups and
+     * owner-wide lists is resolved by the index, see {@link TrustGroups}.
      */
     public boolean isTrusted(UUID playerUuid) {
         return trustedPlayers.contains(playerUuid);
     }
 
     /**
-     * Check if a player has access to this block (owner or trusted).
+     * Check if a player has access to this block: the owner, a player in the trust list, or
+     * one trusted through the owner's groups and owner-wide list. Does not allocate.
      */
-    public boolean hasAccess(UUID playerUuid) {
-        return isOwner(playerUuid) || isTrusted(playerUuid);
+    public boolean hasAccess(UUID playerUuid, TrustGroups trustGroups) {
+        return isOwner(playerUuid) || isTrusted(playerUuid) || trustGroups.isTrusted(ownerUuid, trustedPlayers, playerUuid);
     }
 
     /**
      * Add a trusted player.
+     * The shared set is never modified; the block switches to the interned set with the player added.
      */
     public void addTrustedPlayer(UUID playerUuid) {
-        if (!trustedPlayers.contains(playerUuid)) {
-            trustedPlayers.add(playerUuid);
-        }
+        trustedPlayers = trustedPlayers.with(playerUuid);
     }
 
     /**
      * Remove a trusted player.
      */
     public void removeTrustedPlayer(UUID playerUuid) {
-        trustedPlayers.remove(playerUuid);
+        trustedPlayers = trustedPlayers.without(playerUuid);
     }
 }
@@ -0,0 +1,375 @@
+package org.allaymc.blocklocker.data;
+
+import lombok.Getter;
+import org.allaymc.blocklocker.storage.AtomicFiles;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Named trust groups and owner-wide trust lists, shared by all protections of an owner.
+ * <p>
+ * A protection trusts a group by holding the group's id in its {@link TrustSet}, next to
+ * trusted players; ids carry a marker (see {@link #isGroupRef}) so they never clash with
+ * player UUIDs, and the journal and region files store them like any other member. The
+ * members themselves live only here, so adding a friend to a group, or to the list of
+ * players trusted on all of an owner's blocks, is one table update that applies to every
+ * protection at once, without rewriting any of them.
+ * <p>
+ * Access checks read the table without locking: a group's members are an interned
+ * {@link TrustSet}, one hash probe per referenced group. Every change bumps the table
+ * version, which decides whether the table needs saving. A group only counts on the
+ * protections of its own owner, so transferred protections stop honouring the groups of
+ * their previous owner. Deleted groups are simply ignored where they are still referenced.
+ * <p>
+ * Stored as {@code trust_groups.dat} in the plugin data folder. Layout: int magic "BLTG",
+ * byte version, long tableVersion, int groupCount, groupCount x (uuid id, uuid owner,
+ * UTF name, int memberCount, memberCount x uuid), int ownerCount, ownerCount x (uuid owner,
+ * int memberCount, memberCount x uuid). UUIDs are written as two longs.
+ */
+public class TrustGroups {
+
+    private static final int MAGIC = 0x424C5447; // "BLTG"
+    private static final int FORMAT_VERSION = 1;
+
+    // High half of every group id's most significant bits, "BlGR"; with UUID version 0
+    private static final long GROUP_MARKER = 0x426C4752L;
+
+    private static final UUID[] NO_GROUPS = new UUID[0];
+
+    /**
+     * A named group of players, owned by one player.
+     */
+    public record Group(UUID id, UUID owner, String name, TrustSet members) {
+
+        private Group withMembers(TrustSet newMembers) {
+            return new Group(id, owner, name, newMembers);
+        }
+    }
+
+    // Group id -> group; read without locking by access checks
+    private final Map<UUID, Group> groups = new ConcurrentHashMap<>();
+
+    // Owner and lower case name -> group id
+    private final Map<String, UUID> groupsByName = new ConcurrentHashMap<>();
+
+    // Owner -> players trusted on all of the owner's protections
+    private final Map<UUID, TrustSet> ownerWide = new ConcurrentHashMap<>();
+
+    // Bumped on every change
+    @Getter
+    private volatile long version;
+    private long savedVersion;
+
+    // Set when the saved table could not be read, so it is never saved over
+    @Getter
+    private volatile boolean unreadable;
+
+    // Keeps saves in order, without holding up changes while writing
+    private final Object saveLock = new Object();
+
+    /**
+     * Whether a trust set member is a group id rather than a player.
+     */
+    public static boolean isGroupRef(UUID member) {
+        return member.getMostSignificantBits() >>> 32 == GROUP_MARKER && member.version() == 0;
+    }
+
+    static UUID[] groupRefs(UUID[] members) {
+        int count = 0;
+        for (UUID member : members) {
+            if (isGroupRef(member)) {
+                count++;
+            }
+        }
+        if (count == 0) {
+            return NO_GROUPS;
+        }
+        UUID[] refs = new UUID[count];
+        int i = 0;
+        for (UUID member : members) {
+            if (isGroupRef(member)) {
+                refs[i++] = member;
+            }
+        }
+        return refs;
+    }
+
+    /**
+     * Whether a player is trusted on a protection of an owner through the owner-wide list
+     * or one of the groups in its trust set. Direct members of the trust set are checked
+     * by the caller. Does not allocate.
+     */
+    public boolean isTrusted(UUID owner, TrustSet trust, UUID player) {
+        TrustSet everywhere = ownerWide.get(owner);
+        if (everywhere != null && everywhere.contains(player)) {
+            return true;
+        }
+        for (UUID ref : trust.groupRefs()) {
+            Group group = groups.get(ref);
+            if (group != null && group.members().contains(player) && group.owner().equals(owner)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Create a group.
+     *
+     * @return the new group, or {@code null} if the owner already has a group of that name
+     *         or the table is read-only, see {@link #isUnreadable}
+     */
+    public synchronized Group create(UUID owner, String name) {
+        String key = nameKey(owner, name);
+        if (unreadable || groupsByName.containsKey(key)) {
+            return null;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        UUID id;
+        do {
+            id = new UUID(GROUP_MARKER << 32 | (random.nextInt() & 0xFFFF0FFFL), random.nextLong());
+        } while (groups.containsKey(id));
+        Group group = new Group(id, owner, name, TrustSet.EMPTY);
+        groups.put(id, group);
+        groupsByName.put(key, id);
+        version++;
+        return group;
+    }
+
+    /**
+     * Delete a group. Protections that still reference it no longer grant anything through it.
+     *
+     * @return {@code false} if there is no such group or the table is read-only
+     */
+    public synchronized boolean delete(UUID owner, String name) {
+        if (unreadable) {
+            return false;
+        }
+        UUID id = groupsByName.remove(nameKey(owner, name));
+        if (id == null) {
+            return false;
+        }
+        groups.remove(id);
+        version++;
+        return true;
+    }
+
+    /**
+     * Find a group of an owner by name, ignoring case, or {@code null}.
+     */
+    public Group find(UUID owner, String name) {
+        UUID id = groupsByName.get(nameKey(owner, name));
+        return id != null ? groups.get(id) : null;
+    }
+
+    /**
+     * Get a group by id, or {@code null} if it does not exist (any more).
+     */
+    public Group get(UUID id) {
+        return groups.get(id);
+    }
+
+    /**
+     * Groups of an owner, by name.
+     */
+    public List<Group> getGroups(UUID owner) {
+        List<Group> owned = new ArrayList<>();
+        for (Group group : groups.values()) {
+            if (group.owner().equals(owner)) {
+                owned.add(group);
+            }
+        }
+        owned.sort(Comparator.comparing(Group::name, String.CASE_INSENSITIVE_ORDER));
+        return owned;
+    }
+
+    /**
+     * Add a player to or remove one from a group.
+     *
+     * @return {@code false} if the group does not exist, nothing changed or the table is read-only
+     */
+    public synchronized boolean setMember(UUID groupId, UUID player, boolean member) {
+        Group group = groups.get(groupId);
+        if (group == null || unreadable) {
+            return false;
+        }
+        TrustSet members = member ? group.members().with(player) : group.members().without(player);
+        if (members == group.members()) {
+            return false;
+        }
+        groups.put(groupId, group.withMembers(members));
+        version++;
+        return true;
+    }
+
+    /**
+     * Players an owner trusts on all of their protections.
+     */
+    public TrustSet getOwnerWide(UUID owner) {
+        return ownerWide.getOrDefault(owner, TrustSet.EMPTY);
+    }
+
+    /**
+     * Trust a player on all protections of an owner, or stop doing so.
+     *
+     * @return {@code false} if nothing changed or the table is read-only
+     */
+    public synchronized boolean setOwnerWide(UUID owner, UUID player, boolean trusted) {
+        if (unreadable) {
+            return false;
+        }
+        TrustSet current = getOwnerWide(owner);
+        TrustSet updated = trusted ? current.with(player) : current.without(player);
+        if (updated == current) {
+            return false;
+        }
+        if (updated.isEmpty()) {
+            ownerWide.remove(owner);
+        } else {
+            ownerWide.put(owner, updated);
+        }
+        version++;
+        return true;
+    }
+
+    private static String nameKey(UUID owner, String name) {
+        return owner + ":" + name.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Read the saved table, if any. Nothing is applied unless the whole file reads; if it
+     * does not, a copy is kept as {@code trust_groups.dat.corrupt} and the table is
+     * read-only until the server is restarted with the file fixed or removed: changes are
+     * refused rather than lost, and the file is never saved over.
+     */
+    public synchronized void load(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        long tableVersion;
+        Map<UUID, Group> savedGroups = new HashMap<>();
+        Map<UUID, TrustSet> savedOwnerWide = new HashMap<>();
+        try (InputStream source = Files.newInputStream(file);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(source))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a BlockLocker trust group file");
+            }
+            int format = in.readUnsignedByte();
+            if (format != FORMAT_VERSION) {
+                throw new IOException("Unsupported trust group file version " + format);
+            }
+            tableVersion = in.readLong();
+            int groupCount = in.readInt();
+            for (int i = 0; i < groupCount; i++) {
+                UUID id = readUuid(in);
+                UUID owner = readUuid(in);
+                String name = in.readUTF();
+                savedGroups.put(id, new Group(id, owner, name, readMembers(in)));
+            }
+            int ownerCount = in.readInt();
+            for (int i = 0; i < ownerCount; i++) {
+                UUID owner = readUuid(in);
+                savedOwnerWide.put(owner, readMembers(in));
+            }
+        } catch (IOException e) {
+            unreadable = true;
+            Path backup = file.resolveSibling(file.getFileName() + ".corrupt");
+            Files.copy(file, backup, StandardCopyOption.REPLACE_EXISTING);
+            throw new IOException(e.getMessage() + ", a copy was kept as " + backup.getFileName(), e);
+        }
+        for (Group group : savedGroups.values()) {
+            groups.put(group.id(), group);
+            groupsByName.put(nameKey(group.owner(), group.name()), group.id());
+        }
+        ownerWide.putAll(savedOwnerWide);
+        version = tableVersion;
+        savedVersion = tableVersion;
+    }
+
+    /**
+     * Write the table if it changed since it was loaded or last saved. Changes made while
+     * writing are not blocked and are picked up by the next save. Does nothing while the
+     * table is read-only, it has no changes then.
+     */
+    public void saveIfDirty(Path file) throws IOException {
+        if (unreadable) {
+            return;
+        }
+        synchronized (saveLock) {
+            long saving;
+            List<Group> groupSnapshot;
+            Map<UUID, TrustSet> ownerSnapshot;
+            synchronized (this) {
+                if (version == savedVersion) {
+                    return;
+                }
+                saving = version;
+                groupSnapshot = List.copyOf(groups.values());
+                ownerSnapshot = Map.copyOf(ownerWide);
+            }
+            AtomicFiles.writeBinary(file, target -> {
+                DataOutputStream out = new DataOutputStream(target);
+                out.writeInt(MAGIC);
+                out.writeByte(FORMAT_VERSION);
+                out.writeLong(saving);
+                out.writeInt(groupSnapshot.size());
+                for (Group group : groupSnapshot) {
+                    writeUuid(out, group.id());
+                    writeUuid(out, group.owner());
+                    out.writeUTF(group.name());
+                    writeMembers(out, group.members());
+                }
+                out.writeInt(ownerSnapshot.size());
+                for (Map.Entry<UUID, TrustSet> entry : ownerSnapshot.entrySet()) {
+                    writeUuid(out, entry.getKey());
+                    writeMembers(out, entry.getValue());
+                }
+                out.flush();
+            });
+            synchronized (this) {
+                savedVersion = saving;
+            }
+        }
+    }
+
+    private static TrustSet readMembers(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<UUID> members = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            members.add(readUuid(in));
+        }
+        return TrustSet.of(members);
+    }
+
+    private static void writeMembers(DataOutputStream out, TrustSet members) throws IOException {
+        out.writeInt(members.size());
+        for (UUID member : members) {
+            writeUuid(out, member);
+        }
+    }
+
+    private static UUID readUuid(DataInputStream in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+
+    private static void writeUuid(DataOutputStream out, UUID uuid) throws IOException {
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+    }
+}
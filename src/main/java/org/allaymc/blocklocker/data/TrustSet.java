@@ -0,0 +1,245 @@
+package org.allaymc.blocklocker.data;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.UUID;
+import java.util.WeakHashMap;
+
+/**
+ * Immutable set of trusted players.
+ * <p>
+ * Sets are interned, so all blocks with the same trusted players share one
+ * instance; adding or removing a player returns another interned set instead of
+ * giving each block its own copy. Membership checks are a single hash probe.
+ * Serialized to JSON as a plain array of UUIDs, like the list it replaces.
+ */
+@JsonAdapter(TrustSet.Adapter.class)
+public final class TrustSet implements Iterable<UUID> {
+
+    public static final TrustSet EMPTY = new TrustSet(new UUID[0]);
+
+    // Canonical instances; entries go away once no block uses the set any more
+    private static final Map<TrustSet, WeakReference<TrustSet>> INTERNED = new WeakHashMap<>();
+
+    // Open-addressing table, at most half full; null marks a free slot
+    private final UUID[] table;
+    private final int size;
+    private final int hash;
+
+    // Members that are trust group ids, see TrustGroups; usually none
+    private final UUID[] groupRefs;
+
+    private TrustSet(UUID[] members) {
+        this.size = members.length;
+        this.table = new UUID[size == 0 ? 0 : Integer.highestOneBit(size * 2 - 1) << 1];
+        int hash = 0;
+        for (UUID member : members) {
+            int slot = slot(member);
+            while (table[slot] != null) {
+                slot = (slot + 1) & (table.length - 1);
+            }
+            table[slot] = member;
+            hash += member.hashCode();
+        }
+        this.hash = hash;
+        this.groupRefs = TrustGroups.groupRefs(members);
+    }
+
+    /**
+     * Get the interned set of the given players. Duplicates are ignored.
+     */
+    public static TrustSet of(Collection<UUID> players) {
+        if (players.isEmpty()) {
+            return EMPTY;
+        }
+        Set<UUID> distinct = new LinkedHashSet<>(players);
+        return intern(new TrustSet(distinct.toArray(new UUID[0])));
+    }
+
+    private static TrustSet intern(TrustSet set) {
+        if (set.size == 0) {
+            return EMPTY;
+        }
+        synchronized (INTERNED) {
+            WeakReference<TrustSet> reference = INTERNED.get(set);
+            TrustSet existing = reference != null ? reference.get() : null;
+            if (existing != null) {
+                return existing;
+            }
+            INTERNED.put(set, new WeakReference<>(set));
+            return set;
+        }
+    }
+
+    public boolean contains(UUID player) {
+        if (size == 0) {
+            return false;
+        }
+        int slot = slot(player);
+        UUID member;
+        while ((member = table[slot]) != null) {
+            if (member.equals(player)) {
+                return true;
+            }
+            slot = (slot + 1) & (table.length - 1);
+        }
+        return false;
+    }
+
+    /**
+     * Get the set with a player added. Returns this set if the player is already trusted.
+     */
+    public TrustSet with(UUID player) {
+        if (contains(player)) {
+            return this;
+        }
+        UUID[] members = Arrays.copyOf(toArray(), size + 1);
+        members[size] = player;
+        return intern(new TrustSet(members));
+    }
+
+    /**
+     * Get the set with a player removed. Returns this set if the player is not trusted.
+     */
+    public TrustSet without(UUID player) {
+        if (!contains(player)) {
+            return this;
+        }
+        UUID[] members = new UUID[size - 1];
+        int i = 0;
+        for (UUID member : table) {
+            if (member != null && !member.equals(player)) {
+                members[i++] = member;
+            }
+        }
+        return intern(new TrustSet(members));
+    }
+
+    /**
+     * Trust groups referenced by this set. Does not allocate.
+     */
+    UUID[] groupRefs() {
+        return groupRefs;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    private UUID[] toArray() {
+        UUID[] members = new UUID[size];
+        int i = 0;
+        for (UUID member : table) {
+            if (member != null) {
+                members[i++] = member;
+            }
+        }
+        return members;
+    }
+
+    private int slot(UUID player) {
+        int h = player.hashCode();
+        return (h ^ (h >>> 16)) & (table.length - 1);
+    }
+
+    @Override
+    public Iterator<UUID> iterator() {
+        return new Iterator<>() {
+            private int index = advance(0);
+
+            private int advance(int from) {
+                while (from < table.length && table[from] == null) {
+                    from++;
+                }
+                return from;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return index < table.length;
+            }
+
+            @Override
+            public UUID next() {
+                if (index >= table.length) {
+                    throw new NoSuchElementException();
+                }
+                UUID member = table[index];
+                index = advance(index + 1);
+                return member;
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TrustSet other) || other.size != size || other.hash != hash) {
+            return false;
+        }
+        for (UUID member : table) {
+            if (member != null && !other.contains(member)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        List<UUID> members = new ArrayList<>(size);
+        forEach(members::add);
+        return members.toString();
+    }
+
+    /**
+     * Reads and writes the set as a JSON array of UUID strings.
+     */
+    public static class Adapter extends TypeAdapter<TrustSet> {
+
+        @Override
+        public void write(JsonWriter out, TrustSet value) throws IOException {
+            out.beginArray();
+            for (UUID member : value) {
+                out.value(member.toString());
+            }
+            out.endArray();
+        }
+
+        @Override
+        public TrustSet read(JsonReader in) throws IOException {
+            List<UUID> members = new ArrayList<>();
+            in.beginArray();
+            while (in.hasNext()) {
+                members.add(UUID.fromString(in.nextString()));
+            }
+            in.endArray();
+            return of(members);
+        }
+    }
+}
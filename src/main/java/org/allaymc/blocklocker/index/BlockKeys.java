@@ -0,0 +1,76 @@
+package org.allaymc.blocklocker.index;
+
+/**
+ * Packs block and chunk coordinates into primitive keys so they can be used as
+ * map keys without building strings.
+ * <p>
+ * Block layout: 26 bits x, 26 bits z, 12 bits y (two's complement), which covers
+ * x/z in [-33554432, 33554431] and y in [-2048, 2047]. Chunk keys hold the chunk x
+ * in the high and the chunk z in the low 32 bits. Local keys address a block
+ * inside its chunk: 12 bits y, 4 bits z, 4 bits x.
+ */
+public final class BlockKeys {
+
+    private static final int XZ_BITS = 26;
+    private static final int Y_BITS = 12;
+    private static final long XZ_MASK = (1L << XZ_BITS) - 1;
+    private static final long Y_MASK = (1L << Y_BITS) - 1;
+    private static final int Z_SHIFT = Y_BITS;
+    private static final int X_SHIFT = Y_BITS + XZ_BITS;
+
+    private BlockKeys() {
+    }
+
+    /**
+     * Pack a block position into a key.
+     */
+    public static long pack(int x, int y, int z) {
+        return ((x & XZ_MASK) << X_SHIFT) | ((z & XZ_MASK) << Z_SHIFT) | (y & Y_MASK);
+    }
+
+    public static int unpackX(long key) {
+        return (int) (key >> X_SHIFT);
+    }
+
+    public static int unpackY(long key) {
+        return (int) (key << (64 - Y_BITS) >> (64 - Y_BITS));
+    }
+
+    public static int unpackZ(long key) {
+        return (int) (key << (64 - X_SHIFT) >> (64 - XZ_BITS));
+    }
+
+    /**
+     * Pack chunk coordinates into a key.
+     */
+    public static long chunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    public static int chunkX(long chunkKey) {
+        return (int) (chunkKey >> 32);
+    }
+
+    public static int chunkZ(long chunkKey) {
+        return (int) chunkKey;
+    }
+
+    /**
+     * Pack the position of a block inside its chunk.
+     */
+    public static int localKey(int x, int y, int z) {
+        return ((y & (int) Y_MASK) << 8) | ((z & 15) << 4) | (x & 15);
+    }
+
+    public static int localX(int localKey) {
+        return localKey & 15;
+    }
+
+    public static int localY(int localKey) {
+        return localKey << (32 - 8 - Y_BITS) >> (32 - Y_BITS);
+    }
+
+    public static int localZ(int localKey) {
+        return (localKey >> 4) & 15;
+    }
+}
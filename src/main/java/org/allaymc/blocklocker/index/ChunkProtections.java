@@ -0,0 +1,270 @@
+package org.allaymc.blocklocker.index;
+
+import lombok.Getter;
+import org.allaymc.blocklocker.data.TrustSet;
+
+import java.util.Arrays;
+
+/**
+ * Protections inside a single chunk, stored as parallel primitive columns with one
+ * row per occupied block position, sorted by local key. No object is kept per
+ * protection: owners are ids into the {@link OwnerTable}, trust sets are shared
+ * interned references, and {@link DimensionIndex} builds a
+ * {@link org.allaymc.blocklocker.data.ProtectedBlock} view from a row on demand.
+ * Guarded by the lock of the owning {@link DimensionIndex}.
+ * <p>
+ * A 256-bit occupancy bitmap marks the block columns (x/z) that hold at least one
+ * protection, so most misses inside an occupied chunk are one bit test instead of
+ * a binary search.
+ * <p>
+ * Blocks that belong to a multi-block protection anchored elsewhere are stored as
+ * alias rows holding the anchor's packed position, so a lookup at either half of a
+ * door or double chest needs at most one more search. {@link #size()} only counts
+ * anchors.
+ */
+public class ChunkProtections {
+
+    // Row flags
+    static final byte REDSTONE = 1;
+    static final byte HOPPERS = 1 << 1;
+    static final byte ALIAS = 1 << 2;
+
+    private static final int INITIAL_CAPACITY = 2;
+
+    @Getter
+    private final int chunkX;
+    @Getter
+    private final int chunkZ;
+
+    // Replaced as a whole when growing, so an optimistic reader always sees columns of
+    // the same length. Capacity never shrinks, so a row index read once stays in bounds
+    private Rows rows = new Rows(INITIAL_CAPACITY);
+    private int count;
+
+    // One bit per column, indexed by (localZ << 4) | localX
+    private final long[] columns = new long[4];
+
+    // Rows that are not aliases
+    private int anchors;
+
+    ChunkProtections(int chunkX, int chunkZ) {
+        this.chunkX = chunkX;
+        this.chunkZ = chunkZ;
+    }
+
+    /**
+     * Columns of a chunk. For anchors {@code values} holds the creation time and
+     * {@code owners}/{@code trust}/{@code members} are set; for aliases {@code values}
+     * holds the packed anchor position and the rest is unused. Anchors without members
+     * store {@code null} instead of an empty array.
+     */
+    static final class Rows {
+
+        final int[] keys;
+        final int[] owners;
+        final long[] values;
+        final byte[] flags;
+        final TrustSet[] trust;
+        final long[][] members;
+
+        Rows(int capacity) {
+            this.keys = new int[capacity];
+            this.owners = new int[capacity];
+            this.values = new long[capacity];
+            this.flags = new byte[capacity];
+            this.trust = new TrustSet[capacity];
+            this.members = new long[capacity][];
+        }
+
+        private Rows(Rows rows, int capacity) {
+            this.keys = Arrays.copyOf(rows.keys, capacity);
+            this.owners = Arrays.copyOf(rows.owners, capacity);
+            this.values = Arrays.copyOf(rows.values, capacity);
+            this.flags = Arrays.copyOf(rows.flags, capacity);
+            this.trust = Arrays.copyOf(rows.trust, capacity);
+            this.members = Arrays.copyOf(rows.members, capacity);
+        }
+    }
+
+    Rows rows() {
+        return rows;
+    }
+
+    /**
+     * Find the row of a position.
+     *
+     * @return the row, or a negative value if the position is not stored
+     */
+    int find(int x, int y, int z) {
+        Rows rows = this.rows;
+        // Clamp for optimistic readers that may see a count from a later, larger table
+        return Arrays.binarySearch(rows.keys, 0, Math.min(count, rows.keys.length), BlockKeys.localKey(x, y, z));
+    }
+
+    /**
+     * Whether any protection may exist in the column of a block. {@code false} is exact.
+     */
+    boolean mayContainColumn(int x, int z) {
+        int column = column(x, z);
+        return (columns[column >>> 6] & (1L << column)) != 0;
+    }
+
+    boolean isAlias(int row) {
+        return (rows.flags[row] & ALIAS) != 0;
+    }
+
+    /**
+     * Packed position of the anchor an alias row points to.
+     */
+    long anchorOf(int row) {
+        return rows.values[row];
+    }
+
+    /**
+     * Block x of a row.
+     */
+    int blockX(int row) {
+        return (chunkX << 4) | BlockKeys.localX(rows.keys[row]);
+    }
+
+    int blockY(int row) {
+        return BlockKeys.localY(rows.keys[row]);
+    }
+
+    int blockZ(int row) {
+        return (chunkZ << 4) | BlockKeys.localZ(rows.keys[row]);
+    }
+
+    /**
+     * Store the anchor row of a protection, replacing whatever row was at its position.
+     */
+    void putAnchor(int x, int y, int z, int owner, long createdAt, byte flags, TrustSet trust, long[] members) {
+        int row = insertRow(x, y, z);
+        Rows rows = this.rows;
+        rows.owners[row] = owner;
+        rows.values[row] = createdAt;
+        rows.flags[row] = (byte) (flags & ~ALIAS);
+        rows.trust[row] = trust;
+        rows.members[row] = members.length > 0 ? members : null;
+        anchors++;
+    }
+
+    /**
+     * Store a row pointing to the anchor of the protection that covers a position.
+     */
+    void putAlias(int x, int y, int z, long anchor) {
+        int row = insertRow(x, y, z);
+        Rows rows = this.rows;
+        rows.owners[row] = OwnerTable.NO_OWNER;
+        rows.values[row] = anchor;
+        rows.flags[row] = ALIAS;
+        rows.trust[row] = null;
+        rows.members[row] = null;
+    }
+
+    /**
+     * Replace the trust set and flags of an anchor row.
+     */
+    void update(int row, TrustSet trust, byte flags) {
+        rows.trust[row] = trust;
+        rows.flags[row] = (byte) (flags & ~ALIAS);
+    }
+
+    // Get the row for a position, making room for a new one in key order if needed
+    private int insertRow(int x, int y, int z) {
+        int key = BlockKeys.localKey(x, y, z);
+        int row = Arrays.binarySearch(rows.keys, 0, count, key);
+        if (row >= 0) {
+            if (!isAlias(row)) {
+                anchors--;
+            }
+            return row;
+        }
+        row = -row - 1;
+        Rows rows = this.rows;
+        if (count == rows.keys.length) {
+            rows = new Rows(rows, count + Math.max(INITIAL_CAPACITY, count >> 1));
+        }
+        int tail = count - row;
+        if (tail > 0) {
+            // Optimistic readers may see a half-shifted table; they fail validation and retry
+            System.arraycopy(rows.keys, row, rows.keys, row + 1, tail);
+            System.arraycopy(rows.owners, row, rows.owners, row + 1, tail);
+            System.arraycopy(rows.values, row, rows.values, row + 1, tail);
+            System.arraycopy(rows.flags, row, rows.flags, row + 1, tail);
+            System.arraycopy(rows.trust, row, rows.trust, row + 1, tail);
+            System.arraycopy(rows.members, row, rows.members, row + 1, tail);
+        }
+        rows.keys[row] = key;
+        this.rows = rows;
+        count++;
+        int column = column(x, z);
+        columns[column >>> 6] |= 1L << column;
+        return row;
+    }
+
+    /**
+     * Remove a row.
+     */
+    void removeRow(int row) {
+        Rows rows = this.rows;
+        int key = rows.keys[row];
+        if ((rows.flags[row] & ALIAS) == 0) {
+            anchors--;
+        }
+        int tail = count - row - 1;
+        System.arraycopy(rows.keys, row + 1, rows.keys, row, tail);
+        System.arraycopy(rows.owners, row + 1, rows.owners, row, tail);
+        System.arraycopy(rows.values, row + 1, rows.values, row, tail);
+        System.arraycopy(rows.flags, row + 1, rows.flags, row, tail);
+        System.arraycopy(rows.trust, row + 1, rows.trust, row, tail);
+        System.arraycopy(rows.members, row + 1, rows.members, row, tail);
+        count--;
+        rows.trust[count] = null;
+        rows.members[count] = null;
+
+        // Clear the column bit unless another row is stacked in the same column
+        for (int i = 0; i < count; i++) {
+            if ((rows.keys[i] & 0xFF) == (key & 0xFF)) {
+                return;
+            }
+        }
+        int column = key & 0xFF;
+        columns[column >>> 6] &= ~(1L << column);
+    }
+
+    private static int column(int x, int z) {
+        return ((z & 15) << 4) | (x & 15);
+    }
+
+    /**
+     * Visit the rows of the protections anchored in this chunk.
+     */
+    void forEachAnchor(RowConsumer consumer) {
+        Rows rows = this.rows;
+        for (int row = 0; row < count; row++) {
+            if ((rows.flags[row] & ALIAS) == 0) {
+                consumer.accept(this, row);
+            }
+        }
+    }
+
+    /**
+     * Number of protections anchored in this chunk.
+     */
+    public int size() {
+        return anchors;
+    }
+
+    /**
+     * Whether this chunk holds neither anchors nor aliases.
+     */
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    @FunctionalInterface
+    interface RowConsumer {
+        void accept(ChunkProtections chunk, int row);
+    }
+}
@@ -0,0 +1,801 @@
+package org.allaymc.blocklocker.index;
+
+import lombok.Getter;
+import org.allaymc.blocklocker.data.Access;
+import org.allaymc.blocklocker.data.ProtectedBlock;
+import org.allaymc.blocklocker.data.TrustGroups;
+import org.allaymc.blocklocker.data.TrustSet;
+import org.allaymc.blocklocker.util.LongObjectHashMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+
+/**
+ * Protections of a single world dimension, sharded by chunk and then keyed by
+ * local position inside the chunk.
+ * <p>
+ * Point lookups are a primitive probe and a binary search, and are optimistic and
+ * lock-free in the common case; writes take an exclusive lock. Protections are kept
+ * as primitive rows (see {@link ChunkProtections}), and the {@link ProtectedBlock}s
+ * handed out are views built on demand: changing one does not change the index,
+ * write it back with {@link #update} or {@link #put}. Area queries only visit the chunks
+ * that overlap the area, so their cost scales with the area and not with the
+ * total number of protections.
+ * <p>
+ * Only the protections of resident {@link Region regions} are held here; see
+ * {@link #isReady(int, int)} before trusting a miss.
+ */
+public class DimensionIndex {
+
+    /**
+     * Interned id of this world/dimension pair, unique for the lifetime of the index.
+     */
+    @Getter
+    private final int id;
+    @Getter
+    private final String worldName;
+    @Getter
+    private final int dimensionId;
+
+    // Positions handled per sort in findProtected; the index must fit into 20 bits
+    private static final int MAX_BATCH = 1 << 20;
+    private static final long CHUNK_MASK = (1L << 22) - 1;
+
+    private final LongObjectHashMap<ChunkProtections> chunks = new LongObjectHashMap<>();
+    private final LongObjectHashMap<Region> regions = new LongObjectHashMap<>();
+    private final StampedLock lock = new StampedLock();
+    private final OwnerTable owners;
+    private final TrustGroups trustGroups;
+    private final ProtectionIndex parent;
+    private int size;
+
+    // Row readers for probe, created once so that lookups do not allocate
+    private static final RowReader<Boolean> PRESENT = (chunk, row, player) -> Boolean.TRUE;
+    private final RowReader<ProtectedBlock> viewReader = (chunk, row, player) -> view(chunk, row);
+    private final RowReader<Access> accessReader = this::accessOf;
+
+    DimensionIndex(int id, String worldName, int dimensionId, OwnerTable owners, TrustGroups trustGroups,
+                   ProtectionIndex parent) {
+        this.id = id;
+        this.worldName = worldName;
+        this.dimensionId = dimensionId;
+        this.owners = owners;
+        this.trustGroups = trustGroups;
+        this.parent = parent;
+    }
+
+    /**
+     * Get the protection at a position, as a view built from its row. Allocates the
+     * view; {@link #access} and {@link #contains} answer the common checks without it.
+     */
+    public ProtectedBlock get(int x, int y, int z) {
+        return read(x, y, z, null, viewReader);
+    }
+
+    /**
+     * Check a player against the protection at a position. Does not allocate.
+     */
+    public Access access(int x, int y, int z, UUID player) {
+        Access access = read(x, y, z, player, accessReader);
+        return access != null ? access : Access.NONE;
+    }
+
+    /**
+     * Whether a position is covered by a protection. Does not allocate.
+     */
+    public boolean contains(int x, int y, int z) {
+        return read(x, y, z, null, PRESENT) != null;
+    }
+
+    private <T> T read(int x, int y, int z, UUID player, RowReader<T> reader) {
+        long stamp = lock.tryOptimisticRead();
+        T result = probe(x, y, z, player, reader);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                result = probe(x, y, z, player, reader);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Cheap negative filter: {@code false} means there is definitely no protection in the
+     * block column at x/z, because its chunk or its column is empty. Does not allocate.
+     */
+    public boolean mayContain(int x, int z) {
+        long stamp = lock.tryOptimisticRead();
+        boolean result = probeColumn(x, z);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                result = probeColumn(x, z);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return result;
+    }
+
+    private boolean probeColumn(int x, int z) {
+        ChunkProtections chunk = chunks.get(BlockKeys.chunkKey(x >> 4, z >> 4));
+        return chunk != null && chunk.mayContainColumn(x, z);
+    }
+
+    // Find the anchor row covering a position, following an alias, and read it
+    private <T> T probe(int x, int y, int z, UUID player, RowReader<T> reader) {
+        ChunkProtections chunk = chunks.get(BlockKeys.chunkKey(x >> 4, z >> 4));
+        if (chunk == null || !chunk.mayContainColumn(x, z)) {
+            return null;
+        }
+        int row = chunk.find(x, y, z);
+        if (row < 0) {
+            return null;
+        }
+        if (chunk.isAlias(row)) {
+            long anchor = chunk.anchorOf(row);
+            int anchorX = BlockKeys.unpackX(anchor);
+            int anchorZ = BlockKeys.unpackZ(anchor);
+            chunk = chunks.get(BlockKeys.chunkKey(anchorX >> 4, anchorZ >> 4));
+            if (chunk == null) {
+                return null;
+            }
+            row = chunk.find(anchorX, BlockKeys.unpackY(anchor), anchorZ);
+            if (row < 0 || chunk.isAlias(row)) {
+                return null;
+            }
+        }
+        return reader.read(chunk, row, player);
+    }
+
+    // Build a detached protection from an anchor row
+    private ProtectedBlock view(ChunkProtections chunk, int row) {
+        ChunkProtections.Rows rows = chunk.rows();
+        int owner = rows.owners[row];
+        byte flags = rows.flags[row];
+        TrustSet trust = rows.trust[row];
+        long[] members = rows.members[row];
+        return new ProtectedBlock(worldName, dimensionId, chunk.blockX(row), chunk.blockY(row), chunk.blockZ(row),
+                owners.uuid(owner), owners.name(owner), rows.values[row],
+                trust != null ? trust : TrustSet.EMPTY,
+                (flags & ChunkProtections.REDSTONE) != 0, (flags & ChunkProtections.HOPPERS) != 0,
+                members != null ? members : ProtectedBlock.NO_MEMBERS);
+    }
+
+    private Access accessOf(ChunkProtections chunk, int row, UUID player) {
+        ChunkProtections.Rows rows = chunk.rows();
+        UUID owner = owners.uuid(rows.owners[row]);
+        if (player.equals(owner)) {
+            return Access.OWNER;
+        }
+        // Null only for a torn optimistic read, which is retried
+        TrustSet trust = rows.trust[row];
+        if (trust == null || owner == null) {
+            return Access.DENIED;
+        }
+        return trust.contains(player) || trustGroups.isTrusted(owner, trust, player) ? Access.TRUSTED : Access.DENIED;
+    }
+
+    /**
+     * Batch variant of {@link #get} for explosions and pistons: mark the positions that are
+     * protected, or whose protections are not loaded yet. Positions are grouped by chunk
+     * first, so each chunk is probed once and the lock is taken once for the whole batch.
+     *
+     * @param positions packed positions, see {@link BlockKeys#pack}
+     * @param result    receives the index of every protected or not yet loaded position
+     * @return {@code false} if some positions were marked because their region is not loaded
+     */
+    public boolean findProtected(long[] positions, BitSet result) {
+        boolean ready = true;
+        long stamp = lock.readLock();
+        try {
+            for (int offset = 0; offset < positions.length; offset += MAX_BATCH) {
+                ready &= findProtected(positions, offset, Math.min(positions.length, offset + MAX_BATCH), result);
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        return ready;
+    }
+
+    // Read lock held
+    private boolean findProtected(long[] positions, int from, int to, BitSet result) {
+        // Sort keys: chunk x and z in the high 44 bits, the position's index in the low 20
+        long[] order = new long[to - from];
+        for (int i = from; i < to; i++) {
+            long position = positions[i];
+            long chunkX = (BlockKeys.unpackX(position) >> 4) & CHUNK_MASK;
+            long chunkZ = (BlockKeys.unpackZ(position) >> 4) & CHUNK_MASK;
+            order[i - from] = (chunkX << 42) | (chunkZ << 20) | (i - from);
+        }
+        Arrays.sort(order);
+
+        boolean ready = true;
+        long currentGroup = -1;
+        ChunkProtections chunk = null;
+        boolean chunkReady = false;
+        for (long key : order) {
+            int index = from + (int) (key & (MAX_BATCH - 1));
+            long position = positions[index];
+            int x = BlockKeys.unpackX(position);
+            int z = BlockKeys.unpackZ(position);
+            if (key >>> 20 != currentGroup) {
+                currentGroup = key >>> 20;
+                chunk = chunks.get(BlockKeys.chunkKey(x >> 4, z >> 4));
+                Region region = regions.get(Region.keyOfChunk(x >> 4, z >> 4));
+                chunkReady = region != null && region.isLoaded();
+            }
+            boolean positionReady = chunkReady;
+            if (positionReady && isOnRegionBorder(x, z)) {
+                positionReady = isReady(x, z);
+            }
+            if (!positionReady) {
+                ready = false;
+                result.set(index);
+            } else if (chunk != null && chunk.mayContainColumn(x, z)
+                    && chunk.find(x, BlockKeys.unpackY(position), z) >= 0) {
+                result.set(index);
+            }
+        }
+        return ready;
+    }
+
+    private static boolean isOnRegionBorder(int x, int z) {
+        int localX = x & Region.BLOCK_MASK;
+        int localZ = z & Region.BLOCK_MASK;
+        return localX == 0 || localX == Region.BLOCK_MASK || localZ == 0 || localZ == Region.BLOCK_MASK;
+    }
+
+    /**
+     * Store a protection at its anchor and member positions. Any other protection that
+     * occupies one of those positions is removed as a whole.
+     *
+     * @return the protections that were replaced, including a previous one at the same anchor
+     */
+    public List<ProtectedBlock> put(ProtectedBlock block) {
+        List<ProtectedBlock> displaced = List.of();
+        long stamp = lock.writeLock();
+        try {
+            // Fails before anything changes if the region is not in memory
+            Region region = residentRegion(block.getX() >> 4, block.getZ() >> 4);
+            displaced = displace(displaced, block.getX(), block.getY(), block.getZ());
+            for (long member : block.getMembers()) {
+                displaced = displace(displaced,
+                        BlockKeys.unpackX(member), BlockKeys.unpackY(member), BlockKeys.unpackZ(member));
+            }
+            insert(block);
+            size++;
+            region.dirty = true;
+            return displaced;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private List<ProtectedBlock> displace(List<ProtectedBlock> displaced, int x, int y, int z) {
+        ProtectedBlock existing = probe(x, y, z, null, viewReader);
+        if (existing == null) {
+            return displaced;
+        }
+        removeStructure(existing);
+        if (displaced.isEmpty()) {
+            displaced = new ArrayList<>(2);
+        }
+        displaced.add(existing);
+        return displaced;
+    }
+
+    /**
+     * Remove the protection covering a position, with all of its blocks.
+     *
+     * @return the removed protection, whose position is its anchor
+     */
+    public ProtectedBlock remove(int x, int y, int z) {
+        long stamp = lock.writeLock();
+        try {
+            ProtectedBlock removed = probe(x, y, z, null, viewReader);
+            if (removed != null) {
+                removeStructure(removed);
+            }
+            return removed;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Write the trust list and flags of a protection back to its row, after changing
+     * them on a view returned by {@link #get}.
+     *
+     * @return {@code false} if the protection is not in memory
+     */
+    public boolean update(ProtectedBlock block) {
+        long stamp = lock.writeLock();
+        try {
+            ChunkProtections chunk = chunks.get(BlockKeys.chunkKey(block.getX() >> 4, block.getZ() >> 4));
+            int row = chunk != null ? chunk.find(block.getX(), block.getY(), block.getZ()) : -1;
+            if (row < 0 || chunk.isAlias(row)) {
+                return false;
+            }
+            chunk.update(row, trustOf(block), flagsOf(block));
+            residentRegion(block.getX() >> 4, block.getZ() >> 4).dirty = true;
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Write lock held: add the anchor and alias rows of a protection
+    private void insert(ProtectedBlock block) {
+        insertAnchor(block);
+        long anchor = BlockKeys.pack(block.getX(), block.getY(), block.getZ());
+        for (long member : block.getMembers()) {
+            insertAlias(BlockKeys.unpackX(member), BlockKeys.unpackY(member), BlockKeys.unpackZ(member), anchor);
+        }
+    }
+
+    private void insertAnchor(ProtectedBlock block) {
+        int owner = owners.intern(block.getOwnerUuid(), block.getOwnerName());
+        chunkAt(block.getX(), block.getZ()).putAnchor(block.getX(), block.getY(), block.getZ(),
+                owner, block.getCreatedAt(), flagsOf(block), trustOf(block), block.getMembers());
+    }
+
+    private void insertAlias(int x, int y, int z, long anchor) {
+        chunkAt(x, z).putAlias(x, y, z, anchor);
+    }
+
+    private ChunkProtections chunkAt(int x, int z) {
+        long chunkKey = BlockKeys.chunkKey(x >> 4, z >> 4);
+        ChunkProtections chunk = chunks.get(chunkKey);
+        if (chunk == null) {
+            chunk = new ChunkProtections(x >> 4, z >> 4);
+            chunks.put(chunkKey, chunk);
+        }
+        return chunk;
+    }
+
+    private static byte flagsOf(ProtectedBlock block) {
+        return (byte) ((block.isAllowRedstone() ? ChunkProtections.REDSTONE : 0)
+                | (block.isAllowHoppers() ? ChunkProtections.HOPPERS : 0));
+    }
+
+    private static TrustSet trustOf(ProtectedBlock block) {
+        return block.getTrustedPlayers() != null ? block.getTrustedPlayers() : TrustSet.EMPTY;
+    }
+
+    // Write lock held: drop the anchor and alias rows of a protection
+    private void removeStructure(ProtectedBlock block) {
+        long anchor = BlockKeys.pack(block.getX(), block.getY(), block.getZ());
+        removeEntry(block.getX(), block.getY(), block.getZ(), anchor);
+        for (long member : block.getMembers()) {
+            removeEntry(BlockKeys.unpackX(member), BlockKeys.unpackY(member), BlockKeys.unpackZ(member), anchor);
+        }
+        size--;
+        residentRegion(block.getX() >> 4, block.getZ() >> 4).dirty = true;
+    }
+
+    // Only removes the row if it still belongs to the protection anchored at the given position
+    private void removeEntry(int x, int y, int z, long anchor) {
+        long chunkKey = BlockKeys.chunkKey(x >> 4, z >> 4);
+        ChunkProtections chunk = chunks.get(chunkKey);
+        int row = chunk != null ? chunk.find(x, y, z) : -1;
+        if (row < 0) {
+            return;
+        }
+        boolean belongs = chunk.isAlias(row) ? chunk.anchorOf(row) == anchor : BlockKeys.pack(x, y, z) == anchor;
+        if (!belongs) {
+            return;
+        }
+        chunk.removeRow(row);
+        if (chunk.isEmpty()) {
+            chunks.remove(chunkKey);
+        }
+    }
+
+    /**
+     * Mark a region as changed, e.g. after writing it to disk failed.
+     */
+    public void markDirty(Region region) {
+        region.dirty = true;
+    }
+
+    /**
+     * Whether the protections around a block position are known. A {@code false} result
+     * means a region is not loaded yet and every block in it must be treated as
+     * possibly protected. Next to a region border the neighbouring region must be
+     * loaded too, since a door or double chest may be anchored there. Does not allocate.
+     */
+    public boolean isReady(int x, int z) {
+        if (!isRegionReady(x, z)) {
+            return false;
+        }
+        int localX = x & Region.BLOCK_MASK;
+        int localZ = z & Region.BLOCK_MASK;
+        return (localX != 0 || isRegionReady(x - 1, z))
+                && (localX != Region.BLOCK_MASK || isRegionReady(x + 1, z))
+                && (localZ != 0 || isRegionReady(x, z - 1))
+                && (localZ != Region.BLOCK_MASK || isRegionReady(x, z + 1));
+    }
+
+    private boolean isRegionReady(int x, int z) {
+        Region region = getRegionOfChunk(x >> 4, z >> 4);
+        if (region == null) {
+            return false;
+        }
+        region.touch();
+        return region.isLoaded();
+    }
+
+    /**
+     * Get the region containing a chunk, or {@code null} if it is not resident.
+     */
+    public Region getRegionOfChunk(int chunkX, int chunkZ) {
+        long key = Region.keyOfChunk(chunkX, chunkZ);
+        long stamp = lock.tryOptimisticRead();
+        Region region = regions.get(key);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                region = regions.get(key);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return region;
+    }
+
+    /**
+     * Get the region containing a chunk, registering it as not yet loaded if it is not resident.
+     * Callers that get back a region that is not loaded and not being loaded must load it.
+     *
+     * @param created receives {@code true} at index 0 if the region was registered by this call
+     */
+    public Region getOrCreateRegionOfChunk(int chunkX, int chunkZ, boolean[] created) {
+        Region region = getRegionOfChunk(chunkX, chunkZ);
+        if (region != null) {
+            created[0] = false;
+            return region;
+        }
+        long key = Region.keyOfChunk(chunkX, chunkZ);
+        long stamp = lock.writeLock();
+        try {
+            region = regions.get(key);
+            created[0] = region == null;
+            if (region == null) {
+                region = new Region(this, chunkX >> Region.SHIFT, chunkZ >> Region.SHIFT);
+                regions.put(key, region);
+            }
+            return region;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Get the resident region of a chunk under the write lock. Only while the index holds
+     * every protection (see {@link ProtectionIndex#isComplete()}) is a missing region
+     * registered as loaded; otherwise its protections are still on disk, and a region
+     * made up of just the new protection would be written over them.
+     *
+     * @throws IllegalStateException if the region is not resident
+     */
+    private Region residentRegion(int chunkX, int chunkZ) {
+        long key = Region.keyOfChunk(chunkX, chunkZ);
+        Region region = regions.get(key);
+        if (region == null) {
+            if (!parent.isComplete()) {
+                throw new IllegalStateException("Protection region " + (chunkX >> Region.SHIFT) + ", "
+                        + (chunkZ >> Region.SHIFT) + " of " + worldName + " is not loaded");
+            }
+            region = new Region(this, chunkX >> Region.SHIFT, chunkZ >> Region.SHIFT);
+            region.markLoaded();
+            regions.put(key, region);
+        }
+        return region;
+    }
+
+    /**
+     * Fill a region with the protections read from disk and mark it loaded.
+     * Protections already present (added while the region was loading) win.
+     */
+    public void completeRegionLoad(Region region, List<ProtectedBlock> blocks) {
+        long stamp = lock.writeLock();
+        try {
+            for (ProtectedBlock block : blocks) {
+                if (probe(block.getX(), block.getY(), block.getZ(), null, PRESENT) != null) {
+                    continue;
+                }
+                insertAnchor(block);
+                long anchor = BlockKeys.pack(block.getX(), block.getY(), block.getZ());
+                for (long member : block.getMembers()) {
+                    insertAliasIfFree(member, anchor);
+                }
+                size++;
+            }
+            // Protections anchored just outside the region may have blocks inside it,
+            // which were dropped when the region was last evicted
+            forEachChunkAroundRegion(region, chunk -> chunk.forEachAnchor((anchorChunk, row) -> {
+                long[] members = anchorChunk.rows().members[row];
+                if (members == null) {
+                    return;
+                }
+                long anchor = BlockKeys.pack(anchorChunk.blockX(row), anchorChunk.blockY(row), anchorChunk.blockZ(row));
+                for (long member : members) {
+                    if (isInRegion(region, BlockKeys.unpackX(member), BlockKeys.unpackZ(member))) {
+                        insertAliasIfFree(member, anchor);
+                    }
+                }
+            }));
+            region.markLoaded();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private void insertAliasIfFree(long member, long anchor) {
+        int x = BlockKeys.unpackX(member);
+        int y = BlockKeys.unpackY(member);
+        int z = BlockKeys.unpackZ(member);
+        if (probe(x, y, z, null, PRESENT) == null) {
+            insertAlias(x, y, z, anchor);
+        }
+    }
+
+    /**
+     * Copy the protections of a region for writing it to disk, and clear its dirty flag.
+     * Changes made after this call mark the region dirty again.
+     */
+    public List<ProtectedBlock> snapshotRegion(Region region) {
+        List<ProtectedBlock> result = new ArrayList<>();
+        long stamp = lock.writeLock();
+        try {
+            region.dirty = false;
+            forEachChunkInRegion(region, chunk -> chunk.forEachAnchor((anchorChunk, row) -> result.add(view(anchorChunk, row))));
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        return result;
+    }
+
+    /**
+     * Drop a clean region and its protections from memory.
+     *
+     * @return {@code false} if the region changed since it was last written, or a change
+     * to it is in progress, and it was kept
+     */
+    public boolean evictRegion(Region region) {
+        long stamp = lock.writeLock();
+        try {
+            if (region.dirty || !region.isLoaded() || region.isPinned()) {
+                return false;
+            }
+            List<Long> emptied = new ArrayList<>();
+            List<ProtectedBlock> spanning = new ArrayList<>();
+            forEachChunkInRegion(region, chunk -> {
+                size -= chunk.size();
+                emptied.add(BlockKeys.chunkKey(chunk.getChunkX(), chunk.getChunkZ()));
+                chunk.forEachAnchor((anchorChunk, row) -> {
+                    if (anchorChunk.rows().members[row] != null) {
+                        spanning.add(view(anchorChunk, row));
+                    }
+                });
+            });
+            for (long chunkKey : emptied) {
+                chunks.remove(chunkKey);
+            }
+            // Blocks of evicted protections that lie in a neighbouring region
+            for (ProtectedBlock block : spanning) {
+                long anchor = BlockKeys.pack(block.getX(), block.getY(), block.getZ());
+                for (long member : block.getMembers()) {
+                    removeEntry(BlockKeys.unpackX(member), BlockKeys.unpackY(member), BlockKeys.unpackZ(member), anchor);
+                }
+            }
+            regions.remove(BlockKeys.chunkKey(region.getRegionX(), region.getRegionZ()));
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Forget a region whose load failed, so the next access tries again.
+     */
+    public void discardRegion(Region region) {
+        long stamp = lock.writeLock();
+        try {
+            long key = BlockKeys.chunkKey(region.getRegionX(), region.getRegionZ());
+            if (!region.isLoaded() && regions.get(key) == region) {
+                regions.remove(key);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Copy the resident regions of this dimension.
+     */
+    public List<Region> getRegions() {
+        long stamp = lock.readLock();
+        try {
+            return regions.values();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private void forEachChunkInRegion(Region region, Consumer<ChunkProtections> consumer) {
+        int minChunkX = region.getRegionX() << Region.SHIFT;
+        int minChunkZ = region.getRegionZ() << Region.SHIFT;
+        int span = 1 << Region.SHIFT;
+        for (int chunkX = minChunkX; chunkX < minChunkX + span; chunkX++) {
+            for (int chunkZ = minChunkZ; chunkZ < minChunkZ + span; chunkZ++) {
+                ChunkProtections chunk = chunks.get(BlockKeys.chunkKey(chunkX, chunkZ));
+                if (chunk != null) {
+                    consumer.accept(chunk);
+                }
+            }
+        }
+    }
+
+    // Chunks in the one-chunk ring just outside a region
+    private void forEachChunkAroundRegion(Region region, Consumer<ChunkProtections> consumer) {
+        int minChunkX = (region.getRegionX() << Region.SHIFT) - 1;
+        int minChunkZ = (region.getRegionZ() << Region.SHIFT) - 1;
+        int maxChunkX = minChunkX + (1 << Region.SHIFT) + 1;
+        int maxChunkZ = minChunkZ + (1 << Region.SHIFT) + 1;
+        for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+            for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+                if (chunkX != minChunkX && chunkX != maxChunkX && chunkZ != minChunkZ && chunkZ != maxChunkZ) {
+                    continue;
+                }
+                ChunkProtections chunk = chunks.get(BlockKeys.chunkKey(chunkX, chunkZ));
+                if (chunk != null) {
+                    consumer.accept(chunk);
+                }
+            }
+        }
+    }
+
+    private static boolean isInRegion(Region region, int x, int z) {
+        return x >> Region.BLOCK_SHIFT == region.getRegionX() && z >> Region.BLOCK_SHIFT == region.getRegionZ();
+    }
+
+    /**
+     * Number of protections in memory, counting each multi-block protection once.
+     */
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Number of chunks that contain at least one protection.
+     */
+    public int chunkCount() {
+        long stamp = lock.readLock();
+        try {
+            return chunks.size();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Get all protections in a chunk.
+     */
+    public List<ProtectedBlock> getInChunk(int chunkX, int chunkZ) {
+        List<ProtectedBlock> result = new ArrayList<>();
+        long stamp = lock.readLock();
+        try {
+            ChunkProtections chunk = chunks.get(BlockKeys.chunkKey(chunkX, chunkZ));
+            if (chunk != null) {
+                chunk.forEachAnchor((anchorChunk, row) -> result.add(view(anchorChunk, row)));
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        return result;
+    }
+
+    /**
+     * Get all protections inside an axis-aligned box (bounds inclusive).
+     */
+    public List<ProtectedBlock> getInBox(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        List<ProtectedBlock> result = new ArrayList<>();
+        // Test the row's position first, so only matches are built
+        ChunkProtections.RowConsumer filter = (chunk, row) -> {
+            int x = chunk.blockX(row);
+            int y = chunk.blockY(row);
+            int z = chunk.blockZ(row);
+            if (x >= minX && x <= maxX && y >= minY && y <= maxY && z >= minZ && z <= maxZ) {
+                result.add(view(chunk, row));
+            }
+        };
+
+        int minChunkX = minX >> 4;
+        int minChunkZ = minZ >> 4;
+        int maxChunkX = maxX >> 4;
+        int maxChunkZ = maxZ >> 4;
+        long boxChunks = ((long) maxChunkX - minChunkX + 1) * ((long) maxChunkZ - minChunkZ + 1);
+
+        long stamp = lock.readLock();
+        try {
+            if (boxChunks > chunks.size()) {
+                // Box covers more chunks than we have; walking the occupied ones is cheaper
+                chunks.forEachValue(chunk -> {
+                    if (chunk.getChunkX() >= minChunkX && chunk.getChunkX() <= maxChunkX
+                            && chunk.getChunkZ() >= minChunkZ && chunk.getChunkZ() <= maxChunkZ) {
+                        chunk.forEachAnchor(filter);
+                    }
+                });
+            } else {
+                for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+                    for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+                        ChunkProtections chunk = chunks.get(BlockKeys.chunkKey(chunkX, chunkZ));
+                        if (chunk != null) {
+                            chunk.forEachAnchor(filter);
+                        }
+                    }
+                }
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        return result;
+    }
+
+    /**
+     * Get all protections within a spherical radius of a block position.
+     */
+    public List<ProtectedBlock> getInRadius(int centerX, int centerY, int centerZ, int radius) {
+        List<ProtectedBlock> inBox = getInBox(
+                centerX - radius, centerY - radius, centerZ - radius,
+                centerX + radius, centerY + radius, centerZ + radius);
+        long radiusSquared = (long) radius * radius;
+        inBox.removeIf(block -> {
+            long dx = block.getX() - centerX;
+            long dy = block.getY() - centerY;
+            long dz = block.getZ() - centerZ;
+            return dx * dx + dy * dy + dz * dz > radiusSquared;
+        });
+        return inBox;
+    }
+
+    /**
+     * Visit every protection in this dimension under a read lock.
+     */
+    public void forEach(Consumer<ProtectedBlock> consumer) {
+        long stamp = lock.readLock();
+        try {
+            chunks.forEachValue(chunk -> chunk.forEachAnchor((anchorChunk, row) -> consumer.accept(view(anchorChunk, row))));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Copy all protections in this dimension.
+     */
+    public List<ProtectedBlock> values() {
+        List<ProtectedBlock> result = new ArrayList<>();
+        forEach(result::add);
+        return result;
+    }
+
+    @FunctionalInterface
+    private interface RowReader<T> {
+        T read(ChunkProtections chunk, int row, UUID player);
+    }
+}
@@ -0,0 +1,38 @@
+package org.allaymc.blocklocker.index;
+
+import lombok.Getter;
+
+import java.util.UUID;
+
+/**
+ * Lightweight record of who owns the protection at a position. Unlike a full
+ * protected block, one of these is kept in memory for every protection,
+ * including those in regions that are not loaded.
+ */
+@Getter
+public class OwnedProtection {
+
+    private final DimensionIndex dimension;
+    private final int x;
+    private final int y;
+    private final int z;
+    private final UUID ownerUuid;
+    private final long createdAt;
+
+    OwnedProtection(DimensionIndex dimension, int x, int y, int z, UUID ownerUuid, long createdAt) {
+        this.dimension = dimension;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.ownerUuid = ownerUuid;
+        this.createdAt = createdAt;
+    }
+
+    public String getWorldName() {
+        return dimension.getWorldName();
+    }
+
+    public int getDimensionId() {
+        return dimension.getDimensionId();
+    }
+}
@@ -0,0 +1,461 @@
+package org.allaymc.blocklocker.index;
+
+import org.allaymc.blocklocker.data.ProtectedBlock;
+import org.allaymc.blocklocker.util.LongIntHashMap;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.IntFunction;
+
+/**
+ * Secondary index from owner to their protections, covering every protection and
+ * not just those of resident regions.
+ * <p>
+ * Entries are fixed-size {@link OwnerRecords} in an open-addressed table keyed by
+ * dimension and packed position, so a protection can be dropped by position without
+ * loading its region. The records of each owner are also linked into a list, so
+ * per-owner counts, also per dimension, are O(1) and listing an owner's protections
+ * does not scan the table. {@link OwnedProtection}s are only built when entries are copied out.
+ * <p>
+ * The records live on the heap, or with {@link #mapInto} in memory-mapped files,
+ * where a table saved by {@link #checkpoint} is reopened without reading it. Only this
+ * index is mapped: owner UUIDs stay on the heap in the {@link OwnerTable}, referenced by
+ * id, and so do the rows of loaded regions that access checks read, which region
+ * eviction keeps bounded instead. Changes are rare (lock, unlock, transfer), so a single
+ * monitor guards everything.
+ */
+public class OwnerIndex {
+
+    private static final int NONE = -1;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    // Grow or clean up once live and deleted records fill this share of the slots
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private static final String TABLE_PREFIX = "owners-";
+    private static final String TABLE_SUFFIX = ".table";
+
+    private final OwnerTable owners;
+    private final IntFunction<DimensionIndex> dimensions;
+
+    private OwnerRecords records = OwnerRecords.allocate(INITIAL_CAPACITY);
+
+    // Folder of the mapped table files, null while the records are on the heap
+    private Path mappedFolder;
+    private int tableSequence;
+
+    // Whether the mapped table still matches its last checkpoint
+    private boolean clean;
+
+    // Owner id -> first slot of the owner's list, and its length
+    private int[] heads = new int[0];
+    private int[] counts = new int[0];
+
+    // Owner id << 32 | dimension id -> protections of the owner there. Only kept for owners
+    // in dimensionCountsKnown; counted from the owner's list the first time they are asked
+    private final LongIntHashMap dimensionCounts = new LongIntHashMap();
+    private final BitSet dimensionCountsKnown = new BitSet();
+
+    private int size;
+
+    // Live and deleted records; deleted slots keep probe sequences intact
+    private int used;
+
+    OwnerIndex(OwnerTable owners, IntFunction<DimensionIndex> dimensions) {
+        this.owners = owners;
+        this.dimensions = dimensions;
+    }
+
+    /**
+     * Record the owner of a position, replacing any previous owner.
+     */
+    public synchronized void set(DimensionIndex dimension, int x, int y, int z, UUID ownerUuid, long createdAt) {
+        int owner = owners.intern(ownerUuid, null);
+        long position = BlockKeys.pack(x, y, z);
+        markChanged();
+        int slot = find(dimension.getId(), position);
+        if (slot >= 0) {
+            countInDimension(records.owner(slot), dimension.getId(), -1);
+            unlink(slot);
+        } else {
+            if (used + 1 > records.getCapacity() * LOAD_FACTOR) {
+                rehash();
+                slot = find(dimension.getId(), position);
+            }
+            slot = -slot - 1;
+            if (records.dimension(slot) == OwnerRecords.FREE) {
+                used++;
+            }
+            records.setKey(slot, dimension.getId() + 1, position);
+            size++;
+        }
+        records.setCreatedAt(slot, createdAt);
+        link(slot, owner);
+        countInDimension(owner, dimension.getId(), 1);
+    }
+
+    /**
+     * Record the owners of many protections of one dimension under a single lock
+     * acquisition, e.g. a whole region file while rebuilding the index.
+     */
+    public synchronized void setAll(DimensionIndex dimension, List<ProtectedBlock> blocks) {
+        for (ProtectedBlock block : blocks) {
+            set(dimension, block.getX(), block.getY(), block.getZ(), block.getOwnerUuid(), block.getCreatedAt());
+        }
+    }
+
+    /**
+     * Forget the owner of a position, if any.
+     */
+    public synchronized void remove(DimensionIndex dimension, int x, int y, int z) {
+        int slot = find(dimension.getId(), BlockKeys.pack(x, y, z));
+        if (slot >= 0) {
+            markChanged();
+            countInDimension(records.owner(slot), dimension.getId(), -1);
+            unlink(slot);
+            records.setDimension(slot, OwnerRecords.DELETED);
+            size--;
+        }
+    }
+
+    /**
+     * Find the slot of a key.
+     *
+     * @return the slot, or {@code -(slot + 1)} of the slot to insert it at
+     */
+    private int find(int dimension, long position) {
+        int mask = records.getCapacity() - 1;
+        int slot = mix(dimension, position) & mask;
+        int insertAt = NONE;
+        while (true) {
+            int state = records.dimension(slot);
+            if (state == OwnerRecords.FREE) {
+                return -(insertAt != NONE ? insertAt : slot) - 1;
+            }
+            if (state == OwnerRecords.DELETED) {
+                if (insertAt == NONE) {
+                    insertAt = slot;
+                }
+            } else if (state == dimension + 1 && records.position(slot) == position) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private static int mix(int dimension, long position) {
+        long h = (position + dimension * 0x9E3779B97F4A7C15L) * 0xBF58476D1CE4E5B9L;
+        return (int) (h ^ (h >>> 31));
+    }
+
+    // Copy the live records into a new table: twice as large, or as large to drop deleted slots
+    private void rehash() {
+        int capacity = records.getCapacity();
+        if (size + 1 > capacity * LOAD_FACTOR / 2) {
+            if (capacity == MAX_CAPACITY) {
+                throw new IllegalStateException("Owner index is full");
+            }
+            capacity <<= 1;
+        }
+        OwnerRecords previous = records;
+        records = newRecords(capacity);
+        Arrays.fill(heads, NONE);
+        Arrays.fill(counts, 0);
+        used = 0;
+        for (int slot = 0; slot < previous.getCapacity(); slot++) {
+            int dimension = previous.dimension(slot);
+            if (dimension > 0) {
+                int target = -find(dimension - 1, previous.position(slot)) - 1;
+                records.setKey(target, dimension, previous.position(slot));
+                records.setCreatedAt(target, previous.createdAt(slot));
+                link(target, previous.owner(slot));
+                used++;
+            }
+        }
+        deleteTable(previous);
+    }
+
+    private OwnerRecords newRecords(int capacity) {
+        if (mappedFolder == null) {
+            return OwnerRecords.allocate(capacity);
+        }
+        try {
+            return OwnerRecords.create(mappedFolder.resolve(TABLE_PREFIX + (++tableSequence) + TABLE_SUFFIX), capacity);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to create owner table: " + e.getMessage(), e);
+        }
+    }
+
+    private static void deleteTable(OwnerRecords records) {
+        if (records.isMapped()) {
+            deleteStale(records.getFile());
+        }
+    }
+
+    private static void deleteStale(Path table) {
+        try {
+            Files.deleteIfExists(table);
+        } catch (IOException e) {
+            // Still mapped on some systems; removed at the next start
+        }
+    }
+
+    private void markChanged() {
+        if (clean) {
+            records.markChanged();
+            clean = false;
+        }
+    }
+
+    private void link(int slot, int owner) {
+        if (owner >= heads.length) {
+            int capacity = Math.max(owner + 1, Math.max(64, heads.length * 2));
+            int oldLength = heads.length;
+            heads = Arrays.copyOf(heads, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+            Arrays.fill(heads, oldLength, capacity, NONE);
+        }
+        records.setOwner(slot, owner);
+        records.setPrevious(slot, NONE);
+        records.setNext(slot, heads[owner]);
+        if (heads[owner] != NONE) {
+            records.setPrevious(heads[owner], slot);
+        }
+        heads[owner] = slot;
+        counts[owner]++;
+    }
+
+    private void unlink(int slot) {
+        int owner = records.owner(slot);
+        int previous = records.previous(slot);
+        int next = records.next(slot);
+        if (previous != NONE) {
+            records.setNext(previous, next);
+        } else {
+            heads[owner] = next;
+        }
+        if (next != NONE) {
+            records.setPrevious(next, previous);
+        }
+        counts[owner]--;
+    }
+
+    private void countInDimension(int owner, int dimension, int delta) {
+        if (dimensionCountsKnown.get(owner)) {
+            long key = dimensionKey(owner, dimension);
+            int count = Math.max(0, dimensionCounts.get(key)) + delta;
+            if (count > 0) {
+                dimensionCounts.put(key, count);
+            } else {
+                dimensionCounts.remove(key);
+            }
+        }
+    }
+
+    private static long dimensionKey(int owner, int dimension) {
+        return (long) owner << 32 | dimension;
+    }
+
+    private OwnedProtection entry(int slot) {
+        long position = records.position(slot);
+        return new OwnedProtection(dimensions.apply(records.dimension(slot) - 1),
+                BlockKeys.unpackX(position), BlockKeys.unpackY(position), BlockKeys.unpackZ(position),
+                owners.uuid(records.owner(slot)), records.createdAt(slot));
+    }
+
+    /**
+     * Number of protections owned by a player.
+     */
+    public synchronized int count(UUID ownerUuid) {
+        int owner = owners.idOf(ownerUuid);
+        return owner != OwnerTable.NO_OWNER && owner < counts.length ? counts[owner] : 0;
+    }
+
+    /**
+     * Number of protections owned by a player in one dimension. O(1), except for the
+     * first call for an owner, which counts the owner's protections once.
+     */
+    public synchronized int count(UUID ownerUuid, DimensionIndex dimension) {
+        int owner = owners.idOf(ownerUuid);
+        if (owner == OwnerTable.NO_OWNER || owner >= counts.length || counts[owner] == 0) {
+            return 0;
+        }
+        if (!dimensionCountsKnown.get(owner)) {
+            for (int slot = heads[owner]; slot != NONE; slot = records.next(slot)) {
+                long key = dimensionKey(owner, records.dimension(slot) - 1);
+                dimensionCounts.put(key, Math.max(0, dimensionCounts.get(key)) + 1);
+            }
+            dimensionCountsKnown.set(owner);
+        }
+        return Math.max(0, dimensionCounts.get(dimensionKey(owner, dimension.getId())));
+    }
+
+    /**
+     * Copy the protections owned by a player, in no particular order.
+     */
+    public synchronized List<OwnedProtection> getOwnedBy(UUID ownerUuid) {
+        int count = count(ownerUuid);
+        List<OwnedProtection> result = new ArrayList<>(count);
+        if (count > 0) {
+            for (int slot = heads[owners.idOf(ownerUuid)]; slot != NONE; slot = records.next(slot)) {
+                result.add(entry(slot));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Total number of protections.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Copy all entries.
+     */
+    public synchronized List<OwnedProtection> values() {
+        List<OwnedProtection> result = new ArrayList<>(size);
+        for (int slot = 0; slot < records.getCapacity(); slot++) {
+            if (records.dimension(slot) > 0) {
+                result.add(entry(slot));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Drop all entries. Interned owners are kept, since the dimension indexes share them.
+     */
+    public synchronized void clear() {
+        OwnerRecords previous = records;
+        records = newRecords(INITIAL_CAPACITY);
+        deleteTable(previous);
+        heads = new int[0];
+        counts = new int[0];
+        dimensionCounts.clear();
+        dimensionCountsKnown.clear();
+        size = 0;
+        used = 0;
+        clean = false;
+    }
+
+    /**
+     * Whether the records are memory-mapped, see {@link #mapInto}.
+     */
+    public synchronized boolean isMapped() {
+        return mappedFolder != null;
+    }
+
+    /**
+     * Keep the records in memory-mapped table files inside a folder from now on. The
+     * index starts out empty; fill it or {@link #restore} a saved table.
+     */
+    public synchronized void mapInto(Path folder) throws IOException {
+        Files.createDirectories(folder);
+        mappedFolder = folder;
+        tableSequence = 0;
+        for (Path table : listTables()) {
+            tableSequence = Math.max(tableSequence, sequenceOf(table));
+        }
+        clear();
+    }
+
+    /**
+     * Reopen the mapped table saved by {@link #checkpoint}. Must be called on a fresh
+     * index, since owner ids have to come out as they were saved.
+     *
+     * @return {@code false} if the table is missing, belongs to another checkpoint or
+     * was changed after it (e.g. by a crash); the index is then left empty
+     */
+    public synchronized boolean restore(Checkpoint checkpoint) throws IOException {
+        if (mappedFolder == null) {
+            return false;
+        }
+        Path file = mappedFolder.resolve(checkpoint.tableName());
+        if (!Files.exists(file)) {
+            return false;
+        }
+        OwnerRecords opened = OwnerRecords.open(file);
+        if (!opened.isClean() || opened.getGeneration() != checkpoint.generation()) {
+            return false;
+        }
+        List<UUID> ownerUuids = checkpoint.owners();
+        for (int id = 0; id < ownerUuids.size(); id++) {
+            if (owners.intern(ownerUuids.get(id), null) != id) {
+                return false;
+            }
+        }
+        OwnerRecords previous = records;
+        records = opened;
+        deleteTable(previous);
+        dimensionCounts.clear();
+        dimensionCountsKnown.clear();
+        heads = Arrays.copyOf(checkpoint.heads(), checkpoint.heads().length);
+        counts = Arrays.copyOf(checkpoint.counts(), checkpoint.counts().length);
+        size = opened.getSize();
+        used = opened.getUsed();
+        clean = true;
+        tableSequence = Math.max(tableSequence, sequenceOf(file));
+        for (Path table : listTables()) {
+            if (!table.equals(file)) {
+                deleteStale(table);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Write a mapped table to disk and mark it as matching a generation. The returned
+     * per-owner state must be saved with it for {@link #restore}.
+     */
+    public synchronized Checkpoint checkpoint(long generation) {
+        records.checkpoint(generation, size, used);
+        clean = records.isMapped();
+        int ownerCount = owners.size();
+        List<UUID> ownerUuids = new ArrayList<>(ownerCount);
+        for (int id = 0; id < ownerCount; id++) {
+            ownerUuids.add(owners.uuid(id));
+        }
+        int[] savedHeads = Arrays.copyOf(heads, ownerCount);
+        if (heads.length < ownerCount) {
+            Arrays.fill(savedHeads, heads.length, ownerCount, NONE);
+        }
+        Path file = records.getFile();
+        return new Checkpoint(file != null ? file.getFileName().toString() : null, generation,
+                ownerUuids, savedHeads, Arrays.copyOf(counts, ownerCount));
+    }
+
+    private List<Path> listTables() throws IOException {
+        List<Path> tables = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(mappedFolder, TABLE_PREFIX + "*" + TABLE_SUFFIX)) {
+            stream.forEach(tables::add);
+        }
+        return tables;
+    }
+
+    private static int sequenceOf(Path table) {
+        String name = table.getFileName().toString();
+        try {
+            return Integer.parseInt(name.substring(TABLE_PREFIX.length(), name.length() - TABLE_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * State of a mapped table at a checkpoint: its file name in the mapped folder, the
+     * generation it matches, and the owners in id order with the first slot and length
+     * of each owner's list.
+     */
+    public record Checkpoint(String tableName, long generation, List<UUID> owners, int[] heads, int[] counts) {
+    }
+}
@@ -0,0 +1,260 @@
+package org.allaymc.blocklocker.index;
+
+import lombok.Getter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Fixed-size records behind {@link OwnerIndex}: a 64-byte header followed by a table of
+ * 32-byte records, either in heap buffers or memory-mapped from a file. A mapped table
+ * costs no heap and is not scanned by the garbage collector; the OS page cache decides
+ * which parts stay in memory, and reopening it after a clean shutdown is a map call.
+ * <p>
+ * Record layout (little endian): long packed position, int dimension state, int owner
+ * id, long creation time, int next and int previous slot of the owner's list. The
+ * dimension state is 0 for a free slot, -1 for a deleted one and the dimension id plus
+ * one otherwise. Large tables are split into several mappings, since one buffer is
+ * limited to 2 GiB.
+ * <p>
+ * Not thread-safe; guarded by the owner index.
+ */
+final class OwnerRecords {
+
+    static final int FREE = 0;
+    static final int DELETED = -1;
+
+    private static final int MAGIC = 0x424C4F54; // "BLOT"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int RECORD_SHIFT = 5;
+    private static final int SEGMENT_SHIFT = 25;
+    private static final int SEGMENT_MASK = (1 << SEGMENT_SHIFT) - 1;
+
+    // Header fields
+    private static final int HEADER_MAGIC = 0;
+    private static final int HEADER_VERSION = 4;
+    private static final int HEADER_GENERATION = 8;
+    private static final int HEADER_CLEAN = 16;
+    private static final int HEADER_CAPACITY = 20;
+    private static final int HEADER_SIZE = 24;
+    private static final int HEADER_USED = 28;
+
+    // Record fields
+    private static final int POSITION = 0;
+    private static final int DIMENSION = 8;
+    private static final int OWNER = 12;
+    private static final int CREATED_AT = 16;
+    private static final int NEXT = 24;
+    private static final int PREVIOUS = 28;
+
+    private final ByteBuffer header;
+    private final ByteBuffer[] segments;
+    @Getter
+    private final int capacity;
+
+    // Backing file, null for heap records
+    @Getter
+    private final Path file;
+
+    private OwnerRecords(ByteBuffer header, ByteBuffer[] segments, int capacity, Path file) {
+        this.header = header.order(ByteOrder.LITTLE_ENDIAN);
+        this.segments = segments;
+        for (ByteBuffer segment : segments) {
+            segment.order(ByteOrder.LITTLE_ENDIAN);
+        }
+        this.capacity = capacity;
+        this.file = file;
+    }
+
+    /**
+     * Empty records on the heap.
+     *
+     * @param capacity number of slots, a power of two
+     */
+    static OwnerRecords allocate(int capacity) {
+        ByteBuffer[] segments = new ByteBuffer[segmentCount(capacity)];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = ByteBuffer.allocate(segmentRecords(capacity, i) << RECORD_SHIFT);
+        }
+        OwnerRecords records = new OwnerRecords(ByteBuffer.allocate(HEADER_BYTES), segments, capacity, null);
+        records.initHeader();
+        return records;
+    }
+
+    /**
+     * Empty records in a new file, replacing any file of the same name.
+     */
+    static OwnerRecords create(Path file, int capacity) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            // Mapping past the end grows the file; the new space reads as zeros, i.e. free slots
+            OwnerRecords records = map(channel, capacity, file);
+            records.initHeader();
+            return records;
+        }
+    }
+
+    /**
+     * Map the records of an existing file.
+     *
+     * @throws IOException if the file is not a complete record table
+     */
+    static OwnerRecords open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (channel.size() < HEADER_BYTES) {
+                throw new IOException("Truncated owner table " + file.getFileName());
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(header, 0);
+            int capacity = header.getInt(HEADER_CAPACITY);
+            if (header.getInt(HEADER_MAGIC) != MAGIC || header.getInt(HEADER_VERSION) != VERSION
+                    || Integer.bitCount(capacity) != 1
+                    || channel.size() != HEADER_BYTES + ((long) capacity << RECORD_SHIFT)) {
+                throw new IOException("Not a valid owner table: " + file.getFileName());
+            }
+            return map(channel, capacity, file);
+        }
+    }
+
+    private static OwnerRecords map(FileChannel channel, int capacity, Path file) throws IOException {
+        // Mappings stay valid after the channel is closed
+        ByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+        ByteBuffer[] segments = new ByteBuffer[segmentCount(capacity)];
+        long position = HEADER_BYTES;
+        for (int i = 0; i < segments.length; i++) {
+            long length = (long) segmentRecords(capacity, i) << RECORD_SHIFT;
+            segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, position, length);
+            position += length;
+        }
+        return new OwnerRecords(header, segments, capacity, file);
+    }
+
+    private static int segmentCount(int capacity) {
+        return Math.max(1, capacity >>> SEGMENT_SHIFT);
+    }
+
+    private static int segmentRecords(int capacity, int segment) {
+        return Math.min(capacity - (segment << SEGMENT_SHIFT), 1 << SEGMENT_SHIFT);
+    }
+
+    private void initHeader() {
+        header.putInt(HEADER_MAGIC, MAGIC);
+        header.putInt(HEADER_VERSION, VERSION);
+        header.putLong(HEADER_GENERATION, -1);
+        header.putInt(HEADER_CLEAN, 0);
+        header.putInt(HEADER_CAPACITY, capacity);
+    }
+
+    boolean isMapped() {
+        return file != null;
+    }
+
+    private ByteBuffer segment(int slot) {
+        return segments[slot >>> SEGMENT_SHIFT];
+    }
+
+    private static int offset(int slot, int field) {
+        return ((slot & SEGMENT_MASK) << RECORD_SHIFT) + field;
+    }
+
+    long position(int slot) {
+        return segment(slot).getLong(offset(slot, POSITION));
+    }
+
+    int dimension(int slot) {
+        return segment(slot).getInt(offset(slot, DIMENSION));
+    }
+
+    int owner(int slot) {
+        return segment(slot).getInt(offset(slot, OWNER));
+    }
+
+    long createdAt(int slot) {
+        return segment(slot).getLong(offset(slot, CREATED_AT));
+    }
+
+    int next(int slot) {
+        return segment(slot).getInt(offset(slot, NEXT));
+    }
+
+    int previous(int slot) {
+        return segment(slot).getInt(offset(slot, PREVIOUS));
+    }
+
+    void setKey(int slot, int dimension, long position) {
+        ByteBuffer segment = segment(slot);
+        segment.putLong(offset(slot, POSITION), position);
+        segment.putInt(offset(slot, DIMENSION), dimension);
+    }
+
+    void setDimension(int slot, int dimension) {
+        segment(slot).putInt(offset(slot, DIMENSION), dimension);
+    }
+
+    void setOwner(int slot, int owner) {
+        segment(slot).putInt(offset(slot, OWNER), owner);
+    }
+
+    void setCreatedAt(int slot, long createdAt) {
+        segment(slot).putLong(offset(slot, CREATED_AT), createdAt);
+    }
+
+    void setNext(int slot, int next) {
+        segment(slot).putInt(offset(slot, NEXT), next);
+    }
+
+    void setPrevious(int slot, int previous) {
+        segment(slot).putInt(offset(slot, PREVIOUS), previous);
+    }
+
+    long getGeneration() {
+        return header.getLong(HEADER_GENERATION);
+    }
+
+    boolean isClean() {
+        return header.getInt(HEADER_CLEAN) != 0;
+    }
+
+    int getSize() {
+        return header.getInt(HEADER_SIZE);
+    }
+
+    int getUsed() {
+        return header.getInt(HEADER_USED);
+    }
+
+    /**
+     * Mark the table as changed since the last checkpoint, and make sure the mark reaches
+     * the disk before any of the changes can.
+     */
+    void markChanged() {
+        header.putInt(HEADER_CLEAN, 0);
+        if (header instanceof MappedByteBuffer mapped) {
+            mapped.force();
+        }
+    }
+
+    /**
+     * Write all records to disk and mark the table as matching a generation.
+     */
+    void checkpoint(long generation, int size, int used) {
+        for (ByteBuffer segment : segments) {
+            if (segment instanceof MappedByteBuffer mapped) {
+                mapped.force();
+            }
+        }
+        header.putLong(HEADER_GENERATION, generation);
+        header.putInt(HEADER_SIZE, size);
+        header.putInt(HEADER_USED, used);
+        header.putInt(HEADER_CLEAN, 1);
+        if (header instanceof MappedByteBuffer mapped) {
+            mapped.force();
+        }
+    }
+}
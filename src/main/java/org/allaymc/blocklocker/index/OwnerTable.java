@@ -0,0 +1,92 @@
+package org.allaymc.blocklocker.index;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Interned owners: each owner UUID gets a small int id, and the UUID and the owner's
+ * last known name are stored once instead of once per protection. The indexes store
+ * these ids in their primitive columns.
+ * <p>
+ * Ids are never reused. Reading by id takes no lock and never throws, also for ids
+ * read by an optimistic reader that has not validated yet.
+ */
+public class OwnerTable {
+
+    public static final int NO_OWNER = -1;
+
+    private final Map<UUID, Integer> ids = new HashMap<>();
+
+    // Replaced when growing; a reader sees either the old or the new array
+    private volatile UUID[] uuids = new UUID[64];
+    private volatile String[] names = new String[64];
+    private int size;
+
+    /**
+     * Get the id of an owner, assigning one on first use. A non-null name replaces the
+     * stored name, so the latest name wins.
+     */
+    public synchronized int intern(UUID uuid, String name) {
+        Integer id = ids.get(uuid);
+        if (id == null) {
+            id = size;
+            if (id == uuids.length) {
+                uuids = Arrays.copyOf(uuids, id * 2);
+                names = Arrays.copyOf(names, id * 2);
+            }
+            uuids[id] = uuid;
+            ids.put(uuid, id);
+            size++;
+        }
+        if (name != null && !name.equals(names[id])) {
+            names[id] = name;
+        }
+        return id;
+    }
+
+    /**
+     * Get the id of an owner, or {@link #NO_OWNER} if it was never interned.
+     */
+    public synchronized int idOf(UUID uuid) {
+        Integer id = ids.get(uuid);
+        return id != null ? id : NO_OWNER;
+    }
+
+    /**
+     * Get the UUID of an owner id, or {@code null} for an unknown id. Does not allocate.
+     */
+    public UUID uuid(int id) {
+        UUID[] uuids = this.uuids;
+        return id >= 0 && id < uuids.length ? uuids[id] : null;
+    }
+
+    /**
+     * Get the last known name of an owner id, or {@code null}. Does not allocate.
+     */
+    public String name(int id) {
+        String[] names = this.names;
+        return id >= 0 && id < names.length ? names[id] : null;
+    }
+
+    /**
+     * Find an owner by last known name, ignoring case, or {@link #NO_OWNER}. Scans all
+     * owners; meant for admin commands naming offline players.
+     */
+    public synchronized int findByName(String name) {
+        for (int id = size - 1; id >= 0; id--) {
+            if (name.equalsIgnoreCase(names[id])) {
+                return id;
+            }
+        }
+        return NO_OWNER;
+    }
+
+    /**
+     * Number of interned owners.
+     */
+    public synchronized int size() {
+        return size;
+    }
+}
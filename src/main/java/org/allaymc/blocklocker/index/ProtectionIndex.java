@@ -0,0 +1,237 @@
+package org.allaymc.blocklocker.index;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.allaymc.blocklocker.data.Access;
+import org.allaymc.blocklocker.data.ProtectedBlock;
+import org.allaymc.blocklocker.data.TrustGroups;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Spatial index of all protected blocks: world -> dimension -> chunk -> local position.
+ * <p>
+ * Each world/dimension pair is interned once into a {@link DimensionIndex}, which
+ * shards its protections by chunk. An access check is one String-keyed map read
+ * (the world name's hash is cached), one array read, a primitive probe and a binary
+ * search, so it never allocates. Owners are interned once into the shared
+ * {@link OwnerTable}.
+ */
+public class ProtectionIndex {
+
+    // World name -> dimensions of that world, indexed by dimension id
+    private final Map<String, DimensionIndex[]> worlds = new ConcurrentHashMap<>();
+
+    // Interned id -> dimension
+    private final List<DimensionIndex> dimensions = new CopyOnWriteArrayList<>();
+
+    @Getter
+    private final OwnerTable ownerTable = new OwnerTable();
+
+    // Trust groups and owner-wide trust lists, resolved by access checks
+    @Getter
+    private final TrustGroups trustGroups = new TrustGroups();
+
+    // Whether every protection is in memory, so regions may be created on demand; cleared
+    // by the storage once protections are loaded region by region
+    @Getter
+    @Setter
+    private volatile boolean complete = true;
+
+    // Owner of every protection, including those of regions not in memory
+    @Getter
+    private final OwnerIndex owners = new OwnerIndex(ownerTable, this::getDimension);
+
+    /**
+     * Get the index of a dimension, or {@code null} if nothing was ever protected in it.
+     */
+    public DimensionIndex getDimension(String worldName, int dimensionId) {
+        DimensionIndex[] world = worlds.get(worldName);
+        if (world == null || dimensionId < 0 || dimensionId >= world.length) {
+            return null;
+        }
+        return world[dimensionId];
+    }
+
+    /**
+     * Get a dimension by its interned id.
+     */
+    public DimensionIndex getDimension(int id) {
+        return id >= 0 && id < dimensions.size() ? dimensions.get(id) : null;
+    }
+
+    /**
+     * Get the index of a dimension, interning it if this is the first protection there.
+     */
+    public synchronized DimensionIndex getOrCreateDimension(String worldName, int dimensionId) {
+        if (dimensionId < 0) {
+            throw new IllegalArgumentException("Invalid dimension id: " + dimensionId);
+        }
+        DimensionIndex existing = getDimension(worldName, dimensionId);
+        if (existing != null) {
+            return existing;
+        }
+
+        DimensionIndex[] world = worlds.get(worldName);
+        world = world == null
+                ? new DimensionIndex[dimensionId + 1]
+                : Arrays.copyOf(world, Math.max(world.length, dimensionId + 1));
+        DimensionIndex created = new DimensionIndex(dimensions.size(), worldName, dimensionId, ownerTable, trustGroups, this);
+        world[dimensionId] = created;
+        dimensions.add(created);
+        // Publish a fresh array so readers never see a half-filled one
+        worlds.put(worldName, world);
+        return created;
+    }
+
+    /**
+     * All dimensions that were interned so far.
+     */
+    public List<DimensionIndex> getDimensions() {
+        return Collections.unmodifiableList(dimensions);
+    }
+
+    /**
+     * Get the protection at a position, as a view built on demand.
+     */
+    public ProtectedBlock get(String worldName, int dimensionId, int x, int y, int z) {
+        DimensionIndex dimension = getDimension(worldName, dimensionId);
+        return dimension != null ? dimension.get(x, y, z) : null;
+    }
+
+    /**
+     * Check a player against the protection at a position. Does not allocate.
+     */
+    public Access access(String worldName, int dimensionId, int x, int y, int z, UUID player) {
+        DimensionIndex dimension = getDimension(worldName, dimensionId);
+        return dimension != null ? dimension.access(x, y, z, player) : Access.NONE;
+    }
+
+    /**
+     * Whether a position is covered by a protection. Does not allocate.
+     */
+    public boolean contains(String worldName, int dimensionId, int x, int y, int z) {
+        DimensionIndex dimension = getDimension(worldName, dimensionId);
+        return dimension != null && dimension.contains(x, y, z);
+    }
+
+    /**
+     * Store a protection, replacing any previous one that covers one of its blocks.
+     *
+     * @return the replaced protections
+     */
+    public List<ProtectedBlock> put(ProtectedBlock block) {
+        DimensionIndex dimension = getOrCreateDimension(block.getWorldName(), block.getDimensionId());
+        List<ProtectedBlock> displaced = dimension.put(block);
+        for (ProtectedBlock previous : displaced) {
+            if (previous.getX() != block.getX() || previous.getY() != block.getY() || previous.getZ() != block.getZ()) {
+                owners.remove(dimension, previous.getX(), previous.getY(), previous.getZ());
+            }
+        }
+        owners.set(dimension, block.getX(), block.getY(), block.getZ(), block.getOwnerUuid(), block.getCreatedAt());
+        return displaced;
+    }
+
+    /**
+     * Write the trust list and flags of a changed protection view back to the index.
+     *
+     * @return {@code false} if the protection is not in memory
+     */
+    public boolean update(ProtectedBlock block) {
+        DimensionIndex dimension = getDimension(block.getWorldName(), block.getDimensionId());
+        return dimension != null && dimension.update(block);
+    }
+
+    /**
+     * Remove the protection covering a position.
+     *
+     * @return the removed protection, whose position is its anchor
+     */
+    public ProtectedBlock remove(String worldName, int dimensionId, int x, int y, int z) {
+        DimensionIndex dimension = getDimension(worldName, dimensionId);
+        if (dimension == null) {
+            return null;
+        }
+        ProtectedBlock removed = dimension.remove(x, y, z);
+        if (removed != null) {
+            owners.remove(dimension, removed.getX(), removed.getY(), removed.getZ());
+        } else {
+            // The owner entry goes even if the block itself is not in memory
+            owners.remove(dimension, x, y, z);
+        }
+        return removed;
+    }
+
+    /**
+     * Get all protections in a chunk.
+     */
+    public List<ProtectedBlock> getInChunk(String worldName, int dimensionId, int chunkX, int chunkZ) {
+        DimensionIndex dimension = getDimension(worldName, dimensionId);
+        return dimension != null ? dimension.getInChunk(chunkX, chunkZ) : List.of();
+    }
+
+    /**
+     * Get all protections inside an axis-aligned box (bounds inclusive).
+     */
+    public List<ProtectedBlock> getInBox(String worldName, int dimensionId,
+                                         int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        DimensionIndex dimension = getDimension(worldName, dimensionId);
+        if (dimension == null) {
+            return List.of();
+        }
+        return dimension.getInBox(
+                Math.min(minX, maxX), Math.min(minY, maxY), Math.min(minZ, maxZ),
+                Math.max(minX, maxX), Math.max(minY, maxY), Math.max(minZ, maxZ));
+    }
+
+    /**
+     * Get all protections within a spherical radius of a block position.
+     */
+    public List<ProtectedBlock> getInRadius(String worldName, int dimensionId, int x, int y, int z, int radius) {
+        DimensionIndex dimension = getDimension(worldName, dimensionId);
+        if (dimension == null || radius < 0) {
+            return List.of();
+        }
+        return dimension.getInRadius(x, y, z, radius);
+    }
+
+    /**
+     * Number of protections in memory across all dimensions. See {@link #getOwners()}
+     * for the total including regions that are not loaded.
+     */
+    public int size() {
+        int size = 0;
+        for (DimensionIndex dimension : dimensions) {
+            size += dimension.size();
+        }
+        return size;
+    }
+
+    /**
+     * Visit every protection, one dimension at a time.
+     */
+    public void forEach(Consumer<ProtectedBlock> consumer) {
+        for (DimensionIndex dimension : dimensions) {
+            dimension.forEach(consumer);
+        }
+    }
+
+    /**
+     * Copy all protections.
+     */
+    public List<ProtectedBlock> values() {
+        List<ProtectedBlock> result = new ArrayList<>();
+        for (DimensionIndex dimension : dimensions) {
+            result.addAll(dimension.values());
+        }
+        return result;
+    }
+}
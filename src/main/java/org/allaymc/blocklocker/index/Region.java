@@ -0,0 +1,119 @@
+package org.allaymc.blocklocker.index;
+
+import lombok.Getter;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Residency state of a 32x32 chunk region of a dimension.
+ * <p>
+ * Protections are loaded from disk one region at a time. Until a region has
+ * finished loading, the protections inside it are unknown and callers must
+ * treat every block in it as possibly protected.
+ */
+public class Region {
+
+    public static final int SHIFT = 5; // 32 chunks per region side
+    public static final int BLOCK_SHIFT = SHIFT + 4;
+    public static final int BLOCK_MASK = (1 << BLOCK_SHIFT) - 1;
+
+    @Getter
+    private final DimensionIndex dimension;
+    @Getter
+    private final int regionX;
+    @Getter
+    private final int regionZ;
+
+    // Completed once the region's protections are in the index
+    @Getter
+    private final CompletableFuture<Void> loadFuture = new CompletableFuture<>();
+
+    private volatile boolean loaded;
+
+    // Set by every mutation inside the region, cleared when it is written to disk
+    volatile boolean dirty;
+
+    // Chunks of this region currently loaded by the server
+    private final AtomicInteger loadedChunks = new AtomicInteger();
+
+    // Changes in progress inside this region; a pinned region is never evicted
+    private final AtomicInteger pins = new AtomicInteger();
+
+    // Last time (System.nanoTime) a lookup or chunk event touched this region
+    private volatile long lastAccess = System.nanoTime();
+
+    Region(DimensionIndex dimension, int regionX, int regionZ) {
+        this.dimension = dimension;
+        this.regionX = regionX;
+        this.regionZ = regionZ;
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    void markLoaded() {
+        loaded = true;
+        loadFuture.complete(null);
+    }
+
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    void touch() {
+        lastAccess = System.nanoTime();
+    }
+
+    public long getIdleNanos() {
+        return System.nanoTime() - lastAccess;
+    }
+
+    public void chunkLoaded() {
+        loadedChunks.incrementAndGet();
+        touch();
+    }
+
+    public void chunkUnloaded() {
+        // Never below zero, in case a chunk's load was missed
+        loadedChunks.updateAndGet(count -> Math.max(count - 1, 0));
+        touch();
+    }
+
+    /**
+     * Count chunks that were found loaded without a load event, keeping any higher count
+     * from events that arrived meanwhile.
+     */
+    public void seedLoadedChunks(int count) {
+        loadedChunks.accumulateAndGet(count, Math::max);
+        touch();
+    }
+
+    public boolean hasLoadedChunks() {
+        return loadedChunks.get() > 0;
+    }
+
+    /**
+     * Keep the region in memory until {@link #unpin()}, while a change to it is in progress.
+     */
+    public void pin() {
+        pins.incrementAndGet();
+    }
+
+    public void unpin() {
+        pins.decrementAndGet();
+        touch();
+    }
+
+    public boolean isPinned() {
+        return pins.get() > 0;
+    }
+
+    /**
+     * Key of the region containing a chunk.
+     */
+    public static long keyOfChunk(int chunkX, int chunkZ) {
+        return BlockKeys.chunkKey(chunkX >> SHIFT, chunkZ >> SHIFT);
+    }
+}
@@ -0,0 +1,90 @@
+package org.allaymc.blocklocker.listener;
+
+import org.allaymc.api.container.Container;
+import org.allaymc.api.container.interfaces.BlockContainer;
+import org.allaymc.api.eventbus.EventHandler;
+import org.allaymc.api.eventbus.event.block.BlockNeighborUpdateEvent;
+import org.allaymc.api.eventbus.event.container.ContainerItemMoveEvent;
+import org.allaymc.api.math.position.Position3ic;
+import org.allaymc.api.world.Dimension;
+import org.allaymc.blocklocker.manager.ProtectionManager;
+import org.allaymc.blocklocker.util.ProtectableBlockTypes;
+
+/**
+ * Enforces the hopper and redstone flags of protected blocks. These events fire for
+ * every active hopper every few ticks, so the checks go through the manager's decision
+ * cache and do not allocate in the common case.
+ */
+public class AutomationListener {
+
+    private final ProtectionManager protectionManager;
+    private final ProtectableBlockTypes protectableBlocks;
+
+    public AutomationListener(ProtectionManager protectionManager, ProtectableBlockTypes protectableBlocks) {
+        this.protectionManager = protectionManager;
+        this.protectableBlocks = protectableBlocks;
+    }
+
+    /**
+     * Stop hoppers (and hopper minecarts) from moving items into or out of locked containers.
+     * Moves between two blocks locked by the same owner, such as their own locked hopper
+     * under their own locked chest, are always allowed.
+     */
+    @EventHandler
+    public void onContainerItemMove(ContainerItemMoveEvent event) {
+        Container source = event.getSource();
+        Container destination = event.getDestination();
+        if (canHoppersAccess(source) && canHoppersAccess(destination)) {
+            return;
+        }
+        if (source instanceof BlockContainer from && destination instanceof BlockContainer to
+                && from.getBlockPos().dimension() == to.getBlockPos().dimension()) {
+            Position3ic fromPos = from.getBlockPos();
+            Position3ic toPos = to.getBlockPos();
+            Dimension dimension = fromPos.dimension();
+            if (protectionManager.isSameOwner(dimension.getWorld().getWorldData().getDisplayName(),
+                    dimension.getDimensionInfo().dimensionId(), fromPos.x(), fromPos.y(), fromPos.z(),
+                    toPos.x(), toPos.y(), toPos.z())) {
+                return;
+            }
+        }
+        event.setCancelled(true);
+        protectionManager.getMetrics().getAutomationDenials().increment();
+    }
+
+    /**
+     * Stop redstone from activating locked doors, dispensers and the like. Blocks react to
+     * redstone when a neighbour updates them, so the update is dropped while the locked
+     * block is powered; updates that take power away still go through.
+     */
+    @EventHandler
+    public void onNeighborUpdate(BlockNeighborUpdateEvent event) {
+        var block = event.getBlock();
+        // Only lockable blocks can be protected; this also keeps redstone working while loading
+        if (!protectableBlocks.contains(block.getBlockState().getBlockType()) || !block.isPowered()) {
+            return;
+        }
+        Dimension dimension = block.getDimension();
+        var pos = block.getPosition();
+        if (!protectionManager.canRedstoneActivate(dimension.getWorld().getWorldData().getDisplayName(),
+                dimension.getDimensionInfo().dimensionId(), pos.x(), pos.y(), pos.z())) {
+            event.setCancelled(true);
+            protectionManager.getMetrics().getAutomationDenials().increment();
+        }
+    }
+
+    private boolean canHoppersAccess(Container container) {
+        // Entity containers (players, minecarts) are never locked
+        if (!(container instanceof BlockContainer blockContainer)) {
+            return true;
+        }
+        Position3ic pos = blockContainer.getBlockPos();
+        Dimension dimension = pos.dimension();
+        // Only lockable blocks can be protected; this also keeps other containers working while loading
+        if (!protectableBlocks.contains(dimension.getBlockState(pos.x(), pos.y(), pos.z()).getBlockType())) {
+            return true;
+        }
+        return protectionManager.canHoppersAccess(dimension.getWorld().getWorldData().getDisplayName(),
+                dimension.getDimensionInfo().dimensionId(), pos.x(), pos.y(), pos.z());
+    }
+}
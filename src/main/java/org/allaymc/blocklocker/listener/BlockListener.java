@@ -1,15 +1,26 @@
 package org.allaymc.blocklocker.listener;
 
+import org.allaymc.api.block.type.BlockState;
 import org.allaymc.api.entity.interfaces.EntityPlayer;
 import org.allaymc.api.eventbus.EventHandler;
 import org.allaymc.api.eventbus.event.block.BlockBreakEvent;
+import org.allaymc.api.eventbus.event.block.BlockPlaceEvent;
 import org.allaymc.api.eventbus.event.player.PlayerInteractBlockEvent;
-import org.allaymc.api.permission.Tristate;
+import org.allaymc.api.server.Server;
 import org.allaymc.api.world.Dimension;
+import org.allaymc.blocklocker.BlockLockerPlugin;
+import org.allaymc.blocklocker.data.Access;
 import org.allaymc.blocklocker.data.ProtectedBlock;
+import org.allaymc.blocklocker.data.TrustGroups;
+import org.allaymc.blocklocker.index.BlockKeys;
+import org.allaymc.blocklocker.manager.PlayerSession;
+import org.allaymc.blocklocker.manager.ProtectionLimits;
 import org.allaymc.blocklocker.manager.ProtectionManager;
-import org.allaymc.blocklocker.util.BlockUtils;
+import org.allaymc.blocklocker.metrics.BlockLockerMetrics;
+import org.allaymc.blocklocker.util.BlockStructures;
+import org.allaymc.blocklocker.util.ProtectableBlockTypes;
 
+import java.util.Arrays;
 import java.util.UUID;
 
 /**
@@ -17,10 +28,20 @@ import java.util.UUID;
  */
 public class BlockListener {
 
+    private static final String NOT_READY_MESSAGE = "§cProtection data for this area is still loading, try again in a moment.";
+    private static final String STARTING_MESSAGE = "§cBlockLocker is still loading protections after the server start, try again in a moment.";
+    private static final String NOT_SAVED_MESSAGE = "§cThe change could not be saved, protection data for this area is unavailable. Try again in a moment.";
+
+    private static final int[][] HORIZONTAL_OFFSETS = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}};
+
     private final ProtectionManager protectionManager;
+    private final ProtectableBlockTypes protectableBlocks;
+    private final BlockLockerMetrics metrics;
 
-    public BlockListener(ProtectionManager protectionManager) {
+    public BlockListener(ProtectionManager protectionManager, ProtectableBlockTypes protectableBlocks) {
         this.protectionManager = protectionManager;
+        this.protectableBlocks = protectableBlocks;
+        this.metrics = protectionManager.getMetrics();
     }
 
     /**
@@ -28,10 +49,20 @@ public class BlockListener {
      */
     @EventHandler
     public void onPlayerInteractBlock(PlayerInteractBlockEvent event) {
+        long start = System.nanoTime();
+        try {
+            checkInteract(event);
+        } finally {
+            metrics.getInteractLatency().recordSince(start);
+        }
+    }
+
+    private void checkInteract(PlayerInteractBlockEvent event) {
         EntityPlayer player = event.getPlayer();
+        PlayerSession session = protectionManager.getSession(player.getUniqueId());
 
-        // Check for bypass permission
-        if (player.hasPermission("blocklocker.bypass") == Tristate.TRUE) {
+        // Check for bypass permission (cached in the session)
+        if (session.hasBypass(player)) {
             return;
         }
 
@@ -46,35 +77,54 @@ public class BlockListener {
         int y = pos.y();
         int z = pos.z();
 
-        // Check if player is in lock mode
-        if (protectionManager.isInLockMode(player.getUniqueId())) {
+        // Fail closed: until the protections here are loaded, treat lockable blocks as locked
+        if (!protectionManager.isReady(worldName, dimensionId, x, z)
+                && protectableBlocks.contains(dimension.getBlockState(x, y, z).getBlockType())) {
             event.setCancelled(true);
-            handleLockMode(player, dimension, dimensionId, x, y, z);
+            metrics.getNotReadyDenials().increment();
+            player.sendMessage(notReadyMessage());
             return;
         }
 
-        // Check if player is in unlock mode
-        if (protectionManager.isInUnlockMode(player.getUniqueId())) {
-            event.setCancelled(true);
-            handleUnlockMode(player, worldName, dimensionId, x, y, z);
-            return;
+        switch (session.getMode()) {
+            case LOCK -> {
+                event.setCancelled(true);
+                handleLockMode(player, session, dimension, dimensionId, x, y, z);
+                return;
+            }
+            case UNLOCK -> {
+                event.setCancelled(true);
+                handleUnlockMode(player, session, worldName, dimensionId, x, y, z);
+                return;
+            }
+            case TRUST -> {
+                event.setCancelled(true);
+                handleTrustMode(player, session, worldName, dimensionId, x, y, z);
+                return;
+            }
+            case FLAG -> {
+                event.setCancelled(true);
+                handleFlagMode(player, session, worldName, dimensionId, x, y, z);
+                return;
+            }
+            default -> {
+            }
         }
 
-        // Check if player is in trust mode
-        if (protectionManager.isInTrustMode(player.getUniqueId())) {
-            event.setCancelled(true);
-            handleTrustMode(player, worldName, dimensionId, x, y, z);
+        // Most blocks are in chunks or columns without any protection
+        if (!protectionManager.mightBeProtected(worldName, dimensionId, x, z)) {
             return;
         }
 
-        // Check if block is protected
-        ProtectedBlock protection = protectionManager.getProtection(worldName, dimensionId, x, y, z);
-        if (protection != null) {
-            // Allow owner and trusted players
-            if (!protection.hasAccess(player.getUniqueId())) {
-                event.setCancelled(true);
-                player.sendMessage("§cThis block is locked by " + protection.getOwnerName());
-            }
+        // Allow owner and trusted players; the protection itself is only built for the message
+        Access access = protectionManager.getAccess(worldName, dimensionId, x, y, z, player.getUniqueId());
+        if (access == Access.DENIED) {
+            event.setCancelled(true);
+            metrics.getInteractDenials().increment();
+            ProtectedBlock protection = protectionManager.getProtection(worldName, dimensionId, x, y, z);
+            player.sendMessage("§cThis block is locked by " + (protection != null ? protection.getOwnerName() : "another player"));
+        } else if (access == Access.TRUSTED) {
+            protectionManager.recordTrustedUse(worldName, dimensionId, x, y, z);
         }
     }
 
@@ -83,12 +133,21 @@ public class BlockListener {
      */
     @EventHandler
     public void onBlockBreak(BlockBreakEvent event) {
+        long start = System.nanoTime();
+        try {
+            checkBreak(event);
+        } finally {
+            metrics.getBreakLatency().recordSince(start);
+        }
+    }
+
+    private void checkBreak(BlockBreakEvent event) {
         if (!(event.getEntity() instanceof EntityPlayer player)) {
             return;
         }
 
-        // Check for bypass permission
-        if (player.hasPermission("blocklocker.bypass") == Tristate.TRUE) {
+        // Check for bypass permission (cached in the session)
+        if (protectionManager.getSession(player.getUniqueId()).hasBypass(player)) {
             return;
         }
 
@@ -101,29 +160,143 @@ public class BlockListener {
         int y = pos.y();
         int z = pos.z();
 
+        // Only lockable blocks can be protected, anything else may be broken while loading
+        if (!protectionManager.isReady(worldName, dimensionId, x, z)
+                && protectableBlocks.contains(block.getBlockState().getBlockType())) {
+            event.setCancelled(true);
+            metrics.getNotReadyDenials().increment();
+            player.sendMessage(notReadyMessage());
+            return;
+        }
+
+        if (!protectionManager.mightBeProtected(worldName, dimensionId, x, z)) {
+            return;
+        }
+
+        Access access = protectionManager.getAccess(worldName, dimensionId, x, y, z, player.getUniqueId());
+        if (access == Access.NONE) {
+            return;
+        }
         ProtectedBlock protection = protectionManager.getProtection(worldName, dimensionId, x, y, z);
         if (protection != null) {
             // Only owner can break protected blocks
-            if (!protection.isOwner(player.getUniqueId())) {
+            if (access != Access.OWNER) {
                 event.setCancelled(true);
+                metrics.getBreakDenials().increment();
                 player.sendMessage("§cYou cannot break a block locked by " + protection.getOwnerName());
+            } else if (protection.hasMembers() && !BlockStructures.isTwoHigh(block.getBlockState())) {
+                // One half of a double chest: the other half stays locked
+                protectionManager.detachBlock(worldName, dimensionId, x, y, z);
             } else {
                 // Owner breaking their own block - remove protection
-                protectionManager.unprotectBlock(worldName, dimensionId, x, y, z);
-                player.sendMessage("§aProtection removed from block.");
+                if (protectionManager.unprotectBlock(worldName, dimensionId, x, y, z)) {
+                    player.sendMessage("§aProtection removed from block.");
+                } else {
+                    // Keep the block rather than leave a lock behind on an empty spot
+                    event.setCancelled(true);
+                    player.sendMessage(NOT_SAVED_MESSAGE);
+                }
             }
         }
     }
 
     /**
-     * Handle lock mode interaction.
+     * Handle block placement next to locked chests. Placing a chest against someone else's
+     * locked chest would pair the two, so it is refused; otherwise the new half joins the
+     * protection once the server has paired the chests.
+     */
+    @EventHandler
+    public void onBlockPlace(BlockPlaceEvent event) {
+        var block = event.getBlock();
+        BlockState placed = block.getBlockState();
+        // Null when the block was not placed by a player
+        EntityPlayer placer = event.getInteractInfo() != null ? event.getInteractInfo().player() : null;
+        if (!protectableBlocks.contains(placed.getBlockType()) || BlockStructures.isTwoHigh(placed)) {
+            return;
+        }
+
+        Dimension dimension = block.getDimension();
+        var pos = block.getPosition();
+        String worldName = dimension.getWorld().getWorldData().getDisplayName();
+        int dimensionId = dimension.getDimensionInfo().dimensionId();
+        int x = pos.x();
+        int y = pos.y();
+        int z = pos.z();
+
+        if (!protectionManager.isReady(worldName, dimensionId, x, z)) {
+            event.setCancelled(true);
+            metrics.getNotReadyDenials().increment();
+            if (placer != null) {
+                placer.sendMessage(notReadyMessage());
+            }
+            return;
+        }
+
+        boolean nextToLocked = false;
+        for (int[] offset : HORIZONTAL_OFFSETS) {
+            int neighbourX = x + offset[0];
+            int neighbourZ = z + offset[1];
+            if (!protectionManager.mightBeProtected(worldName, dimensionId, neighbourX, neighbourZ)) {
+                continue;
+            }
+            ProtectedBlock neighbour = protectionManager.getProtection(worldName, dimensionId, neighbourX, y, neighbourZ);
+            if (neighbour == null || dimension.getBlockState(neighbourX, y, neighbourZ).getBlockType() != placed.getBlockType()) {
+                continue;
+            }
+            if (placer != null
+                    && protectionManager.getAccess(worldName, dimensionId, neighbourX, y, neighbourZ,
+                    placer.getUniqueId()) == Access.DENIED
+                    && !protectionManager.getSession(placer.getUniqueId()).hasBypass(placer)) {
+                event.setCancelled(true);
+                metrics.getPlaceDenials().increment();
+                placer.sendMessage("§cYou cannot place this next to a block locked by " + neighbour.getOwnerName());
+                return;
+            }
+            nextToLocked = true;
+        }
+
+        if (nextToLocked) {
+            // Chests pair up after the placement went through
+            Server.getInstance().getScheduler().scheduleDelayed(BlockLockerPlugin.getInstance(), () -> {
+                joinPairedStructure(dimension, worldName, dimensionId, x, y, z);
+                return false;
+            }, 1);
+        }
+    }
+
+    private String notReadyMessage() {
+        return protectionManager.isLoading() ? STARTING_MESSAGE : NOT_READY_MESSAGE;
+    }
+
+    /**
+     * Add a freshly placed block to the protection of the block it was paired with.
      */
-    private void handleLockMode(EntityPlayer player, Dimension dimension, int dimensionId, int x, int y, int z) {
-        String blockId = dimension.getBlockState(x, y, z).getBlockType().getIdentifier().toString();
+    private void joinPairedStructure(Dimension dimension, String worldName, int dimensionId, int x, int y, int z) {
+        if (protectionManager.isProtected(worldName, dimensionId, x, y, z)) {
+            return;
+        }
+        for (long member : BlockStructures.findMembers(dimension, x, y, z)) {
+            int memberX = BlockKeys.unpackX(member);
+            int memberY = BlockKeys.unpackY(member);
+            int memberZ = BlockKeys.unpackZ(member);
+            ProtectedBlock paired = protectionManager.getProtection(worldName, dimensionId, memberX, memberY, memberZ);
+            if (paired != null) {
+                long[] positions = paired.getBlockPositions();
+                positions = Arrays.copyOf(positions, positions.length + 1);
+                positions[positions.length - 1] = BlockKeys.pack(x, y, z);
+                protectionManager.setStructure(worldName, dimensionId, memberX, memberY, memberZ, positions);
+                return;
+            }
+        }
+    }
 
-        if (!BlockUtils.isProtectableBlock(blockId)) {
+    /**
+     * Handle lock mode interaction.
+     */
+    private void handleLockMode(EntityPlayer player, PlayerSession session, Dimension dimension, int dimensionId, int x, int y, int z) {
+        if (!protectableBlocks.contains(dimension.getBlockState(x, y, z).getBlockType())) {
             player.sendMessage("§cThis block cannot be locked. Only containers, doors, and valuable blocks can be protected.");
-            protectionManager.disableLockMode(player.getUniqueId());
+            session.setMode(PlayerSession.Mode.NONE);
             return;
         }
 
@@ -132,7 +305,32 @@ public class BlockListener {
         // Check if already protected
         if (protectionManager.isProtected(worldName, dimensionId, x, y, z)) {
             player.sendMessage("§cThis block is already locked.");
-            protectionManager.disableLockMode(player.getUniqueId());
+            session.setMode(PlayerSession.Mode.NONE);
+            return;
+        }
+
+        // The other half of a door or double chest is locked together with this block
+        long[] members = BlockStructures.findMembers(dimension, x, y, z);
+        for (long member : members) {
+            if (protectionManager.isProtected(worldName, dimensionId,
+                    BlockKeys.unpackX(member), BlockKeys.unpackY(member), BlockKeys.unpackZ(member))) {
+                player.sendMessage("§cThe other half of this block is already locked.");
+                session.setMode(PlayerSession.Mode.NONE);
+                return;
+            }
+        }
+
+        // Limits are checked against counters, never by listing the player's protections
+        ProtectionLimits.Usage total = protectionManager.getLimits().total(player);
+        if (total.isReached()) {
+            player.sendMessage("§cYou have reached your limit of " + total.limit() + " locked blocks. Unlock one first.");
+            session.setMode(PlayerSession.Mode.NONE);
+            return;
+        }
+        ProtectionLimits.Usage inWorld = protectionManager.getLimits().inWorld(player, worldName);
+        if (inWorld.isReached()) {
+            player.sendMessage("§cYou have reached the limit of " + inWorld.limit() + " locked blocks in this world.");
+            session.setMode(PlayerSession.Mode.NONE);
             return;
         }
 
@@ -142,72 +340,122 @@ public class BlockListener {
                 : player.getDisplayName();
 
         // Protect the block
-        protectionManager.protectBlock(worldName, dimensionId, x, y, z, player.getUniqueId(), playerName);
-        player.sendMessage("§aBlock locked successfully! Only you and trusted players can access it.");
+        if (protectionManager.protectBlock(worldName, dimensionId, x, y, z, player.getUniqueId(), playerName, members)) {
+            player.sendMessage("§aBlock locked successfully! Only you and trusted players can access it.");
+        } else {
+            player.sendMessage(NOT_SAVED_MESSAGE);
+        }
 
-        protectionManager.disableLockMode(player.getUniqueId());
+        session.setMode(PlayerSession.Mode.NONE);
     }
 
     /**
      * Handle unlock mode interaction.
      */
-    private void handleUnlockMode(EntityPlayer player, String worldName, int dimensionId, int x, int y, int z) {
+    private void handleUnlockMode(EntityPlayer player, PlayerSession session, String worldName, int dimensionId, int x, int y, int z) {
         ProtectedBlock protection = protectionManager.getProtection(worldName, dimensionId, x, y, z);
 
         if (protection == null) {
             player.sendMessage("§cThis block is not locked.");
-            protectionManager.disableUnlockMode(player.getUniqueId());
+            session.setMode(PlayerSession.Mode.NONE);
             return;
         }
 
         if (!protection.isOwner(player.getUniqueId())) {
             player.sendMessage("§cOnly the owner can unlock this block.");
-            protectionManager.disableUnlockMode(player.getUniqueId());
+            session.setMode(PlayerSession.Mode.NONE);
             return;
         }
 
-        protectionManager.unprotectBlock(worldName, dimensionId, x, y, z);
-        player.sendMessage("§aBlock unlocked successfully!");
+        if (protectionManager.unprotectBlock(worldName, dimensionId, x, y, z)) {
+            player.sendMessage("§aBlock unlocked successfully!");
+        } else {
+            player.sendMessage(NOT_SAVED_MESSAGE);
+        }
 
-        protectionManager.disableUnlockMode(player.getUniqueId());
+        session.setMode(PlayerSession.Mode.NONE);
     }
 
     /**
      * Handle trust mode interaction.
      */
-    private void handleTrustMode(EntityPlayer player, String worldName, int dimensionId, int x, int y, int z) {
+    private void handleTrustMode(EntityPlayer player, PlayerSession session, String worldName, int dimensionId, int x, int y, int z) {
         ProtectedBlock protection = protectionManager.getProtection(worldName, dimensionId, x, y, z);
 
         if (protection == null) {
             player.sendMessage("§cThis block is not locked.");
-            protectionManager.disableTrustMode(player.getUniqueId());
+            session.setMode(PlayerSession.Mode.NONE);
             return;
         }
 
         if (!protection.isOwner(player.getUniqueId())) {
             player.sendMessage("§cOnly the owner can add trusted players.");
-            protectionManager.disableTrustMode(player.getUniqueId());
+            session.setMode(PlayerSession.Mode.NONE);
             return;
         }
 
-        UUID targetUuid = protectionManager.getTrustTarget(player.getUniqueId());
+        UUID targetUuid = session.getTrustTarget();
         if (targetUuid == null) {
             player.sendMessage("§cError: No target player specified.");
-            protectionManager.disableTrustMode(player.getUniqueId());
+            session.setMode(PlayerSession.Mode.NONE);
             return;
         }
 
+        // Targets are players or, from /blocklocker trustgroup, one of the owner's groups
+        String target = TrustGroups.isGroupRef(targetUuid) ? "Group" : "Player";
+
         // Check if already trusted
         if (protection.isTrusted(targetUuid)) {
             // Untrust (remove)
-            protectionManager.removeTrustedPlayer(worldName, dimensionId, x, y, z, targetUuid);
-            player.sendMessage("§aPlayer removed from trusted list.");
+            if (protectionManager.removeTrustedPlayer(worldName, dimensionId, x, y, z, targetUuid)) {
+                player.sendMessage("§a" + target + " removed from trusted list.");
+            } else {
+                player.sendMessage(NOT_SAVED_MESSAGE);
+            }
         } else {
             // Trust (add)
-            protectionManager.addTrustedPlayer(worldName, dimensionId, x, y, z, targetUuid);
-            player.sendMessage("§aPlayer added to trusted list.");
+            if (protectionManager.addTrustedPlayer(worldName, dimensionId, x, y, z, targetUuid)) {
+                player.sendMessage("§a" + target + " added to trusted list.");
+            } else {
+                player.sendMessage(NOT_SAVED_MESSAGE);
+            }
+        }
+
+        session.setMode(PlayerSession.Mode.NONE);
+    }
+
+    /**
+     * Handle flag mode interaction.
+     */
+    private void handleFlagMode(EntityPlayer player, PlayerSession session, String worldName, int dimensionId, int x, int y, int z) {
+        ProtectedBlock protection = protectionManager.getProtection(worldName, dimensionId, x, y, z);
+
+        if (protection == null) {
+            player.sendMessage("§cThis block is not locked.");
+            session.setMode(PlayerSession.Mode.NONE);
+            return;
+        }
+
+        if (!protection.isOwner(player.getUniqueId())) {
+            player.sendMessage("§cOnly the owner can change the settings of this block.");
+            session.setMode(PlayerSession.Mode.NONE);
+            return;
+        }
+
+        PlayerSession.Flag flag = session.getFlagTarget();
+        boolean value = session.isFlagValue();
+        boolean hoppers = flag == PlayerSession.Flag.HOPPERS;
+        boolean saved = hoppers
+                ? protectionManager.setFlags(worldName, dimensionId, x, y, z, protection.isAllowRedstone(), value)
+                : protectionManager.setFlags(worldName, dimensionId, x, y, z, value, protection.isAllowHoppers());
+        if (!saved) {
+            player.sendMessage(NOT_SAVED_MESSAGE);
+        } else if (hoppers) {
+            player.sendMessage(value ? "§aHoppers can now move items in and out of this block." : "§aHoppers can no longer access this block.");
+        } else {
+            player.sendMessage(value ? "§aRedstone can now activate this block." : "§aRedstone can no longer activate this block.");
         }
 
-        protectionManager.disableTrustMode(player.getUniqueId());
+        session.setMode(PlayerSession.Mode.NONE);
     }
 }
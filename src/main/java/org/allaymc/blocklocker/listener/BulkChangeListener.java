@@ -0,0 +1,121 @@
+package org.allaymc.blocklocker.listener;
+
+import org.allaymc.api.eventbus.EventHandler;
+import org.allaymc.api.eventbus.event.block.BlockExplodeEvent;
+import org.allaymc.api.eventbus.event.block.BlockPistonEvent;
+import org.allaymc.api.eventbus.event.entity.EntityExplodeEvent;
+import org.allaymc.api.world.Dimension;
+import org.allaymc.api.world.explosion.Explosion;
+import org.allaymc.blocklocker.index.BlockKeys;
+import org.allaymc.blocklocker.manager.ProtectionManager;
+import org.joml.Vector3ic;
+
+import java.util.BitSet;
+import java.util.Collection;
+
+/**
+ * Keeps explosions and pistons from destroying or moving protected blocks. These events
+ * touch hundreds of blocks at once, so each one is checked with a single batch lookup.
+ */
+public class BulkChangeListener {
+
+    // How far an explosion can destroy blocks, in multiples of its size; rays lose 0.225
+    // of at most 1.3 x size per 0.3 blocks, so they end within 1.75 x size
+    private static final float BLAST_REACH = 2f;
+
+    // Larger explosions are treated as reaching this far, to bound the lookup
+    private static final int MAX_BLAST_REACH = 32;
+
+    private final ProtectionManager protectionManager;
+
+    public BulkChangeListener(ProtectionManager protectionManager) {
+        this.protectionManager = protectionManager;
+    }
+
+    /**
+     * Keep TNT, creepers and other exploding entities from destroying protected blocks.
+     */
+    @EventHandler
+    public void onEntityExplode(EntityExplodeEvent event) {
+        var location = event.getEntity().getLocation();
+        protectBlastArea(event.getEntity().getDimension(), (int) Math.floor(location.x()), (int) Math.floor(location.y()),
+                (int) Math.floor(location.z()), event.getExplosion());
+    }
+
+    /**
+     * Keep exploding blocks (beds, respawn anchors) from destroying protected blocks.
+     */
+    @EventHandler
+    public void onBlockExplode(BlockExplodeEvent event) {
+        var pos = event.getBlock().getPosition();
+        protectBlastArea(event.getBlock().getDimension(), pos.x(), pos.y(), pos.z(), event.getExplosion());
+    }
+
+    /**
+     * Stop a piston if it would push, pull or destroy a protected block.
+     */
+    @EventHandler
+    public void onPiston(BlockPistonEvent event) {
+        Dimension dimension = event.getBlock().getDimension();
+        if (isAnyProtected(dimension, event.getBlocksToMove()) || isAnyProtected(dimension, event.getBlocksToDestroy())) {
+            event.setCancelled(true);
+            protectionManager.getMetrics().getBulkDenials().increment();
+        }
+    }
+
+    private boolean isAnyProtected(Dimension dimension, Collection<? extends Vector3ic> blocks) {
+        return !blocks.isEmpty() && !findProtected(dimension, blocks).isEmpty();
+    }
+
+    /**
+     * The explosion events tell where an explosion is, not which blocks it will destroy.
+     * If a protected block, or one whose protections are still loading, is within its
+     * reach, the explosion still hurts entities but destroys no blocks. Only columns the
+     * occupancy filter cannot rule out are looked up.
+     */
+    private void protectBlastArea(Dimension dimension, int x, int y, int z, Explosion explosion) {
+        if (!explosion.isDestroyBlocks()) {
+            return;
+        }
+        String worldName = dimension.getWorld().getWorldData().getDisplayName();
+        int dimensionId = dimension.getDimensionInfo().dimensionId();
+        int reach = Math.min(MAX_BLAST_REACH, (int) Math.ceil(explosion.getSize() * BLAST_REACH));
+        int width = 2 * reach + 1;
+        long[] columns = new long[width * width];
+        int count = 0;
+        for (int columnX = x - reach; columnX <= x + reach; columnX++) {
+            for (int columnZ = z - reach; columnZ <= z + reach; columnZ++) {
+                if (!protectionManager.isReady(worldName, dimensionId, columnX, columnZ)
+                        || protectionManager.mightBeProtected(worldName, dimensionId, columnX, columnZ)) {
+                    columns[count++] = BlockKeys.pack(columnX, y, columnZ);
+                }
+            }
+        }
+        if (count == 0) {
+            return;
+        }
+        long[] positions = new long[count * width];
+        int i = 0;
+        for (int column = 0; column < count; column++) {
+            int columnX = BlockKeys.unpackX(columns[column]);
+            int columnZ = BlockKeys.unpackZ(columns[column]);
+            for (int columnY = y - reach; columnY <= y + reach; columnY++) {
+                positions[i++] = BlockKeys.pack(columnX, columnY, columnZ);
+            }
+        }
+        if (!protectionManager.filterProtected(worldName, dimensionId, positions).isEmpty()) {
+            explosion.setDestroyBlocks(false);
+            protectionManager.getMetrics().getBulkDenials().increment();
+        }
+    }
+
+    private BitSet findProtected(Dimension dimension, Collection<? extends Vector3ic> blocks) {
+        long[] positions = new long[blocks.size()];
+        int i = 0;
+        for (Vector3ic pos : blocks) {
+            positions[i++] = BlockKeys.pack(pos.x(), pos.y(), pos.z());
+        }
+        return protectionManager.filterProtected(dimension.getWorld().getWorldData().getDisplayName(),
+                dimension.getDimensionInfo().dimensionId(), positions);
+    }
+}
@@ -1,11 +1,12 @@
 package org.allaymc.blocklocker.listener;
 
 import org.allaymc.api.eventbus.EventHandler;
+import org.allaymc.api.eventbus.event.server.PlayerJoinEvent;
 import org.allaymc.api.eventbus.event.server.PlayerQuitEvent;
 import org.allaymc.blocklocker.BlockLockerPlugin;
 
 /**
- * Player event listener for cleaning up player data.
+ * Player event listener that opens and drops player sessions.
  */
 public class PlayerEventListener {
 
@@ -16,7 +17,20 @@ public class PlayerEventListener {
     }
 
     /**
-     * Clean up player mode settings when they disconnect.
+     * Start a fresh session when a player joins.
+     */
+    @EventHandler
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        var player = event.getPlayer();
+        if (player.getLoginData() == null) {
+            return;
+        }
+
+        plugin.getProtectionManager().openSession(player.getLoginData().getUuid());
+    }
+
+    /**
+     * Drop the player's session when they disconnect.
      * This prevents memory leaks from lock/unlock/trust mode states.
      */
     @EventHandler
@@ -0,0 +1,59 @@
+package org.allaymc.blocklocker.listener;
+
+import org.allaymc.api.eventbus.EventHandler;
+import org.allaymc.api.eventbus.event.world.ChunkLoadEvent;
+import org.allaymc.api.eventbus.event.world.ChunkUnloadEvent;
+import org.allaymc.api.server.Server;
+import org.allaymc.api.world.Dimension;
+import org.allaymc.api.world.World;
+import org.allaymc.blocklocker.manager.ProtectionManager;
+
+/**
+ * World event listener that keeps protection regions in memory while their chunks are loaded.
+ */
+public class WorldEventListener {
+
+    private final ProtectionManager protectionManager;
+
+    public WorldEventListener(ProtectionManager protectionManager) {
+        this.protectionManager = protectionManager;
+    }
+
+    /**
+     * Start loading the protections of a chunk's region before players can reach it, and
+     * queue the chunk for checking its protections against its blocks.
+     */
+    @EventHandler
+    public void onChunkLoad(ChunkLoadEvent event) {
+        Dimension dimension = event.getDimension();
+        String worldName = dimension.getWorld().getWorldData().getDisplayName();
+        int dimensionId = dimension.getDimensionInfo().dimensionId();
+        protectionManager.onChunkLoad(worldName, dimensionId, event.getChunk().getX(), event.getChunk().getZ());
+        protectionManager.getChunkValidator().chunkLoaded(dimension, worldName, dimensionId,
+                event.getChunk().getX(), event.getChunk().getZ());
+    }
+
+    /**
+     * Count the chunks every dimension has loaded already, whose load events came before
+     * the plugin was listening or protection data was loaded. Run once loading is done.
+     */
+    public void seedLoadedChunks() {
+        for (World world : Server.getInstance().getWorldPool().getWorlds().values()) {
+            String worldName = world.getWorldData().getDisplayName();
+            for (Dimension dimension : world.getDimensions().values()) {
+                protectionManager.seedLoadedChunks(worldName, dimension.getDimensionInfo().dimensionId(),
+                        dimension.getChunkManager().getLoadedChunks());
+            }
+        }
+    }
+
+    /**
+     * Let a region be evicted once none of its chunks are loaded any more.
+     */
+    @EventHandler
+    public void onChunkUnload(ChunkUnloadEvent event) {
+        Dimension dimension = event.getDimension();
+        protectionManager.onChunkUnload(dimension.getWorld().getWorldData().getDisplayName(),
+                dimension.getDimensionInfo().dimensionId(), event.getChunk().getX(), event.getChunk().getZ());
+    }
+}
@@ -0,0 +1,92 @@
+package org.allaymc.blocklocker.manager;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Direct-mapped cache of hopper and redstone decisions per container position.
+ * <p>
+ * Hoppers check their source and target every few ticks, far more often than players
+ * click blocks, so the decision for a position is kept after the first lookup. Every
+ * lock, unlock and flag change bumps a version, which invalidates all cached decisions
+ * at once; changes are rare compared to hopper checks. Hits do not allocate.
+ * <p>
+ * Each entry also keeps the owner of the protection at its position, so moves between
+ * two containers of the same owner are decided from two cache hits.
+ */
+public class AutomationAccessCache {
+
+    public static final int HOPPERS_ALLOWED = 1;
+    public static final int REDSTONE_ALLOWED = 1 << 1;
+
+    private static final int SIZE = 1 << 12;
+
+    // Entries are immutable, so a racing reader sees either the old or the new one
+    private final Entry[] entries = new Entry[SIZE];
+    private final AtomicInteger version = new AtomicInteger();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Current version; read it before computing a decision and pass it to {@link #put}.
+     */
+    public int version() {
+        return version.get();
+    }
+
+    /**
+     * Get the cached entry for a position, or {@code null} if there is no valid one.
+     */
+    public Entry get(int dimension, long position) {
+        Entry entry = entries[slot(dimension, position)];
+        if (entry != null && entry.position == position && entry.dimension == dimension
+                && entry.version == version.get()) {
+            hits.increment();
+            return entry;
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Store a decision computed while the cache was at the given version. A decision
+     * computed before a change is never served after it.
+     *
+     * @param owner owner of the protection at the position, or {@code null} if there is none
+     * @return the stored entry
+     */
+    public Entry put(int dimension, long position, int version, int decision, UUID owner) {
+        Entry entry = new Entry(dimension, position, version, decision, owner);
+        entries[slot(dimension, position)] = entry;
+        return entry;
+    }
+
+    /**
+     * Drop all cached decisions. Called after every lock, unlock, transfer and flag change.
+     */
+    public void invalidate() {
+        version.incrementAndGet();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    private static int slot(int dimension, long position) {
+        long hash = (position ^ ((long) dimension << 58)) * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 52) & (SIZE - 1);
+    }
+
+    /**
+     * A cached decision: the bits of {@link #HOPPERS_ALLOWED} and {@link #REDSTONE_ALLOWED},
+     * and the owner of the protection, {@code null} where there is none.
+     */
+    public record Entry(int dimension, long position, int version, int decision, UUID owner) {
+    }
+}
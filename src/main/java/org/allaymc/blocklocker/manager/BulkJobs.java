@@ -0,0 +1,305 @@
+package org.allaymc.blocklocker.manager;
+
+import lombok.Getter;
+import org.allaymc.api.scheduler.Task;
+import org.allaymc.blocklocker.config.BlockLockerConfig;
+import org.allaymc.blocklocker.data.ProtectedBlock;
+import org.allaymc.blocklocker.index.OwnedProtection;
+import org.allaymc.blocklocker.index.OwnerIndex;
+import org.allaymc.blocklocker.index.OwnerTable;
+import org.slf4j.Logger;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Runs admin operations that touch many protections (purge a player, transfer all of a
+ * player's protections, wipe a world or an area) as jobs on the server thread. Each tick
+ * a job handles at most a fixed number of protections within a time budget, so removing
+ * the 20,000 locks of a griefer does not freeze the server. Jobs run one after another
+ * and can be cancelled; changes made before a cancel are kept.
+ * <p>
+ * Every change goes through the {@link ProtectionManager} and thereby the journal, whose
+ * writer syncs records in batches; once a job ends, the changed regions are written in a
+ * single compaction off the server thread. Protections in regions that are not in memory
+ * are requested and retried later, like in the {@link ExpirySweeper}.
+ */
+public class BulkJobs implements Task {
+
+    // Ticks to wait after a pass over the queue changed nothing because regions are still loading
+    private static final int STALL_WAIT_TICKS = 20;
+
+    // Passes without progress before giving up on the rest of the queue
+    private static final int MAX_STALLED_PASSES = 30;
+
+    /**
+     * Kinds of jobs.
+     */
+    public enum Kind {
+        PURGE,
+        TRANSFER,
+        WIPE
+    }
+
+    private final ProtectionManager manager;
+    private final BlockLockerConfig.Bulk config;
+    private final Logger logger;
+
+    private final ArrayDeque<Job> jobs = new ArrayDeque<>();
+    private int nextId = 1;
+    private int waitTicks;
+
+    public BulkJobs(ProtectionManager manager, BlockLockerConfig.Bulk config, Logger logger) {
+        this.manager = manager;
+        this.config = config;
+        this.logger = logger;
+    }
+
+    /**
+     * Queue removing all protections of a player.
+     */
+    public Job purge(UUID owner, String description, Consumer<String> requester) {
+        return submit(new Job(nextId++, Kind.PURGE, description, requester, owner, null, null, null));
+    }
+
+    /**
+     * Queue handing all protections of a player over to another player.
+     */
+    public Job transfer(UUID from, UUID to, String toName, String description, Consumer<String> requester) {
+        return submit(new Job(nextId++, Kind.TRANSFER, description, requester, from, to, toName, null));
+    }
+
+    /**
+     * Queue removing all protections in a world, optionally only inside a box.
+     */
+    public Job wipe(Area area, String description, Consumer<String> requester) {
+        return submit(new Job(nextId++, Kind.WIPE, description, requester, null, null, null, area));
+    }
+
+    private Job submit(Job job) {
+        jobs.add(job);
+        logger.info("Queued job #" + job.id + ": " + job.description);
+        return job;
+    }
+
+    /**
+     * Cancel a job that is queued or running.
+     *
+     * @return {@code false} if there is no such job
+     */
+    public boolean cancel(int id) {
+        for (Job job : jobs) {
+            if (job.id == id) {
+                jobs.remove(job);
+                job.end("cancelled");
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Queued and running jobs, the running one first.
+     */
+    public List<Job> getJobs() {
+        return new ArrayList<>(jobs);
+    }
+
+    @Override
+    public boolean onRun() {
+        Job job = jobs.peek();
+        if (job == null || manager.isLoading()) {
+            return true;
+        }
+        if (waitTicks > 0) {
+            waitTicks--;
+            return true;
+        }
+        long deadline = System.nanoTime() + (long) (config.getTickBudgetMillis() * 1_000_000);
+        int budget = config.getRecordsPerTick();
+        if (!job.scanned) {
+            budget -= job.scan(deadline, budget);
+        }
+        if (job.scanned && budget > 0) {
+            job.apply(deadline, budget);
+        }
+        if (job.scanned && job.queue.isEmpty()) {
+            jobs.poll();
+            job.end("done");
+        }
+        return true;
+    }
+
+    /**
+     * Area of a wipe: a world, optionally limited to a box spanning all heights.
+     */
+    public record Area(String worldName, boolean boxed, int minX, int minZ, int maxX, int maxZ) {
+
+        boolean contains(OwnedProtection protection) {
+            return protection.getWorldName().equals(worldName) && (!boxed
+                    || protection.getX() >= minX && protection.getX() <= maxX
+                    && protection.getZ() >= minZ && protection.getZ() <= maxZ);
+        }
+    }
+
+    /**
+     * A queued or running job.
+     */
+    public final class Job {
+
+        @Getter
+        private final int id;
+        @Getter
+        private final Kind kind;
+        @Getter
+        private final String description;
+        private final Consumer<String> requester;
+        private final UUID owner;
+        private final UUID newOwner;
+        private final String newOwnerName;
+        private final Area area;
+
+        private final ArrayDeque<OwnedProtection> queue = new ArrayDeque<>();
+        private boolean scanned;
+        private int ownerCursor;
+        @Getter
+        private int found;
+        @Getter
+        private int done;
+
+        // Queue entries left in the current pass, and how many of them made progress
+        private int passLeft;
+        private int passProgress;
+        private int stalledPasses;
+
+        private Job(int id, Kind kind, String description, Consumer<String> requester,
+                    UUID owner, UUID newOwner, String newOwnerName, Area area) {
+            this.id = id;
+            this.kind = kind;
+            this.description = description;
+            this.requester = requester;
+            this.owner = owner;
+            this.newOwner = newOwner;
+            this.newOwnerName = newOwnerName;
+            this.area = area;
+        }
+
+        /**
+         * Short description of the progress.
+         */
+        public String getProgress() {
+            if (!scanned) {
+                return kind == Kind.WIPE
+                        ? "scanning owners " + ownerCursor + "/" + manager.getProtectedBlocks().getOwnerTable().size()
+                        : "queued";
+            }
+            return done + "/" + found + " protections";
+        }
+
+        // Collect the affected protections; returns the number of owners looked at
+        private int scan(long deadline, int budget) {
+            OwnerIndex owners = manager.getProtectedBlocks().getOwners();
+            if (kind != Kind.WIPE) {
+                // One copy of the owner's list, proportional to what the job will do anyway
+                queue.addAll(owners.getOwnedBy(owner));
+                finishScan();
+                return 1;
+            }
+            OwnerTable table = manager.getProtectedBlocks().getOwnerTable();
+            int ownerCount = table.size();
+            int looked = 0;
+            while (ownerCursor < ownerCount && looked < budget && System.nanoTime() < deadline) {
+                UUID candidate = table.uuid(ownerCursor++);
+                looked++;
+                if (owners.count(candidate) == 0) {
+                    continue;
+                }
+                for (OwnedProtection protection : owners.getOwnedBy(candidate)) {
+                    if (area.contains(protection)) {
+                        queue.add(protection);
+                    }
+                }
+            }
+            if (ownerCursor >= ownerCount) {
+                finishScan();
+            }
+            return looked;
+        }
+
+        private void finishScan() {
+            scanned = true;
+            found = queue.size();
+            passLeft = queue.size();
+            passProgress = 0;
+        }
+
+        private void apply(long deadline, int budget) {
+            while (!queue.isEmpty() && budget-- > 0 && System.nanoTime() < deadline) {
+                OwnedProtection protection = queue.poll();
+                if (!manager.isReady(protection.getWorldName(), protection.getDimensionId(),
+                        protection.getX(), protection.getZ())) {
+                    // Loading was requested by isReady; try again in a later pass
+                    queue.add(protection);
+                } else {
+                    passProgress++;
+                    if (applyTo(protection)) {
+                        done++;
+                    }
+                }
+                if (--passLeft == 0) {
+                    if (passProgress == 0 && ++stalledPasses >= MAX_STALLED_PASSES) {
+                        logger.warn("Job #" + id + " gave up on " + queue.size()
+                                + " protections whose regions did not load.");
+                        queue.clear();
+                    } else if (passProgress == 0) {
+                        waitTicks = STALL_WAIT_TICKS;
+                        passLeft = queue.size();
+                        return;
+                    } else {
+                        stalledPasses = 0;
+                    }
+                    passLeft = queue.size();
+                    passProgress = 0;
+                }
+            }
+        }
+
+        // Returns whether the protection was changed
+        private boolean applyTo(OwnedProtection protection) {
+            String worldName = protection.getWorldName();
+            int dimensionId = protection.getDimensionId();
+            int x = protection.getX();
+            int y = protection.getY();
+            int z = protection.getZ();
+            ProtectedBlock block = manager.getProtection(worldName, dimensionId, x, y, z);
+            // Skip protections that were changed since the scan
+            if (block == null || block.getX() != x || block.getY() != y || block.getZ() != z
+                    || !block.getOwnerUuid().equals(protection.getOwnerUuid())) {
+                return false;
+            }
+            if (kind == Kind.TRANSFER) {
+                return manager.transferProtection(worldName, dimensionId, x, y, z, newOwner, newOwnerName);
+            }
+            return manager.unprotectBlock(worldName, dimensionId, x, y, z);
+        }
+
+        private void end(String outcome) {
+            String summary = "Job #" + id + " (" + description + ") " + outcome + ": "
+                    + (scanned ? done + " of " + found : done) + " protections "
+                    + (kind == Kind.TRANSFER ? "transferred." : "removed.");
+            logger.info(summary);
+            if (requester != null) {
+                requester.accept(summary);
+            }
+            queue.clear();
+            if (done > 0) {
+                // Write the changed regions once instead of leaving it all to the journal
+                CompletableFuture.runAsync(manager::saveAll);
+            }
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package org.allaymc.blocklocker.manager;
+
+import org.allaymc.api.block.type.BlockType;
+import org.allaymc.api.block.type.BlockTypes;
+import org.allaymc.api.scheduler.Task;
+import org.allaymc.api.world.Dimension;
+import org.allaymc.blocklocker.config.BlockLockerConfig;
+import org.allaymc.blocklocker.data.ProtectedBlock;
+import org.allaymc.blocklocker.index.BlockKeys;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Drops protections whose blocks no longer exist. Blocks destroyed by explosions, fire,
+ * editing tools or region resets never fire a player break event, so their protections
+ * would stay forever and lock whatever is placed there later.
+ * <p>
+ * Every chunk that loads is queued, and a repeating task checks the protections anchored
+ * in it against the blocks actually there, under a per-tick time budget. Only a position
+ * that was emptied (air, a fluid that flowed in, fire) counts as gone. Any other block is
+ * kept, even one that is not protectable under the current configuration, so narrowing
+ * {@code protectableBlocks} never deletes existing locks. Blocks in
+ * chunks that are not loaded are left alone. A protection whose blocks are all gone is
+ * removed; one that lost only some of its blocks (half of a double chest) keeps the rest.
+ * This way dead entries are cleaned up where players go, without ever scanning the world.
+ */
+public class ChunkValidator implements Task {
+
+    // Ticks a chunk stays loaded before it is checked, so it is fully in place
+    private static final int DELAY_TICKS = 40;
+
+    // Ticks to keep retrying a chunk whose protections are still loading
+    private static final int MAX_WAIT_TICKS = 20 * 60;
+
+    // What is left where a block was destroyed
+    private static final Set<String> EMPTIED = Set.of("minecraft:air", "minecraft:water", "minecraft:flowing_water",
+            "minecraft:lava", "minecraft:flowing_lava", "minecraft:fire", "minecraft:soul_fire");
+
+    private final ProtectionManager manager;
+    private final BlockLockerConfig.Validation config;
+
+    // Filled by chunk load events, which may come from world threads
+    private final Queue<PendingChunk> loaded = new ConcurrentLinkedQueue<>();
+    private final Set<PendingChunk> queued = ConcurrentHashMap.newKeySet();
+
+    // Chunks due for a check, in load order; only touched by the task
+    private final ArrayDeque<PendingChunk> due = new ArrayDeque<>();
+
+    private long tick;
+
+    public ChunkValidator(ProtectionManager manager, BlockLockerConfig.Validation config) {
+        this.manager = manager;
+        this.config = config;
+    }
+
+    /**
+     * Queue a chunk that just loaded. Chunks already waiting are not queued twice.
+     */
+    public void chunkLoaded(Dimension dimension, String worldName, int dimensionId, int chunkX, int chunkZ) {
+        if (!config.isEnabled()) {
+            return;
+        }
+        PendingChunk chunk = new PendingChunk(dimension, worldName, dimensionId, chunkX, chunkZ);
+        if (queued.add(chunk)) {
+            loaded.add(chunk);
+        }
+    }
+
+    /**
+     * Number of chunks waiting to be checked.
+     */
+    public int getPendingChunks() {
+        return queued.size();
+    }
+
+    @Override
+    public boolean onRun() {
+        tick++;
+        PendingChunk chunk;
+        while ((chunk = loaded.poll()) != null) {
+            chunk.queuedAt = tick;
+            due.add(chunk);
+        }
+        if (due.isEmpty() || manager.isLoading()) {
+            return true;
+        }
+
+        long deadline = System.nanoTime() + (long) (config.getTickBudgetMillis() * 1_000_000);
+        // Each chunk is looked at once per tick at most
+        int remaining = due.size();
+        while (remaining-- > 0 && System.nanoTime() < deadline) {
+            chunk = due.peek();
+            if (tick - chunk.queuedAt < DELAY_TICKS) {
+                // Later entries loaded even later
+                break;
+            }
+            due.poll();
+            if (!chunk.dimension.getChunkManager().isChunkLoaded(chunk.chunkX, chunk.chunkZ)) {
+                // Unloaded again; it is queued anew when it comes back
+                queued.remove(chunk);
+            } else if (validate(chunk)) {
+                queued.remove(chunk);
+            } else if (tick - chunk.queuedAt < MAX_WAIT_TICKS) {
+                due.add(chunk);
+            } else {
+                queued.remove(chunk);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check the protections anchored in a chunk and drop the blocks that are gone.
+     *
+     * @return {@code false} if protections around the chunk are still loading; loading
+     * was requested and the chunk should be checked again later
+     */
+    private boolean validate(PendingChunk chunk) {
+        if (!manager.isReady(chunk.worldName, chunk.dimensionId, (chunk.chunkX << 4) + 8, (chunk.chunkZ << 4) + 8)) {
+            return false;
+        }
+        List<ProtectedBlock> protections = manager.getProtectionsInChunk(chunk.worldName, chunk.dimensionId,
+                chunk.chunkX, chunk.chunkZ);
+        boolean complete = true;
+        for (ProtectedBlock protection : protections) {
+            long[] positions = protection.getBlockPositions();
+            long[] kept = new long[positions.length];
+            int keptCount = 0;
+            for (long position : positions) {
+                if (!isGone(chunk.dimension, position)) {
+                    kept[keptCount++] = position;
+                }
+            }
+            if (keptCount == positions.length) {
+                continue;
+            }
+            if (!manager.isReady(chunk.worldName, chunk.dimensionId, protection.getX(), protection.getZ())) {
+                // Next to an unloaded region; changing it now would read the region from disk
+                complete = false;
+                continue;
+            }
+            if (keptCount == 0) {
+                manager.unprotectBlock(chunk.worldName, chunk.dimensionId,
+                        protection.getX(), protection.getY(), protection.getZ());
+            } else {
+                long[] remaining = new long[keptCount];
+                System.arraycopy(kept, 0, remaining, 0, keptCount);
+                manager.setStructure(chunk.worldName, chunk.dimensionId,
+                        protection.getX(), protection.getY(), protection.getZ(), remaining);
+            }
+            manager.getMetrics().getOrphansRemoved().add(positions.length - keptCount);
+        }
+        return complete;
+    }
+
+    // Whether a protected position was emptied; unknown counts as present
+    private static boolean isGone(Dimension dimension, long position) {
+        int x = BlockKeys.unpackX(position);
+        int y = BlockKeys.unpackY(position);
+        int z = BlockKeys.unpackZ(position);
+        if (!dimension.getChunkManager().isChunkLoaded(x >> 4, z >> 4)) {
+            return false;
+        }
+        BlockType<?> type = dimension.getBlockState(x, y, z).getBlockType();
+        return type == BlockTypes.AIR || EMPTIED.contains(type.getIdentifier().toString());
+    }
+
+    /**
+     * A loaded chunk waiting for its check. Equal by position only.
+     */
+    private static final class PendingChunk {
+
+        final Dimension dimension;
+        final String worldName;
+        final int dimensionId;
+        final int chunkX;
+        final int chunkZ;
+        long queuedAt;
+
+        PendingChunk(Dimension dimension, String worldName, int dimensionId, int chunkX, int chunkZ) {
+            this.dimension = dimension;
+            this.worldName = worldName;
+            this.dimensionId = dimensionId;
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof PendingChunk chunk && chunk.chunkX == chunkX && chunk.chunkZ == chunkZ
+                    && chunk.dimensionId == dimensionId && chunk.worldName.equals(worldName);
+        }
+
+        @Override
+        public int hashCode() {
+            return (worldName.hashCode() * 31 + dimensionId) * 31 + Long.hashCode(BlockKeys.chunkKey(chunkX, chunkZ));
+        }
+    }
+}
@@ -0,0 +1,332 @@
+package org.allaymc.blocklocker.manager;
+
+import lombok.Getter;
+import org.allaymc.api.scheduler.Task;
+import org.allaymc.blocklocker.config.BlockLockerConfig;
+import org.allaymc.blocklocker.data.ProtectedBlock;
+import org.allaymc.blocklocker.index.OwnedProtection;
+import org.allaymc.blocklocker.index.OwnerIndex;
+import org.allaymc.blocklocker.index.OwnerTable;
+import org.allaymc.blocklocker.storage.AtomicFiles;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Removes the protections of owners that have been inactive for too long, see
+ * {@link OwnerActivity}. Runs on the server thread as a repeating task and only does as
+ * much work per tick as the configured time budget allows, so a sweep never stalls a tick.
+ * <p>
+ * A sweep first walks the owner index one owner at a time and queues the protections
+ * that expired, then removes them. A protection whose region is not in memory is only
+ * requested and retried later, so no tick waits for a region file. Each removal is
+ * checked again first, in case the owner came back or the block changed meanwhile.
+ * <p>
+ * A dry run only scans. Both write {@code expiry-report.txt} with the affected owners.
+ */
+public class ExpirySweeper implements Task {
+
+    private static final String REPORT_FILE = "expiry-report.txt";
+    private static final DateTimeFormatter DATE_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd").withZone(ZoneId.systemDefault());
+
+    // How often the automatic sweep and the activity save are considered, in ticks
+    private static final int CHECK_PERIOD_TICKS = 20 * 60;
+    private static final int SAVE_PERIOD_TICKS = 20 * 60 * 5;
+
+    // Ticks to wait after a pass over the queue removed nothing because regions are still loading
+    private static final int STALL_WAIT_TICKS = 20;
+
+    // Passes without progress before giving up on the rest of the queue
+    private static final int MAX_STALLED_PASSES = 30;
+
+    /**
+     * What the sweeper is doing.
+     */
+    public enum State {
+        IDLE,
+        SCANNING,
+        REMOVING
+    }
+
+    private final ProtectionManager manager;
+    private final OwnerActivity activity;
+    private final BlockLockerConfig.Expiry config;
+    private final Logger logger;
+    private final Path reportFile;
+
+    @Getter
+    private State state = State.IDLE;
+    @Getter
+    private boolean paused;
+    @Getter
+    private boolean dryRun;
+
+    private Consumer<String> requester;
+    private long startedAt;
+    private long inactiveBefore;
+    private long createdBefore;
+
+    private int ownerCursor;
+    private final ArrayDeque<OwnedProtection> queue = new ArrayDeque<>();
+    private final Map<UUID, Integer> expiredByOwner = new HashMap<>();
+    @Getter
+    private int found;
+    @Getter
+    private int removed;
+
+    // Queue entries left in the current pass, and how many of them made progress
+    private int passLeft;
+    private int passProgress;
+    private int stalledPasses;
+    private int waitTicks;
+
+    private long ticks;
+
+    public ExpirySweeper(ProtectionManager manager, OwnerActivity activity, BlockLockerConfig.Expiry config,
+                         Logger logger, Path dataFolder) {
+        this.manager = manager;
+        this.activity = activity;
+        this.config = config;
+        this.logger = logger;
+        this.reportFile = dataFolder.resolve(REPORT_FILE);
+    }
+
+    /**
+     * Start a sweep.
+     *
+     * @param requester receives the summary when the sweep ends, may be {@code null}
+     * @return {@code false} if expiry is disabled, a sweep is already running or the
+     * protection data is still loading
+     */
+    public boolean start(boolean dryRun, Consumer<String> requester) {
+        if (config.getInactiveDays() <= 0 || state != State.IDLE || manager.isLoading()) {
+            return false;
+        }
+        this.dryRun = dryRun;
+        this.requester = requester;
+        this.startedAt = System.currentTimeMillis();
+        this.inactiveBefore = startedAt - TimeUnit.DAYS.toMillis(config.getInactiveDays());
+        this.createdBefore = startedAt - TimeUnit.DAYS.toMillis(config.getMinAgeDays());
+        ownerCursor = 0;
+        queue.clear();
+        expiredByOwner.clear();
+        found = 0;
+        removed = 0;
+        stalledPasses = 0;
+        waitTicks = 0;
+        state = State.SCANNING;
+        logger.info("Started " + (dryRun ? "expiry dry run" : "expiry sweep") + " for owners inactive for "
+                + config.getInactiveDays() + " days.");
+        return true;
+    }
+
+    /**
+     * Stop working until {@link #resume()}; also holds off automatic sweeps.
+     */
+    public void pause() {
+        paused = true;
+    }
+
+    public void resume() {
+        paused = false;
+    }
+
+    /**
+     * Short description of what the current sweep has done so far.
+     */
+    public String getProgress() {
+        return switch (state) {
+            case IDLE -> "idle";
+            case SCANNING -> "scanning owners " + ownerCursor + "/" + manager.getProtectedBlocks().getOwnerTable().size()
+                    + ", " + found + " expired protections found";
+            case REMOVING -> "removed " + removed + "/" + found + ", " + queue.size() + " left";
+        };
+    }
+
+    @Override
+    public boolean onRun() {
+        ticks++;
+        if (ticks % SAVE_PERIOD_TICKS == 0) {
+            CompletableFuture.runAsync(this::saveActivity);
+        }
+        if (paused) {
+            return true;
+        }
+        if (state == State.IDLE) {
+            if (ticks % CHECK_PERIOD_TICKS == 0 && isSweepDue()) {
+                start(false, null);
+            }
+            return true;
+        }
+        if (waitTicks > 0) {
+            waitTicks--;
+            return true;
+        }
+
+        long deadline = System.nanoTime() + (long) (config.getTickBudgetMillis() * 1_000_000);
+        if (state == State.SCANNING) {
+            scan(deadline);
+        }
+        if (state == State.REMOVING) {
+            remove(deadline);
+        }
+        return true;
+    }
+
+    private boolean isSweepDue() {
+        return config.getInactiveDays() > 0 && config.getSweepIntervalHours() > 0
+                && System.currentTimeMillis() - activity.getLastSweepAt()
+                >= TimeUnit.HOURS.toMillis(config.getSweepIntervalHours());
+    }
+
+    private void scan(long deadline) {
+        OwnerTable owners = manager.getProtectedBlocks().getOwnerTable();
+        OwnerIndex ownerIndex = manager.getProtectedBlocks().getOwners();
+        int ownerCount = owners.size();
+        while (ownerCursor < ownerCount && System.nanoTime() < deadline) {
+            UUID owner = owners.uuid(ownerCursor++);
+            if (ownerIndex.count(owner) == 0 || activity.getLastActive(owner) >= inactiveBefore) {
+                continue;
+            }
+            for (OwnedProtection protection : ownerIndex.getOwnedBy(owner)) {
+                if (protection.getCreatedAt() < createdBefore) {
+                    queue.add(protection);
+                    expiredByOwner.merge(owner, 1, Integer::sum);
+                    found++;
+                }
+            }
+        }
+        if (ownerCursor < ownerCount) {
+            return;
+        }
+        if (dryRun || queue.isEmpty()) {
+            finish();
+        } else {
+            state = State.REMOVING;
+            passLeft = queue.size();
+            passProgress = 0;
+        }
+    }
+
+    private void remove(long deadline) {
+        while (!queue.isEmpty() && System.nanoTime() < deadline) {
+            OwnedProtection protection = queue.poll();
+            if (!manager.isReady(protection.getWorldName(), protection.getDimensionId(),
+                    protection.getX(), protection.getZ())) {
+                // Loading was requested by isReady; try again in a later pass
+                queue.add(protection);
+            } else {
+                passProgress++;
+                if (isStillExpired(protection)) {
+                    manager.unprotectBlock(protection.getWorldName(), protection.getDimensionId(),
+                            protection.getX(), protection.getY(), protection.getZ());
+                    removed++;
+                }
+            }
+            if (--passLeft == 0) {
+                if (passProgress == 0 && ++stalledPasses >= MAX_STALLED_PASSES) {
+                    logger.warn("Expiry sweep gave up on " + queue.size() + " protections whose regions did not load.");
+                    queue.clear();
+                } else if (passProgress == 0) {
+                    waitTicks = STALL_WAIT_TICKS;
+                    passLeft = queue.size();
+                    return;
+                } else {
+                    stalledPasses = 0;
+                }
+                passLeft = queue.size();
+                passProgress = 0;
+            }
+        }
+        if (queue.isEmpty()) {
+            finish();
+        }
+    }
+
+    private boolean isStillExpired(OwnedProtection protection) {
+        if (activity.getLastActive(protection.getOwnerUuid()) >= inactiveBefore) {
+            return false;
+        }
+        ProtectedBlock block = manager.getProtection(protection.getWorldName(), protection.getDimensionId(),
+                protection.getX(), protection.getY(), protection.getZ());
+        return block != null && block.getOwnerUuid().equals(protection.getOwnerUuid())
+                && block.getX() == protection.getX() && block.getY() == protection.getY()
+                && block.getZ() == protection.getZ() && block.getCreatedAt() < createdBefore;
+    }
+
+    private void finish() {
+        long seconds = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() - startedAt);
+        String summary = dryRun
+                ? "Expiry dry run found " + found + " expired protections of " + expiredByOwner.size()
+                + " owners in " + seconds + "s, see " + REPORT_FILE + "."
+                : "Expiry sweep removed " + removed + " of " + found + " expired protections of "
+                + expiredByOwner.size() + " owners in " + seconds + "s, see " + REPORT_FILE + ".";
+        logger.info(summary);
+        if (requester != null) {
+            requester.accept(summary);
+        }
+        if (!dryRun) {
+            activity.setLastSweepAt(System.currentTimeMillis());
+        }
+
+        List<String> lines = reportLines();
+        CompletableFuture.runAsync(() -> {
+            try {
+                AtomicFiles.write(reportFile, writer -> {
+                    for (String line : lines) {
+                        writer.write(line);
+                        writer.write('\n');
+                    }
+                });
+            } catch (IOException e) {
+                logger.warn("Failed to write expiry report: " + e.getMessage());
+            }
+            saveActivity();
+        });
+
+        queue.clear();
+        expiredByOwner.clear();
+        requester = null;
+        state = State.IDLE;
+    }
+
+    // One line per owner, most protections first
+    private List<String> reportLines() {
+        OwnerTable owners = manager.getProtectedBlocks().getOwnerTable();
+        List<String> lines = new ArrayList<>(expiredByOwner.size() + 2);
+        lines.add("# " + (dryRun ? "Dry run" : "Sweep") + " at " + Instant.ofEpochMilli(startedAt)
+                + ": owners inactive for " + config.getInactiveDays() + " days, protections older than "
+                + config.getMinAgeDays() + " days");
+        lines.add("# owner uuid, last known name, expired protections, last active");
+        expiredByOwner.entrySet().stream()
+                .sorted(Map.Entry.<UUID, Integer>comparingByValue().reversed())
+                .forEach(entry -> {
+                    String name = owners.name(owners.idOf(entry.getKey()));
+                    lines.add(entry.getKey() + "," + (name != null ? name : "") + "," + entry.getValue() + ","
+                            + DATE_FORMAT.format(Instant.ofEpochMilli(activity.getLastActive(entry.getKey()))));
+                });
+        return lines;
+    }
+
+    private void saveActivity() {
+        try {
+            activity.saveIfDirty();
+        } catch (IOException e) {
+            logger.warn("Failed to save owner activity: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package org.allaymc.blocklocker.manager;
+
+import lombok.Getter;
+import org.allaymc.blocklocker.storage.AtomicFiles;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * When players were last active, as the input of protection expiry. A player counts
+ * as active when they join or quit, and when a trusted player uses one of their
+ * protections, so shared storage stays alive while others still use it.
+ * <p>
+ * Players that were never recorded count as active when tracking started, so a fresh
+ * install does not expire anything before the configured number of days has passed.
+ * Stored as {@code owner_activity.dat} in the plugin data folder; saved periodically
+ * and on shutdown, a crash only loses the most recent updates.
+ * <p>
+ * Layout: int magic "BLOA", byte version, long trackingSince, long lastSweepAt,
+ * int count, count x (long msb, long lsb, long lastActive).
+ */
+public class OwnerActivity {
+
+    private static final int MAGIC = 0x424C4F41; // "BLOA"
+    private static final int VERSION = 1;
+
+    private final Path file;
+    private final Map<UUID, Long> lastActive = new ConcurrentHashMap<>();
+
+    @Getter
+    private volatile long trackingSince;
+
+    // End of the last completed expiry sweep, so the sweep interval survives restarts
+    @Getter
+    private volatile long lastSweepAt;
+
+    private volatile boolean dirty;
+
+    // Set when the saved file could not be read; it is then never written over
+    private volatile boolean unreadable;
+
+    public OwnerActivity(Path file) {
+        this.file = file;
+        this.trackingSince = System.currentTimeMillis();
+    }
+
+    /**
+     * Read the saved activity, if any. Starts tracking now if there is none.
+     * <p>
+     * Nothing is applied unless the whole file reads. If it does not, a copy is kept as
+     * {@code owner_activity.dat.corrupt} and the file is not saved over until the server
+     * is restarted with it fixed or removed; tracking starts now meanwhile, which never
+     * expires anything early.
+     */
+    public void load() throws IOException {
+        if (!Files.exists(file)) {
+            dirty = true;
+            return;
+        }
+        long savedTrackingSince;
+        long savedLastSweepAt;
+        Map<UUID, Long> saved = new HashMap<>();
+        try (InputStream source = Files.newInputStream(file);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(source))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a BlockLocker activity file");
+            }
+            int version = in.readUnsignedByte();
+            if (version != VERSION) {
+                throw new IOException("Unsupported activity file version " + version);
+            }
+            savedTrackingSince = in.readLong();
+            savedLastSweepAt = in.readLong();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                saved.merge(new UUID(in.readLong(), in.readLong()), in.readLong(), Math::max);
+            }
+        } catch (IOException e) {
+            unreadable = true;
+            Path backup = file.resolveSibling(file.getFileName() + ".corrupt");
+            Files.copy(file, backup, StandardCopyOption.REPLACE_EXISTING);
+            throw new IOException(e.getMessage() + ", a copy was kept as " + backup.getFileName(), e);
+        }
+        trackingSince = savedTrackingSince;
+        lastSweepAt = savedLastSweepAt;
+        saved.forEach((player, time) -> lastActive.merge(player, time, Math::max));
+    }
+
+    /**
+     * Write the activity if it changed since the last save.
+     */
+    public void saveIfDirty() throws IOException {
+        if (!dirty || unreadable) {
+            return;
+        }
+        // Cleared first, so an update racing the write is saved next time
+        dirty = false;
+        try {
+            AtomicFiles.writeBinary(file, target -> {
+                DataOutputStream out = new DataOutputStream(target);
+                out.writeInt(MAGIC);
+                out.writeByte(VERSION);
+                out.writeLong(trackingSince);
+                out.writeLong(lastSweepAt);
+                Map<UUID, Long> snapshot = Map.copyOf(lastActive);
+                out.writeInt(snapshot.size());
+                for (Map.Entry<UUID, Long> entry : snapshot.entrySet()) {
+                    out.writeLong(entry.getKey().getMostSignificantBits());
+                    out.writeLong(entry.getKey().getLeastSignificantBits());
+                    out.writeLong(entry.getValue());
+                }
+                out.flush();
+            });
+        } catch (IOException e) {
+            dirty = true;
+            throw e;
+        }
+    }
+
+    /**
+     * Record that a player is active now.
+     */
+    public void markActive(UUID playerUuid) {
+        long now = System.currentTimeMillis();
+        Long previous = lastActive.put(playerUuid, now);
+        // Trusted use happens often; only a change of at least a minute is worth a save
+        if (previous == null || now - previous > 60_000L) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * When a player was last active, or when tracking started if never.
+     */
+    public long getLastActive(UUID playerUuid) {
+        Long time = lastActive.get(playerUuid);
+        return time != null ? Math.max(time, trackingSince) : trackingSince;
+    }
+
+    /**
+     * Record the end of an expiry sweep.
+     */
+    public void setLastSweepAt(long time) {
+        lastSweepAt = time;
+        dirty = true;
+    }
+}
@@ -0,0 +1,98 @@
+package org.allaymc.blocklocker.manager;
+
+import lombok.Getter;
+import org.allaymc.api.entity.interfaces.EntityPlayer;
+import org.allaymc.api.permission.Tristate;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-player state while the player is online: the current interaction mode,
+ * its target (trusted player or flag) and a short-lived cache of the bypass permission.
+ */
+public class PlayerSession {
+
+    // How long a resolved bypass permission is trusted before it is checked again
+    private static final long BYPASS_CACHE_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    public enum Mode {
+        NONE,
+        LOCK,
+        UNLOCK,
+        TRUST,
+        FLAG
+    }
+
+    /**
+     * Protection flags that can be toggled in FLAG mode.
+     */
+    public enum Flag {
+        HOPPERS,
+        REDSTONE;
+
+        public static final String[] NAMES = {"hoppers", "redstone"};
+    }
+
+    @Getter
+    private final UUID playerUuid;
+
+    @Getter
+    private volatile Mode mode = Mode.NONE;
+
+    // Player to trust or untrust, only set in TRUST mode
+    @Getter
+    private volatile UUID trustTarget;
+
+    // Flag to set and its new value, only set in FLAG mode
+    @Getter
+    private volatile Flag flagTarget;
+    @Getter
+    private volatile boolean flagValue;
+
+    private volatile boolean bypass;
+    private volatile long bypassCheckedAt;
+    private volatile boolean bypassKnown;
+
+    public PlayerSession(UUID playerUuid) {
+        this.playerUuid = playerUuid;
+    }
+
+    public void setMode(Mode mode) {
+        this.mode = mode;
+        this.trustTarget = null;
+        this.flagTarget = null;
+    }
+
+    public void enterTrustMode(UUID targetUuid) {
+        this.trustTarget = targetUuid;
+        this.mode = Mode.TRUST;
+    }
+
+    public void enterFlagMode(Flag flag, boolean value) {
+        this.flagTarget = flag;
+        this.flagValue = value;
+        this.mode = Mode.FLAG;
+    }
+
+    /**
+     * Whether the player has {@code blocklocker.bypass}. The permission tree is only
+     * walked again once the cached result is a few seconds old or was invalidated.
+     */
+    public boolean hasBypass(EntityPlayer player) {
+        long now = System.nanoTime();
+        if (!bypassKnown || now - bypassCheckedAt > BYPASS_CACHE_NANOS) {
+            bypass = player.hasPermission("blocklocker.bypass") == Tristate.TRUE;
+            bypassCheckedAt = now;
+            bypassKnown = true;
+        }
+        return bypass;
+    }
+
+    /**
+     * Forget the cached permission so the next check resolves it again.
+     */
+    public void invalidatePermissions() {
+        bypassKnown = false;
+    }
+}
@@ -0,0 +1,101 @@
+package org.allaymc.blocklocker.manager;
+
+import org.allaymc.api.entity.interfaces.EntityPlayer;
+import org.allaymc.api.permission.Tristate;
+import org.allaymc.blocklocker.config.BlockLockerConfig;
+import org.allaymc.blocklocker.index.DimensionIndex;
+import org.allaymc.blocklocker.index.OwnerIndex;
+
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * How many blocks a player may lock, in total and per world. Usage comes from the
+ * per-owner counters of the {@link OwnerIndex}, which follow every lock, unlock,
+ * transfer and expiry, so checking a limit never lists a player's protections.
+ * <p>
+ * The total limit is the highest of the default and the limits of the groups the player
+ * has the {@code blocklocker.limit.<group>} permission for; {@code blocklocker.limit.unlimited}
+ * lifts all limits. World limits apply to everyone.
+ */
+public class ProtectionLimits {
+
+    public static final int UNLIMITED = -1;
+
+    private static final String GROUP_PERMISSION = "blocklocker.limit.";
+    private static final String UNLIMITED_PERMISSION = "blocklocker.limit.unlimited";
+
+    private final ProtectionManager manager;
+    private final BlockLockerConfig.Limits config;
+
+    public ProtectionLimits(ProtectionManager manager, BlockLockerConfig.Limits config) {
+        this.manager = manager;
+        this.config = config;
+    }
+
+    /**
+     * Protections a player owns against a limit.
+     */
+    public record Usage(int count, int limit) {
+
+        public boolean isLimited() {
+            return limit != UNLIMITED;
+        }
+
+        /**
+         * Whether another protection would exceed the limit.
+         */
+        public boolean isReached() {
+            return limit != UNLIMITED && count >= limit;
+        }
+    }
+
+    /**
+     * Usage of a player's total limit.
+     */
+    public Usage total(EntityPlayer player) {
+        return new Usage(manager.getProtectionCount(player.getUniqueId()), totalLimit(player));
+    }
+
+    /**
+     * Usage of a player's limit in a world; unlimited if the world has no limit.
+     */
+    public Usage inWorld(EntityPlayer player, String worldName) {
+        Integer limit = config.getWorlds().get(worldName);
+        if (limit == null || limit < 0 || isUnlimited(player)) {
+            return new Usage(0, UNLIMITED);
+        }
+        return new Usage(countInWorld(player.getUniqueId(), worldName), limit);
+    }
+
+    private int totalLimit(EntityPlayer player) {
+        if (isUnlimited(player)) {
+            return UNLIMITED;
+        }
+        int limit = config.getDefaultLimit();
+        for (Map.Entry<String, Integer> group : config.getGroups().entrySet()) {
+            if (player.hasPermission(GROUP_PERMISSION + group.getKey()) == Tristate.TRUE) {
+                if (group.getValue() < 0) {
+                    return UNLIMITED;
+                }
+                limit = limit < 0 ? limit : Math.max(limit, group.getValue());
+            }
+        }
+        return limit;
+    }
+
+    private static boolean isUnlimited(EntityPlayer player) {
+        return player.hasPermission(UNLIMITED_PERMISSION) == Tristate.TRUE;
+    }
+
+    private int countInWorld(UUID playerUuid, String worldName) {
+        OwnerIndex owners = manager.getProtectedBlocks().getOwners();
+        int count = 0;
+        for (DimensionIndex dimension : manager.getProtectedBlocks().getDimensions()) {
+            if (dimension.getWorldName().equals(worldName)) {
+                count += owners.count(playerUuid, dimension);
+            }
+        }
+        return count;
+    }
+}
@@ -1,22 +1,31 @@
 package org.allaymc.blocklocker.manager;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.reflect.TypeToken;
 import lombok.Getter;
+import org.allaymc.api.world.chunk.Chunk;
 import org.allaymc.blocklocker.BlockLockerPlugin;
+import org.allaymc.blocklocker.data.Access;
 import org.allaymc.blocklocker.data.ProtectedBlock;
+import org.allaymc.blocklocker.data.TrustGroups;
+import org.allaymc.blocklocker.index.BlockKeys;
+import org.allaymc.blocklocker.index.DimensionIndex;
+import org.allaymc.blocklocker.index.OwnedProtection;
+import org.allaymc.blocklocker.index.ProtectionIndex;
+import org.allaymc.blocklocker.index.Region;
+import org.allaymc.blocklocker.metrics.BlockLockerMetrics;
+import org.allaymc.blocklocker.storage.JournalRecord;
+import org.allaymc.blocklocker.storage.JournalStorage;
 
-import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.nio.file.Path;
-import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Manages all protected blocks, including loading, saving, and lookup.
@@ -24,75 +33,219 @@ import java.util.concurrent.ConcurrentHashMap;
 public class ProtectionManager {
 
     private final BlockLockerPlugin plugin;
-    private final Gson gson;
-    private final Path dataFile;
 
-    // Map of location key -> ProtectedBlock
+    // Region files + append-only journal; every mutation below becomes one journal record
+    private final JournalStorage storage;
+
+    // Location index of the protections of all resident regions, keyed by interned dimension + packed position
+    @Getter
+    private final ProtectionIndex protectedBlocks;
+
+    // Session state of online players
+    private final Map<UUID, PlayerSession> sessions;
+
+    // Completes once the startup load has finished, successfully or not
+    private CompletableFuture<Void> loading;
+
+    // Lookups answered by the occupancy filter alone vs. ones that needed the full lookup
+    private final LongAdder filterSkips = new LongAdder();
+    private final LongAdder filterPasses = new LongAdder();
+
+    // Hopper and redstone decisions, checked far more often than player interactions
     @Getter
-    private final Map<String, ProtectedBlock> protectedBlocks;
+    private final AutomationAccessCache automationCache = new AutomationAccessCache();
 
-    // Cache of players who are currently in "lock mode"
-    private final Map<UUID, Boolean> lockModePlayers;
+    // Event latencies, lookups, denials and storage timings for /blocklocker stats and JMX
+    @Getter
+    private final BlockLockerMetrics metrics = new BlockLockerMetrics();
 
-    // Cache of players who are currently in "unlock mode"
-    private final Map<UUID, Boolean> unlockModePlayers;
+    // When owners were last active, and the sweeper that expires protections of inactive ones
+    @Getter
+    private final OwnerActivity activity;
+    @Getter
+    private final ExpirySweeper expirySweeper;
 
-    // Cache of players who are currently in "trust mode"
-    private final Map<UUID, UUID> trustModePlayers; // Player -> Target to trust
+    // Drops protections whose blocks are gone, chunk by chunk as chunks load
+    @Getter
+    private final ChunkValidator chunkValidator;
+
+    // How many blocks players may lock, checked against the owner index counters
+    @Getter
+    private final ProtectionLimits limits;
+
+    // Where the trust group table is saved
+    private final Path trustGroupsFile;
+
+    // Purges, transfers and wipes over many protections, spread over ticks
+    @Getter
+    private final BulkJobs bulkJobs;
 
     public ProtectionManager(BlockLockerPlugin plugin) {
         this.plugin = plugin;
-        this.gson = new GsonBuilder()
-                .setPrettyPrinting()
-                .enableComplexMapKeySerialization()
-                .create();
-        this.dataFile = plugin.getPluginContainer().dataFolder().resolve("protected_blocks.json");
-        this.protectedBlocks = new ConcurrentHashMap<>();
-        this.lockModePlayers = new ConcurrentHashMap<>();
-        this.unlockModePlayers = new ConcurrentHashMap<>();
-        this.trustModePlayers = new ConcurrentHashMap<>();
+        this.protectedBlocks = new ProtectionIndex();
+        this.storage = new JournalStorage(plugin.getPluginContainer().dataFolder(), plugin.getPluginLogger(),
+                protectedBlocks, metrics, plugin.getConfig().getStorage());
+        this.sessions = new ConcurrentHashMap<>();
+        Path dataFolder = plugin.getPluginContainer().dataFolder();
+        this.activity = new OwnerActivity(dataFolder.resolve("owner_activity.dat"));
+        try {
+            activity.load();
+        } catch (IOException e) {
+            plugin.getPluginLogger().error("Failed to read owner activity, tracking starts now and it is not saved "
+                    + "until the file is fixed or removed: " + e.getMessage());
+        }
+        this.expirySweeper = new ExpirySweeper(this, activity, plugin.getConfig().getExpiry(),
+                plugin.getPluginLogger(), dataFolder);
+        this.chunkValidator = new ChunkValidator(this, plugin.getConfig().getValidation());
+        this.limits = new ProtectionLimits(this, plugin.getConfig().getLimits());
+        this.trustGroupsFile = dataFolder.resolve("trust_groups.dat");
+        try {
+            protectedBlocks.getTrustGroups().load(trustGroupsFile);
+        } catch (IOException e) {
+            plugin.getPluginLogger().error("Failed to read trust groups, they grant no access and cannot be changed "
+                    + "until the file is fixed or removed: " + e.getMessage());
+        }
+        this.bulkJobs = new BulkJobs(this, plugin.getConfig().getBulk(), plugin.getPluginLogger());
 
         loadData();
     }
 
     /**
-     * Load protected blocks from disk.
+     * Open the region storage and replay its journal in the background. Until that is done
+     * {@link #isReady} returns {@code false}, so protectable blocks stay locked while the
+     * server finishes starting. If loading fails, they stay locked until the problem is
+     * fixed and the server restarted. Nothing is loaded while the configuration is broken,
+     * since its defaults may name another storage backend or fewer protectable blocks.
      */
     private void loadData() {
-        File file = dataFile.toFile();
-        if (!file.exists()) {
-            plugin.getPluginLogger().info("No existing protection data found. Starting fresh.");
+        if (plugin.getConfig().isBroken()) {
+            plugin.getPluginLogger().error("Protection data is not loaded because config.json could not be read, "
+                    + "all blocks stay locked until it is fixed and the server restarted.");
+            loading = CompletableFuture.completedFuture(null);
             return;
         }
-
-        try (FileReader reader = new FileReader(file)) {
-            List<ProtectedBlock> blocks = gson.fromJson(reader, new TypeToken<List<ProtectedBlock>>() {}.getType());
-            if (blocks != null) {
-                for (ProtectedBlock block : blocks) {
-                    protectedBlocks.put(block.getLocationKey(), block);
-                }
+        plugin.getPluginLogger().info("Loading protection data in the background, protectable blocks stay locked until it is done.");
+        loading = storage.loadAsync().whenComplete((ignored, error) -> {
+            if (error != null) {
+                plugin.getPluginLogger().error("Failed to load protection data, all blocks stay locked: " + error.getMessage());
             }
-            plugin.getPluginLogger().info("Loaded " + protectedBlocks.size() + " protected blocks.");
-        } catch (IOException e) {
-            plugin.getPluginLogger().error("Failed to load protection data: " + e.getMessage());
+        });
+    }
+
+    /**
+     * Whether the startup load is still running.
+     */
+    public boolean isLoading() {
+        return !loading.isDone();
+    }
+
+    /**
+     * Whether protections around a block are known. If not, loading them is started and
+     * the block must be treated as locked for now. Does not allocate when ready.
+     */
+    public boolean isReady(String worldName, int dimensionId, int x, int z) {
+        if (!storage.isOpen()) {
+            return false;
+        }
+        DimensionIndex dimension = protectedBlocks.getDimension(worldName, dimensionId);
+        if (dimension != null && dimension.isReady(x, z)) {
+            return true;
+        }
+        storage.requestLoadAround(worldName, dimensionId, x, z);
+        return false;
+    }
+
+    /**
+     * Called when the server loads a chunk; starts loading the protections of its region.
+     */
+    public void onChunkLoad(String worldName, int dimensionId, int chunkX, int chunkZ) {
+        if (storage.isOpen()) {
+            storage.requestLoad(worldName, dimensionId, chunkX, chunkZ).chunkLoaded();
         }
     }
 
     /**
-     * Save all protected blocks to disk.
+     * Count the chunks a dimension has loaded right now. Chunks that loaded before the plugin
+     * was enabled (spawn chunks) or while protection data was loading sent no load event
+     * that was counted, so their regions would look unused and be evicted while players
+     * stand in them. Also starts loading those regions.
      */
-    public synchronized void saveAll() {
+    public void seedLoadedChunks(String worldName, int dimensionId, Collection<? extends Chunk> chunks) {
+        if (!storage.isOpen()) {
+            return;
+        }
+        Map<Region, Integer> counts = new HashMap<>();
+        for (Chunk chunk : chunks) {
+            counts.merge(storage.requestLoad(worldName, dimensionId, chunk.getX(), chunk.getZ()), 1, Integer::sum);
+        }
+        counts.forEach(Region::seedLoadedChunks);
+    }
+
+    /**
+     * Called when the server unloads a chunk; regions without loaded chunks are evicted later.
+     */
+    public void onChunkUnload(String worldName, int dimensionId, int chunkX, int chunkZ) {
+        DimensionIndex dimension = protectedBlocks.getDimension(worldName, dimensionId);
+        Region region = dimension != null ? dimension.getRegionOfChunk(chunkX, chunkZ) : null;
+        if (region != null) {
+            region.chunkUnloaded();
+        }
+    }
+
+    /**
+     * Write all changed regions now and start a fresh journal.
+     */
+    public void saveAll() {
         try {
-            File file = dataFile.toFile();
-            File parent = file.getParentFile();
-            if (!parent.exists()) {
-                parent.mkdirs();
-            }
+            storage.compact();
+        } catch (IOException e) {
+            plugin.getPluginLogger().error("Failed to save protection data: " + e.getMessage());
+        }
+    }
 
-            try (FileWriter writer = new FileWriter(file)) {
-                gson.toJson(new ArrayList<>(protectedBlocks.values()), writer);
-            }
-            plugin.getPluginLogger().info("Saved " + protectedBlocks.size() + " protected blocks.");
+    /**
+     * Export all protections as JSON into the plugin data folder, for debugging.
+     *
+     * @return the written file
+     */
+    public Path exportJson() throws IOException {
+        Path target = plugin.getPluginContainer().dataFolder().resolve("protected_blocks-export.json");
+        storage.exportJson(target);
+        return target;
+    }
+
+    /**
+     * Number of changes not yet written to disk.
+     */
+    public int getPendingChanges() {
+        return storage.getPendingRecords();
+    }
+
+    /**
+     * Number of regions in memory with changes not yet written to their region file.
+     */
+    public int getDirtyRegions() {
+        return storage.getDirtyRegions();
+    }
+
+    /**
+     * Write remaining changes and stop the journal writer. Called when the plugin is disabled.
+     */
+    public void shutdown() {
+        if (isLoading()) {
+            // Closing now would race the loader opening the journal
+            plugin.getPluginLogger().info("Waiting for protection data to finish loading...");
+        }
+        loading.exceptionally(error -> null).join();
+        try {
+            activity.saveIfDirty();
+        } catch (IOException e) {
+            plugin.getPluginLogger().error("Failed to save owner activity: " + e.getMessage());
+        }
+        saveTrustGroups();
+        try {
+            storage.close();
+            plugin.getPluginLogger().info("Saved " + getTotalProtections() + " protected blocks.");
         } catch (IOException e) {
             plugin.getPluginLogger().error("Failed to save protection data: " + e.getMessage());
         }
@@ -100,158 +253,665 @@ public class ProtectionManager {
 
     /**
      * Protect a block at the given location.
+     *
+     * @return {@code false} if its region could not be loaded, so nothing was stored
      */
-    public void protectBlock(String worldName, int dimensionId, int x, int y, int z, UUID ownerUuid, String ownerName) {
-        ProtectedBlock block = new ProtectedBlock(worldName, dimensionId, x, y, z, ownerUuid, ownerName);
-        protectedBlocks.put(block.getLocationKey(), block);
-        saveAll();
+    public boolean protectBlock(String worldName, int dimensionId, int x, int y, int z, UUID ownerUuid, String ownerName) {
+        return protectBlock(worldName, dimensionId, x, y, z, ownerUuid, ownerName, ProtectedBlock.NO_MEMBERS);
     }
 
     /**
-     * Remove protection from a block.
+     * Protect a block together with the other blocks of its structure (door half, double
+     * chest half). The protection is anchored at the lowest of the blocks, so it ends up
+     * the same whichever half was clicked.
+     *
+     * @param members packed positions of the other blocks, see {@link BlockKeys#pack}
+     * @return {@code false} if its region could not be loaded, so nothing was stored
      */
-    public void unprotectBlock(String worldName, int dimensionId, int x, int y, int z) {
-        String key = worldName + ":" + dimensionId + ":" + x + ":" + y + ":" + z;
-        protectedBlocks.remove(key);
-        saveAll();
+    public boolean protectBlock(String worldName, int dimensionId, int x, int y, int z,
+                                UUID ownerUuid, String ownerName, long[] members) {
+        Region[] pinned = pin(worldName, dimensionId, x, z);
+        if (pinned == null) {
+            return false;
+        }
+        try {
+            long[] positions = new long[members.length + 1];
+            positions[0] = BlockKeys.pack(x, y, z);
+            System.arraycopy(members, 0, positions, 1, members.length);
+            ProtectedBlock block = anchor(new ProtectedBlock(worldName, dimensionId, x, y, z, ownerUuid, ownerName), positions);
+            protectedBlocks.put(block);
+            automationCache.invalidate();
+            storage.append(JournalRecord.lock(block));
+            return true;
+        } finally {
+            JournalStorage.unpin(pinned);
+        }
     }
 
     /**
-     * Get protection info for a block.
+     * Remove protection from a block, including the other blocks of its structure.
+     *
+     * @return {@code false} if the block was not protected or its region could not be loaded
      */
-    public ProtectedBlock getProtection(String worldName, int dimensionId, int x, int y, int z) {
-        String key = worldName + ":" + dimensionId + ":" + x + ":" + y + ":" + z;
-        return protectedBlocks.get(key);
+    public boolean unprotectBlock(String worldName, int dimensionId, int x, int y, int z) {
+        Region[] pinned = pin(worldName, dimensionId, x, z);
+        if (pinned == null) {
+            return false;
+        }
+        try {
+            ProtectedBlock removed = protectedBlocks.remove(worldName, dimensionId, x, y, z);
+            if (removed == null) {
+                return false;
+            }
+            automationCache.invalidate();
+            storage.append(JournalRecord.unlock(worldName, dimensionId, removed.getX(), removed.getY(), removed.getZ()));
+            return true;
+        } finally {
+            JournalStorage.unpin(pinned);
+        }
     }
 
     /**
-     * Check if a block is protected.
+     * Change which blocks a protection covers, keeping its owner, trust list and flags.
+     * Used when a double chest is split or a chest is extended into one.
+     *
+     * @param x         any block of the protection
+     * @param positions packed positions of all blocks it should cover; empty removes it
+     * @return {@code false} if the block is not protected
      */
-    public boolean isProtected(String worldName, int dimensionId, int x, int y, int z) {
-        return getProtection(worldName, dimensionId, x, y, z) != null;
+    public boolean setStructure(String worldName, int dimensionId, int x, int y, int z, long[] positions) {
+        Region[] pinned = pin(worldName, dimensionId, x, z);
+        if (pinned == null) {
+            return false;
+        }
+        try {
+            ProtectedBlock block = getProtection(worldName, dimensionId, x, y, z);
+            if (block == null) {
+                return false;
+            }
+            if (positions.length == 0) {
+                unprotectBlock(worldName, dimensionId, x, y, z);
+                return true;
+            }
+            ProtectedBlock changed = anchor(block, positions);
+            protectedBlocks.put(changed);
+            automationCache.invalidate();
+            storage.append(JournalRecord.structure(block, changed));
+            return true;
+        } finally {
+            JournalStorage.unpin(pinned);
+        }
     }
 
     /**
-     * Check if a player can access a protected block.
+     * Take a single block out of its protection, e.g. when one half of a double chest is
+     * broken. The remaining blocks stay protected; a single block loses its protection.
      */
-    public boolean canAccess(String worldName, int dimensionId, int x, int y, int z, UUID playerUuid) {
+    public void detachBlock(String worldName, int dimensionId, int x, int y, int z) {
         ProtectedBlock block = getProtection(worldName, dimensionId, x, y, z);
         if (block == null) {
-            return true; // Not protected, anyone can access
+            return;
         }
-        return block.hasAccess(playerUuid);
+        long detached = BlockKeys.pack(x, y, z);
+        long[] positions = block.getBlockPositions();
+        long[] remaining = new long[positions.length - 1];
+        int count = 0;
+        for (long position : positions) {
+            if (position != detached) {
+                remaining[count++] = position;
+            }
+        }
+        setStructure(worldName, dimensionId, x, y, z, remaining);
     }
 
     /**
-     * Check if a player is the owner of a protected block.
+     * Copy a protection onto the canonical anchor of a set of positions: the lowest block,
+     * then the smallest x, then the smallest z. The other positions become its members.
      */
-    public boolean isOwner(String worldName, int dimensionId, int x, int y, int z, UUID playerUuid) {
-        ProtectedBlock block = getProtection(worldName, dimensionId, x, y, z);
-        if (block == null) {
-            return false;
+    private static ProtectedBlock anchor(ProtectedBlock block, long[] positions) {
+        int anchor = 0;
+        for (int i = 1; i < positions.length; i++) {
+            if (compareAnchor(positions[i], positions[anchor]) < 0) {
+                anchor = i;
+            }
+        }
+        long[] members = new long[positions.length - 1];
+        for (int i = 0, j = 0; i < positions.length; i++) {
+            if (i != anchor) {
+                members[j++] = positions[i];
+            }
+        }
+        long position = positions[anchor];
+        return block.withStructure(BlockKeys.unpackX(position), BlockKeys.unpackY(position),
+                BlockKeys.unpackZ(position), members);
+    }
+
+    private static int compareAnchor(long a, long b) {
+        int result = Integer.compare(BlockKeys.unpackY(a), BlockKeys.unpackY(b));
+        if (result == 0) {
+            result = Integer.compare(BlockKeys.unpackX(a), BlockKeys.unpackX(b));
+        }
+        if (result == 0) {
+            result = Integer.compare(BlockKeys.unpackZ(a), BlockKeys.unpackZ(b));
+        }
+        return result;
+    }
+
+    /**
+     * Load and pin the region of a block (and across a region border, its neighbour) before
+     * changing it, so the change is never written over protections that are still on
+     * disk only, and the region is not evicted before the change is made. Callers unpin
+     * the regions with {@link JournalStorage#unpin} once done.
+     *
+     * @return the pinned regions, or {@code null} if they could not be loaded
+     */
+    private Region[] pin(String worldName, int dimensionId, int x, int z) {
+        if (!storage.isOpen()) {
+            return null;
+        }
+        try {
+            return storage.pinAround(worldName, dimensionId, x, z);
+        } catch (IOException e) {
+            plugin.getPluginLogger().error("Failed to change protection at " + x + ", " + z + ": " + e.getMessage());
+            return null;
         }
-        return block.isOwner(playerUuid);
     }
 
     /**
-     * Get all protections owned by a player.
+     * Hand a protection over to another player, keeping its trust list and flags.
+     *
+     * @return {@code false} if the block is not protected
      */
-    public List<ProtectedBlock> getPlayerProtections(UUID playerUuid) {
-        List<ProtectedBlock> result = new ArrayList<>();
-        for (ProtectedBlock block : protectedBlocks.values()) {
-            if (block.isOwner(playerUuid)) {
-                result.add(block);
+    public boolean transferProtection(String worldName, int dimensionId, int x, int y, int z,
+                                      UUID newOwnerUuid, String newOwnerName) {
+        Region[] pinned = pin(worldName, dimensionId, x, z);
+        if (pinned == null) {
+            return false;
+        }
+        try {
+            ProtectedBlock block = getProtection(worldName, dimensionId, x, y, z);
+            if (block == null) {
+                return false;
             }
+            ProtectedBlock transferred = block.withOwner(newOwnerUuid, newOwnerName);
+            protectedBlocks.put(transferred);
+            automationCache.invalidate();
+            storage.append(JournalRecord.transfer(transferred));
+            return true;
+        } finally {
+            JournalStorage.unpin(pinned);
+        }
+    }
+
+    /**
+     * Get protection info for a block, as a view built from the index. Changes to it only
+     * take effect through the methods of this manager. Use {@link #getAccess} where only
+     * the access decision is needed, it does not allocate.
+     */
+    public ProtectedBlock getProtection(String worldName, int dimensionId, int x, int y, int z) {
+        ProtectedBlock block = protectedBlocks.get(worldName, dimensionId, x, y, z);
+        if (block != null) {
+            metrics.getLookupHits().increment();
+        } else {
+            metrics.getLookupMisses().increment();
+        }
+        return block;
+    }
+
+    /**
+     * Check a player against the protection of a block. Does not allocate.
+     */
+    public Access getAccess(String worldName, int dimensionId, int x, int y, int z, UUID playerUuid) {
+        Access access = protectedBlocks.access(worldName, dimensionId, x, y, z, playerUuid);
+        if (access != Access.NONE) {
+            metrics.getLookupHits().increment();
+        } else {
+            metrics.getLookupMisses().increment();
+        }
+        return access;
+    }
+
+    /**
+     * Record that a trusted player used a protection, which keeps its owner active for
+     * expiry. Only called for trusted access, so the lookup is off the common path.
+     */
+    public void recordTrustedUse(String worldName, int dimensionId, int x, int y, int z) {
+        ProtectedBlock block = protectedBlocks.get(worldName, dimensionId, x, y, z);
+        if (block != null) {
+            activity.markActive(block.getOwnerUuid());
+        }
+    }
+
+    /**
+     * Cheap negative check consulted before {@link #getProtection}: {@code false} means the
+     * block is definitely not protected because its chunk or column holds no protection.
+     * Only meaningful once {@link #isReady} returned {@code true}. Does not allocate.
+     */
+    public boolean mightBeProtected(String worldName, int dimensionId, int x, int z) {
+        DimensionIndex dimension = protectedBlocks.getDimension(worldName, dimensionId);
+        if (dimension == null || !dimension.mayContain(x, z)) {
+            filterSkips.increment();
+            return false;
+        }
+        filterPasses.increment();
+        return true;
+    }
+
+    /**
+     * Find which of many blocks must not be changed by an explosion, piston or other bulk
+     * change: those that are protected, and those whose protections are still loading
+     * (fail closed). One index probe per chunk instead of one lookup per block.
+     *
+     * @param positions packed positions, see {@link BlockKeys#pack}
+     * @return the indices of the positions to keep unchanged
+     */
+    public BitSet filterProtected(String worldName, int dimensionId, long[] positions) {
+        BitSet result = new BitSet(positions.length);
+        DimensionIndex dimension = protectedBlocks.getDimension(worldName, dimensionId);
+        if (!storage.isOpen() || dimension == null) {
+            result.set(0, positions.length);
+        } else if (dimension.findProtected(positions, result)) {
+            return result;
+        }
+        // Some areas are not loaded: start loading them, the blocks stay untouched this time
+        for (int i = result.nextSetBit(0); i >= 0; i = result.nextSetBit(i + 1)) {
+            isReady(worldName, dimensionId, BlockKeys.unpackX(positions[i]), BlockKeys.unpackZ(positions[i]));
         }
         return result;
     }
 
+    /**
+     * Whether a hopper may move items into or out of a container. Locked containers only
+     * allow it if their owner enabled hoppers. Fails closed while the area is loading.
+     * Does not allocate once the decision is cached.
+     */
+    public boolean canHoppersAccess(String worldName, int dimensionId, int x, int y, int z) {
+        return (automationDecision(worldName, dimensionId, x, y, z) & AutomationAccessCache.HOPPERS_ALLOWED) != 0;
+    }
+
+    /**
+     * Whether redstone may activate a block (open a door, fire a dispenser). Locked blocks
+     * only allow it if their owner enabled redstone. Fails closed while the area is loading.
+     * Does not allocate once the decision is cached.
+     */
+    public boolean canRedstoneActivate(String worldName, int dimensionId, int x, int y, int z) {
+        return (automationDecision(worldName, dimensionId, x, y, z) & AutomationAccessCache.REDSTONE_ALLOWED) != 0;
+    }
+
+    /**
+     * Whether two blocks are both protected and have the same owner. Used to let hoppers
+     * move items between an owner's own locked containers whatever their hopper flags.
+     * Does not allocate once both positions are cached.
+     */
+    public boolean isSameOwner(String worldName, int dimensionId, int x1, int y1, int z1, int x2, int y2, int z2) {
+        AutomationAccessCache.Entry first = automationEntry(worldName, dimensionId, x1, y1, z1);
+        if (first == null || first.owner() == null) {
+            return false;
+        }
+        AutomationAccessCache.Entry second = automationEntry(worldName, dimensionId, x2, y2, z2);
+        return second != null && first.owner().equals(second.owner());
+    }
+
+    private int automationDecision(String worldName, int dimensionId, int x, int y, int z) {
+        if (!isReady(worldName, dimensionId, x, z)) {
+            return 0;
+        }
+        DimensionIndex dimension = protectedBlocks.getDimension(worldName, dimensionId);
+        if (dimension == null || !dimension.mayContain(x, z)) {
+            return AutomationAccessCache.HOPPERS_ALLOWED | AutomationAccessCache.REDSTONE_ALLOWED;
+        }
+        return automationEntry(dimension, x, y, z).decision();
+    }
+
+    // Cached decision and owner of a position, or null while the area is loading or if it is unprotected
+    private AutomationAccessCache.Entry automationEntry(String worldName, int dimensionId, int x, int y, int z) {
+        if (!isReady(worldName, dimensionId, x, z)) {
+            return null;
+        }
+        DimensionIndex dimension = protectedBlocks.getDimension(worldName, dimensionId);
+        if (dimension == null || !dimension.mayContain(x, z)) {
+            return null;
+        }
+        return automationEntry(dimension, x, y, z);
+    }
+
+    private AutomationAccessCache.Entry automationEntry(DimensionIndex dimension, int x, int y, int z) {
+        long position = BlockKeys.pack(x, y, z);
+        AutomationAccessCache.Entry entry = automationCache.get(dimension.getId(), position);
+        if (entry == null) {
+            int version = automationCache.version();
+            ProtectedBlock block = dimension.get(x, y, z);
+            int decision = block == null
+                    ? AutomationAccessCache.HOPPERS_ALLOWED | AutomationAccessCache.REDSTONE_ALLOWED
+                    : (block.isAllowHoppers() ? AutomationAccessCache.HOPPERS_ALLOWED : 0)
+                    | (block.isAllowRedstone() ? AutomationAccessCache.REDSTONE_ALLOWED : 0);
+            entry = automationCache.put(dimension.getId(), position, version,
+                    decision, block != null ? block.getOwnerUuid() : null);
+        }
+        return entry;
+    }
+
+    /**
+     * Number of lookups skipped by the occupancy filter.
+     */
+    public long getFilterSkips() {
+        return filterSkips.sum();
+    }
+
+    /**
+     * Number of lookups that passed the occupancy filter and needed a full lookup.
+     */
+    public long getFilterPasses() {
+        return filterPasses.sum();
+    }
+
+    /**
+     * Number of protections held in memory (resident regions only).
+     */
+    public int getResidentProtections() {
+        return protectedBlocks.size();
+    }
+
+    /**
+     * Check if a block is protected.
+     */
+    public boolean isProtected(String worldName, int dimensionId, int x, int y, int z) {
+        return protectedBlocks.contains(worldName, dimensionId, x, y, z);
+    }
+
+    /**
+     * Check if a player can access a protected block.
+     */
+    public boolean canAccess(String worldName, int dimensionId, int x, int y, int z, UUID playerUuid) {
+        // Not protected (NONE): anyone can access
+        return getAccess(worldName, dimensionId, x, y, z, playerUuid).isAllowed();
+    }
+
+    /**
+     * Check if a player is the owner of a protected block.
+     */
+    public boolean isOwner(String worldName, int dimensionId, int x, int y, int z, UUID playerUuid) {
+        return getAccess(worldName, dimensionId, x, y, z, playerUuid) == Access.OWNER;
+    }
+
+    /**
+     * Get all protections owned by a player, including those in regions not in memory.
+     * Uses the owner index, so the cost depends only on how many the player owns.
+     */
+    public List<OwnedProtection> getPlayerProtections(UUID playerUuid) {
+        return protectedBlocks.getOwners().getOwnedBy(playerUuid);
+    }
+
+    /**
+     * Number of protections owned by a player. O(1).
+     */
+    public int getProtectionCount(UUID playerUuid) {
+        return protectedBlocks.getOwners().count(playerUuid);
+    }
+
+    /**
+     * Total number of protections, including those in regions not in memory.
+     */
+    public int getTotalProtections() {
+        return protectedBlocks.getOwners().size();
+    }
+
+    /**
+     * Get all protections in a chunk.
+     */
+    public List<ProtectedBlock> getProtectionsInChunk(String worldName, int dimensionId, int chunkX, int chunkZ) {
+        return protectedBlocks.getInChunk(worldName, dimensionId, chunkX, chunkZ);
+    }
+
+    /**
+     * Get all protections within a radius (in blocks) of a position.
+     */
+    public List<ProtectedBlock> getProtectionsInRadius(String worldName, int dimensionId, int x, int y, int z, int radius) {
+        return protectedBlocks.getInRadius(worldName, dimensionId, x, y, z, radius);
+    }
+
+    /**
+     * Get all protections inside a box spanned by two corners (inclusive).
+     */
+    public List<ProtectedBlock> getProtectionsInBox(String worldName, int dimensionId,
+                                                    int x1, int y1, int z1, int x2, int y2, int z2) {
+        return protectedBlocks.getInBox(worldName, dimensionId, x1, y1, z1, x2, y2, z2);
+    }
+
     /**
      * Add a trusted player to a block.
+     *
+     * @return {@code false} if the block is not protected or its region could not be loaded
      */
-    public void addTrustedPlayer(String worldName, int dimensionId, int x, int y, int z, UUID trustedUuid) {
-        ProtectedBlock block = getProtection(worldName, dimensionId, x, y, z);
-        if (block != null) {
+    public boolean addTrustedPlayer(String worldName, int dimensionId, int x, int y, int z, UUID trustedUuid) {
+        Region[] pinned = pin(worldName, dimensionId, x, z);
+        if (pinned == null) {
+            return false;
+        }
+        try {
+            ProtectedBlock block = getProtection(worldName, dimensionId, x, y, z);
+            if (block == null) {
+                return false;
+            }
             block.addTrustedPlayer(trustedUuid);
-            saveAll();
+            protectedBlocks.update(block);
+            storage.append(JournalRecord.trust(block, trustedUuid, true));
+            return true;
+        } finally {
+            JournalStorage.unpin(pinned);
         }
     }
 
     /**
      * Remove a trusted player from a block.
+     *
+     * @return {@code false} if the block is not protected or its region could not be loaded
      */
-    public void removeTrustedPlayer(String worldName, int dimensionId, int x, int y, int z, UUID trustedUuid) {
-        ProtectedBlock block = getProtection(worldName, dimensionId, x, y, z);
-        if (block != null) {
+    public boolean removeTrustedPlayer(String worldName, int dimensionId, int x, int y, int z, UUID trustedUuid) {
+        Region[] pinned = pin(worldName, dimensionId, x, z);
+        if (pinned == null) {
+            return false;
+        }
+        try {
+            ProtectedBlock block = getProtection(worldName, dimensionId, x, y, z);
+            if (block == null) {
+                return false;
+            }
             block.removeTrustedPlayer(trustedUuid);
-            saveAll();
+            protectedBlocks.update(block);
+            storage.append(JournalRecord.trust(block, trustedUuid, false));
+            return true;
+        } finally {
+            JournalStorage.unpin(pinned);
+        }
+    }
+
+    /**
+     * Trust groups and owner-wide trust lists. Change them through the methods of this
+     * manager, which save the table.
+     */
+    public TrustGroups getTrustGroups() {
+        return protectedBlocks.getTrustGroups();
+    }
+
+    /**
+     * Create a trust group of an owner.
+     *
+     * @return the new group, or {@code null} if the owner already has one of that name
+     */
+    public TrustGroups.Group createTrustGroup(UUID ownerUuid, String name) {
+        TrustGroups.Group group = getTrustGroups().create(ownerUuid, name);
+        if (group != null) {
+            saveTrustGroupsAsync();
+        }
+        return group;
+    }
+
+    /**
+     * Delete a trust group of an owner.
+     *
+     * @return {@code false} if there is no such group
+     */
+    public boolean deleteTrustGroup(UUID ownerUuid, String name) {
+        boolean deleted = getTrustGroups().delete(ownerUuid, name);
+        if (deleted) {
+            saveTrustGroupsAsync();
+        }
+        return deleted;
+    }
+
+    /**
+     * Add a player to or remove one from a trust group. Takes effect on every protection
+     * that trusts the group at once.
+     *
+     * @return {@code false} if nothing changed
+     */
+    public boolean setTrustGroupMember(UUID groupId, UUID playerUuid, boolean member) {
+        boolean changed = getTrustGroups().setMember(groupId, playerUuid, member);
+        if (changed) {
+            saveTrustGroupsAsync();
         }
+        return changed;
     }
 
     /**
-     * Clean up mode settings for a player (called when they disconnect).
+     * Trust a player on all protections of an owner, or stop doing so.
+     *
+     * @return {@code false} if nothing changed
+     */
+    public boolean setTrustedEverywhere(UUID ownerUuid, UUID playerUuid, boolean trusted) {
+        boolean changed = getTrustGroups().setOwnerWide(ownerUuid, playerUuid, trusted);
+        if (changed) {
+            saveTrustGroupsAsync();
+        }
+        return changed;
+    }
+
+    // The table is small and rarely changes, so every change writes it whole
+    private void saveTrustGroupsAsync() {
+        CompletableFuture.runAsync(this::saveTrustGroups);
+    }
+
+    private void saveTrustGroups() {
+        try {
+            getTrustGroups().saveIfDirty(trustGroupsFile);
+        } catch (IOException e) {
+            plugin.getPluginLogger().error("Failed to save trust groups: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Set whether redstone and hoppers may interact with a protected block.
+     *
+     * @return {@code false} if the block is not protected or its region could not be loaded
+     */
+    public boolean setFlags(String worldName, int dimensionId, int x, int y, int z, boolean allowRedstone, boolean allowHoppers) {
+        Region[] pinned = pin(worldName, dimensionId, x, z);
+        if (pinned == null) {
+            return false;
+        }
+        try {
+            ProtectedBlock block = getProtection(worldName, dimensionId, x, y, z);
+            if (block == null) {
+                return false;
+            }
+            block.setAllowRedstone(allowRedstone);
+            block.setAllowHoppers(allowHoppers);
+            protectedBlocks.update(block);
+            automationCache.invalidate();
+            storage.append(JournalRecord.flags(block));
+            return true;
+        } finally {
+            JournalStorage.unpin(pinned);
+        }
+    }
+
+    /**
+     * Get the session of a player, creating it if the player joined before the plugin was enabled.
+     * Does not allocate once the session exists.
+     */
+    public PlayerSession getSession(UUID playerUuid) {
+        return sessions.computeIfAbsent(playerUuid, PlayerSession::new);
+    }
+
+    /**
+     * Create a fresh session for a player who just joined.
+     */
+    public void openSession(UUID playerUuid) {
+        sessions.put(playerUuid, new PlayerSession(playerUuid));
+        activity.markActive(playerUuid);
+    }
+
+    /**
+     * Drop the session of a player (called when they disconnect).
      */
     public void cleanupPlayer(UUID playerUuid) {
-        lockModePlayers.remove(playerUuid);
-        unlockModePlayers.remove(playerUuid);
-        trustModePlayers.remove(playerUuid);
+        sessions.remove(playerUuid);
+        activity.markActive(playerUuid);
     }
 
     // Lock mode management
     public void enableLockMode(UUID playerUuid) {
-        lockModePlayers.put(playerUuid, true);
-        unlockModePlayers.remove(playerUuid);
-        trustModePlayers.remove(playerUuid);
+        getSession(playerUuid).setMode(PlayerSession.Mode.LOCK);
     }
 
     public void disableLockMode(UUID playerUuid) {
-        lockModePlayers.remove(playerUuid);
+        clearMode(playerUuid, PlayerSession.Mode.LOCK);
     }
 
     public boolean isInLockMode(UUID playerUuid) {
-        return lockModePlayers.containsKey(playerUuid);
+        return getSession(playerUuid).getMode() == PlayerSession.Mode.LOCK;
     }
 
     // Unlock mode management
     public void enableUnlockMode(UUID playerUuid) {
-        unlockModePlayers.put(playerUuid, true);
-        lockModePlayers.remove(playerUuid);
-        trustModePlayers.remove(playerUuid);
+        getSession(playerUuid).setMode(PlayerSession.Mode.UNLOCK);
     }
 
     public void disableUnlockMode(UUID playerUuid) {
-        unlockModePlayers.remove(playerUuid);
+        clearMode(playerUuid, PlayerSession.Mode.UNLOCK);
     }
 
     public boolean isInUnlockMode(UUID playerUuid) {
-        return unlockModePlayers.containsKey(playerUuid);
+        return getSession(playerUuid).getMode() == PlayerSession.Mode.UNLOCK;
     }
 
     // Trust mode management
     public void enableTrustMode(UUID playerUuid, UUID targetUuid) {
-        trustModePlayers.put(playerUuid, targetUuid);
-        lockModePlayers.remove(playerUuid);
-        unlockModePlayers.remove(playerUuid);
+        getSession(playerUuid).enterTrustMode(targetUuid);
     }
 
     public void disableTrustMode(UUID playerUuid) {
-        trustModePlayers.remove(playerUuid);
+        clearMode(playerUuid, PlayerSession.Mode.TRUST);
     }
 
     public boolean isInTrustMode(UUID playerUuid) {
-        return trustModePlayers.containsKey(playerUuid);
+        return getSession(playerUuid).getMode() == PlayerSession.Mode.TRUST;
     }
 
     public UUID getTrustTarget(UUID playerUuid) {
-        return trustModePlayers.get(playerUuid);
+        return getSession(playerUuid).getTrustTarget();
+    }
+
+    // Flag mode management
+    public void enableFlagMode(UUID playerUuid, PlayerSession.Flag flag, boolean value) {
+        getSession(playerUuid).enterFlagMode(flag, value);
+    }
+
+    private void clearMode(UUID playerUuid, PlayerSession.Mode mode) {
+        PlayerSession session = sessions.get(playerUuid);
+        if (session != null && session.getMode() == mode) {
+            session.setMode(PlayerSession.Mode.NONE);
+        }
     }
 
     /**
      * Clear all mode settings for a player.
      */
     public void clearModes(UUID playerUuid) {
-        lockModePlayers.remove(playerUuid);
-        unlockModePlayers.remove(playerUuid);
-        trustModePlayers.remove(playerUuid);
+        PlayerSession session = sessions.get(playerUuid);
+        if (session != null) {
+            session.setMode(PlayerSession.Mode.NONE);
+        }
     }
 }
@@ -0,0 +1,45 @@
+package org.allaymc.blocklocker.metrics;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runtime counters and latency histograms. Everything here is recorded on the event
+ * path or by the storage threads, so recording only touches adders and never allocates.
+ * Read by {@code /blocklocker stats}, JMX and the CSV dump (see {@link MetricsReporter}).
+ */
+@Getter
+public class BlockLockerMetrics {
+
+    // Time spent in the block interaction and block break handlers
+    private final LatencyHistogram interactLatency = new LatencyHistogram();
+    private final LatencyHistogram breakLatency = new LatencyHistogram();
+
+    // Protection lookups that found a protection vs. ones that found none
+    private final LongAdder lookupHits = new LongAdder();
+    private final LongAdder lookupMisses = new LongAdder();
+
+    // Actions refused because of a protection
+    private final LongAdder interactDenials = new LongAdder();
+    private final LongAdder breakDenials = new LongAdder();
+    private final LongAdder placeDenials = new LongAdder();
+    private final LongAdder automationDenials = new LongAdder();
+    private final LongAdder bulkDenials = new LongAdder();
+
+    // Actions refused because the protections of the area were still loading
+    private final LongAdder notReadyDenials = new LongAdder();
+
+    // Protected blocks found gone when their chunk loaded, see ChunkValidator
+    private final LongAdder orphansRemoved = new LongAdder();
+
+    // Compactions (saves), region reads, and bytes written to journal and region files
+    private final LatencyHistogram saveLatency = new LatencyHistogram();
+    private final LatencyHistogram regionLoadLatency = new LatencyHistogram();
+    private final LongAdder bytesWritten = new LongAdder();
+
+    // Duration of the startup load (journal replay, import), 0 until it finished
+    @Setter
+    private volatile long startupLoadNanos;
+}
@@ -0,0 +1,92 @@
+package org.allaymc.blocklocker.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram with power-of-two buckets over nanoseconds.
+ * <p>
+ * Bucket {@code i} counts durations in {@code [2^(i-1), 2^i)}, so percentiles are
+ * accurate to a factor of two, which is enough to tell microseconds from milliseconds.
+ * Recording is a few adder increments and does not allocate once the adders have
+ * settled, so it can be used on the event path.
+ */
+public class LatencyHistogram {
+
+    private static final int BUCKETS = 64;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Record one duration. Does not allocate.
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            // nanoTime is monotonic, but be safe against clock quirks on odd platforms
+            nanos = 0;
+        }
+        buckets[BUCKETS - Long.numberOfLeadingZeros(nanos)].increment();
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+    }
+
+    /**
+     * Record the time since a {@link System#nanoTime()} reading. Does not allocate.
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    public long getMeanNanos() {
+        long samples = count.sum();
+        return samples > 0 ? totalNanos.sum() / samples : 0;
+    }
+
+    /**
+     * Upper bound of the bucket holding the given percentile, e.g. 0.99 for p99.
+     * Allocates; meant for reporting, not for the event path.
+     */
+    public long getPercentileNanos(double percentile) {
+        long[] counts = new long[BUCKETS];
+        long samples = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+            samples += counts[i];
+        }
+        if (samples == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(samples * percentile);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                // Never report more than the slowest sample actually seen
+                return i == BUCKETS - 1 ? getMaxNanos() : Math.min((1L << i) - 1, getMaxNanos());
+            }
+        }
+        return getMaxNanos();
+    }
+}
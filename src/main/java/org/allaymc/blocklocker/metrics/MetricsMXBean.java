@@ -0,0 +1,69 @@
+package org.allaymc.blocklocker.metrics;
+
+/**
+ * BlockLocker metrics as seen over JMX, under {@code org.allaymc.blocklocker:type=Metrics}.
+ * Latencies are in microseconds (handlers) or milliseconds (storage), percentiles are
+ * bucket upper bounds, see {@link LatencyHistogram}.
+ */
+public interface MetricsMXBean {
+
+    long getInteractEvents();
+
+    long getInteractMeanMicros();
+
+    long getInteractP99Micros();
+
+    long getInteractMaxMicros();
+
+    long getBreakEvents();
+
+    long getBreakMeanMicros();
+
+    long getBreakP99Micros();
+
+    long getBreakMaxMicros();
+
+    long getLookupHits();
+
+    long getLookupMisses();
+
+    long getFilterSkips();
+
+    long getInteractDenials();
+
+    long getBreakDenials();
+
+    long getPlaceDenials();
+
+    long getAutomationDenials();
+
+    long getBulkDenials();
+
+    long getNotReadyDenials();
+
+    long getOrphansRemoved();
+
+    long getSaves();
+
+    long getSaveMeanMillis();
+
+    long getSaveMaxMillis();
+
+    long getRegionLoads();
+
+    long getRegionLoadMeanMillis();
+
+    long getRegionLoadMaxMillis();
+
+    long getStartupLoadMillis();
+
+    long getBytesWritten();
+
+    long getPendingRecords();
+
+    long getDirtyRegions();
+
+    long getTotalProtections();
+
+    long getResidentProtections();
+}
@@ -0,0 +1,308 @@
+package org.allaymc.blocklocker.metrics;
+
+import org.allaymc.blocklocker.config.BlockLockerConfig;
+import org.allaymc.blocklocker.manager.ProtectionManager;
+import org.slf4j.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Publishes {@link BlockLockerMetrics} as a JMX MBean and optionally appends them to
+ * {@code metrics.csv} in the plugin data folder at a fixed interval. Values are only
+ * read here, off the event path.
+ */
+public class MetricsReporter implements MetricsMXBean {
+
+    private static final String OBJECT_NAME = "org.allaymc.blocklocker:type=Metrics";
+    private static final String CSV_FILE = "metrics.csv";
+
+    private final ProtectionManager manager;
+    private final BlockLockerMetrics metrics;
+    private final Path csvFile;
+    private final Logger logger;
+    private final BlockLockerConfig.Metrics config;
+
+    // Columns of the CSV dump, in order
+    private final List<Column> columns;
+
+    private ObjectName objectName;
+    private ScheduledExecutorService csvExecutor;
+
+    public MetricsReporter(ProtectionManager manager, Path dataFolder, Logger logger, BlockLockerConfig.Metrics config) {
+        this.manager = manager;
+        this.metrics = manager.getMetrics();
+        this.csvFile = dataFolder.resolve(CSV_FILE);
+        this.logger = logger;
+        this.config = config;
+        this.columns = List.of(
+                new Column("interact_events", this::getInteractEvents),
+                new Column("interact_mean_us", this::getInteractMeanMicros),
+                new Column("interact_p99_us", this::getInteractP99Micros),
+                new Column("interact_max_us", this::getInteractMaxMicros),
+                new Column("break_events", this::getBreakEvents),
+                new Column("break_mean_us", this::getBreakMeanMicros),
+                new Column("break_p99_us", this::getBreakP99Micros),
+                new Column("break_max_us", this::getBreakMaxMicros),
+                new Column("lookup_hits", this::getLookupHits),
+                new Column("lookup_misses", this::getLookupMisses),
+                new Column("filter_skips", this::getFilterSkips),
+                new Column("interact_denials", this::getInteractDenials),
+                new Column("break_denials", this::getBreakDenials),
+                new Column("place_denials", this::getPlaceDenials),
+                new Column("automation_denials", this::getAutomationDenials),
+                new Column("bulk_denials", this::getBulkDenials),
+                new Column("not_ready_denials", this::getNotReadyDenials),
+                new Column("saves", this::getSaves),
+                new Column("save_mean_ms", this::getSaveMeanMillis),
+                new Column("save_max_ms", this::getSaveMaxMillis),
+                new Column("region_loads", this::getRegionLoads),
+                new Column("region_load_mean_ms", this::getRegionLoadMeanMillis),
+                new Column("region_load_max_ms", this::getRegionLoadMaxMillis),
+                new Column("bytes_written", this::getBytesWritten),
+                new Column("pending_records", this::getPendingRecords),
+                new Column("dirty_regions", this::getDirtyRegions),
+                new Column("total_protections", this::getTotalProtections),
+                new Column("resident_protections", this::getResidentProtections));
+    }
+
+    /**
+     * Register the MBean and start the CSV dump, as configured.
+     */
+    public void start() {
+        if (config.isJmx()) {
+            try {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                ObjectName name = new ObjectName(OBJECT_NAME);
+                if (server.isRegistered(name)) {
+                    // Left over from a plugin reload
+                    server.unregisterMBean(name);
+                }
+                server.registerMBean(this, name);
+                objectName = name;
+            } catch (JMException e) {
+                logger.warn("Failed to register metrics MBean: " + e.getMessage());
+            }
+        }
+
+        if (config.getCsvIntervalSeconds() > 0) {
+            csvExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "BlockLocker-Metrics");
+                thread.setDaemon(true);
+                return thread;
+            });
+            csvExecutor.scheduleAtFixedRate(this::appendCsv, config.getCsvIntervalSeconds(),
+                    config.getCsvIntervalSeconds(), TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Unregister the MBean and stop the CSV dump.
+     */
+    public void stop() {
+        if (csvExecutor != null) {
+            csvExecutor.shutdownNow();
+            csvExecutor = null;
+        }
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (JMException e) {
+                logger.warn("Failed to unregister metrics MBean: " + e.getMessage());
+            }
+            objectName = null;
+        }
+    }
+
+    private void appendCsv() {
+        try {
+            boolean header = !Files.exists(csvFile) || Files.size(csvFile) == 0;
+            StringBuilder line = new StringBuilder(512);
+            if (header) {
+                line.append("timestamp");
+                for (Column column : columns) {
+                    line.append(',').append(column.name());
+                }
+                line.append('\n');
+            }
+            line.append(System.currentTimeMillis());
+            for (Column column : columns) {
+                line.append(',').append(column.value().getAsLong());
+            }
+            line.append('\n');
+            try (Writer writer = Files.newBufferedWriter(csvFile, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                writer.write(line.toString());
+            }
+        } catch (IOException | RuntimeException e) {
+            // Keep the schedule alive, the next interval tries again
+            logger.warn("Failed to write " + CSV_FILE + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public long getInteractEvents() {
+        return metrics.getInteractLatency().getCount();
+    }
+
+    @Override
+    public long getInteractMeanMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(metrics.getInteractLatency().getMeanNanos());
+    }
+
+    @Override
+    public long getInteractP99Micros() {
+        return TimeUnit.NANOSECONDS.toMicros(metrics.getInteractLatency().getPercentileNanos(0.99));
+    }
+
+    @Override
+    public long getInteractMaxMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(metrics.getInteractLatency().getMaxNanos());
+    }
+
+    @Override
+    public long getBreakEvents() {
+        return metrics.getBreakLatency().getCount();
+    }
+
+    @Override
+    public long getBreakMeanMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(metrics.getBreakLatency().getMeanNanos());
+    }
+
+    @Override
+    public long getBreakP99Micros() {
+        return TimeUnit.NANOSECONDS.toMicros(metrics.getBreakLatency().getPercentileNanos(0.99));
+    }
+
+    @Override
+    public long getBreakMaxMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(metrics.getBreakLatency().getMaxNanos());
+    }
+
+    @Override
+    public long getLookupHits() {
+        return metrics.getLookupHits().sum();
+    }
+
+    @Override
+    public long getLookupMisses() {
+        return metrics.getLookupMisses().sum();
+    }
+
+    @Override
+    public long getFilterSkips() {
+        return manager.getFilterSkips();
+    }
+
+    @Override
+    public long getInteractDenials() {
+        return metrics.getInteractDenials().sum();
+    }
+
+    @Override
+    public long getBreakDenials() {
+        return metrics.getBreakDenials().sum();
+    }
+
+    @Override
+    public long getPlaceDenials() {
+        return metrics.getPlaceDenials().sum();
+    }
+
+    @Override
+    public long getAutomationDenials() {
+        return metrics.getAutomationDenials().sum();
+    }
+
+    @Override
+    public long getBulkDenials() {
+        return metrics.getBulkDenials().sum();
+    }
+
+    @Override
+    public long getNotReadyDenials() {
+        return metrics.getNotReadyDenials().sum();
+    }
+
+    @Override
+    public long getOrphansRemoved() {
+        return metrics.getOrphansRemoved().sum();
+    }
+
+    @Override
+    public long getSaves() {
+        return metrics.getSaveLatency().getCount();
+    }
+
+    @Override
+    public long getSaveMeanMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(metrics.getSaveLatency().getMeanNanos());
+    }
+
+    @Override
+    public long getSaveMaxMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(metrics.getSaveLatency().getMaxNanos());
+    }
+
+    @Override
+    public long getRegionLoads() {
+        return metrics.getRegionLoadLatency().getCount();
+    }
+
+    @Override
+    public long getRegionLoadMeanMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(metrics.getRegionLoadLatency().getMeanNanos());
+    }
+
+    @Override
+    public long getRegionLoadMaxMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(metrics.getRegionLoadLatency().getMaxNanos());
+    }
+
+    @Override
+    public long getStartupLoadMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(metrics.getStartupLoadNanos());
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return metrics.getBytesWritten().sum();
+    }
+
+    @Override
+    public long getPendingRecords() {
+        return manager.getPendingChanges();
+    }
+
+    @Override
+    public long getDirtyRegions() {
+        return manager.getDirtyRegions();
+    }
+
+    @Override
+    public long getTotalProtections() {
+        return manager.getTotalProtections();
+    }
+
+    @Override
+    public long getResidentProtections() {
+        return manager.getResidentProtections();
+    }
+
+    private record Column(String name, LongSupplier value) {
+    }
+}
@@ -0,0 +1,90 @@
+package org.allaymc.blocklocker.storage;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Helpers for replacing files without ever leaving a truncated file behind.
+ */
+public final class AtomicFiles {
+
+    private AtomicFiles() {
+    }
+
+    /**
+     * Write a file by writing a temporary sibling first and renaming it over the target.
+     * Readers either see the old or the new content, never a partial write.
+     */
+    public static void write(Path target, WriterAction action) throws IOException {
+        Path parent = target.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = parent.resolve(target.getFileName() + ".tmp");
+        try {
+            try (Writer writer = Files.newBufferedWriter(temp)) {
+                action.write(writer);
+            }
+            move(temp, target);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Binary variant of {@link #write(Path, WriterAction)}. The data is synced to disk before the rename.
+     *
+     * @return the number of bytes written
+     */
+    public static long writeBinary(Path target, StreamAction action) throws IOException {
+        Path parent = target.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = parent.resolve(target.getFileName() + ".tmp");
+        try {
+            long written;
+            try (FileOutputStream file = new FileOutputStream(temp.toFile());
+                 OutputStream out = new BufferedOutputStream(file, 1 << 16)) {
+                action.write(out);
+                out.flush();
+                file.getFD().sync();
+                written = file.getChannel().position();
+            }
+            move(temp, target);
+            return written;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Rename a file over another, atomically where the file system supports it.
+     */
+    public static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Writes content to an open stream.
+     */
+    @FunctionalInterface
+    public interface StreamAction {
+        void write(OutputStream out) throws IOException;
+    }
+
+    /**
+     * Writes content to an open writer.
+     */
+    @FunctionalInterface
+    public interface WriterAction {
+        void write(Writer writer) throws IOException;
+    }
+}
@@ -0,0 +1,165 @@
+package org.allaymc.blocklocker.storage;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.allaymc.blocklocker.data.ProtectedBlock;
+import org.allaymc.blocklocker.data.TrustSet;
+import org.allaymc.blocklocker.index.BlockKeys;
+import org.allaymc.blocklocker.index.ProtectionIndex;
+
+import java.util.UUID;
+
+/**
+ * A single change to the protection data, stored as one line of the change journal.
+ * <p>
+ * Every record sets state rather than modifying it relatively, so replaying a record
+ * that is already reflected in the snapshot is harmless.
+ */
+@Data
+@NoArgsConstructor
+public class JournalRecord {
+
+    public enum Type {
+        LOCK,
+        UNLOCK,
+        TRUST,
+        UNTRUST,
+        FLAGS,
+        TRANSFER,
+        STRUCTURE
+    }
+
+    private Type type;
+    private String worldName;
+    private int dimensionId;
+    private int x;
+    private int y;
+    private int z;
+
+    // LOCK and TRANSFER
+    private UUID ownerUuid;
+    private String ownerName;
+
+    // LOCK only
+    private long createdAt;
+
+    // TRUST and UNTRUST only
+    private UUID playerUuid;
+
+    // FLAGS only
+    private boolean allowRedstone;
+    private boolean allowHoppers;
+
+    // LOCK and STRUCTURE: packed member positions (see BlockKeys)
+    private long[] members;
+
+    // STRUCTURE only: packed new anchor position; x/y/z name the protection before the change
+    private long anchor;
+
+    private JournalRecord(Type type, String worldName, int dimensionId, int x, int y, int z) {
+        this.type = type;
+        this.worldName = worldName;
+        this.dimensionId = dimensionId;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+    }
+
+    public static JournalRecord lock(ProtectedBlock block) {
+        JournalRecord record = new JournalRecord(Type.LOCK, block.getWorldName(), block.getDimensionId(),
+                block.getX(), block.getY(), block.getZ());
+        record.ownerUuid = block.getOwnerUuid();
+        record.ownerName = block.getOwnerName();
+        record.createdAt = block.getCreatedAt();
+        if (block.hasMembers()) {
+            record.members = block.getMembers();
+        }
+        return record;
+    }
+
+    public static JournalRecord unlock(String worldName, int dimensionId, int x, int y, int z) {
+        return new JournalRecord(Type.UNLOCK, worldName, dimensionId, x, y, z);
+    }
+
+    public static JournalRecord trust(ProtectedBlock block, UUID playerUuid, boolean trusted) {
+        JournalRecord record = new JournalRecord(trusted ? Type.TRUST : Type.UNTRUST, block.getWorldName(),
+                block.getDimensionId(), block.getX(), block.getY(), block.getZ());
+        record.playerUuid = playerUuid;
+        return record;
+    }
+
+    public static JournalRecord flags(ProtectedBlock block) {
+        JournalRecord record = new JournalRecord(Type.FLAGS, block.getWorldName(), block.getDimensionId(),
+                block.getX(), block.getY(), block.getZ());
+        record.allowRedstone = block.isAllowRedstone();
+        record.allowHoppers = block.isAllowHoppers();
+        return record;
+    }
+
+    public static JournalRecord transfer(ProtectedBlock block) {
+        JournalRecord record = new JournalRecord(Type.TRANSFER, block.getWorldName(), block.getDimensionId(),
+                block.getX(), block.getY(), block.getZ());
+        record.ownerUuid = block.getOwnerUuid();
+        record.ownerName = block.getOwnerName();
+        return record;
+    }
+
+    /**
+     * Move a protection to another anchor and set of member blocks, e.g. when a double chest
+     * is split or extended.
+     *
+     * @param previous the protection before the change, as stored in the index
+     */
+    public static JournalRecord structure(ProtectedBlock previous, ProtectedBlock changed) {
+        JournalRecord record = new JournalRecord(Type.STRUCTURE, previous.getWorldName(), previous.getDimensionId(),
+                previous.getX(), previous.getY(), previous.getZ());
+        record.anchor = BlockKeys.pack(changed.getX(), changed.getY(), changed.getZ());
+        record.members = changed.getMembers();
+        return record;
+    }
+
+    /**
+     * Apply this change to an index, as done when replaying the journal on startup.
+     */
+    public void apply(ProtectionIndex index) {
+        if (type == Type.LOCK) {
+            index.put(new ProtectedBlock(worldName, dimensionId, x, y, z, ownerUuid, ownerName,
+                    createdAt, TrustSet.EMPTY, false, false, members()));
+            return;
+        }
+        if (type == Type.UNLOCK) {
+            index.remove(worldName, dimensionId, x, y, z);
+            return;
+        }
+
+        ProtectedBlock block = index.get(worldName, dimensionId, x, y, z);
+        if (block == null) {
+            return;
+        }
+        if (type == Type.TRANSFER) {
+            index.put(block.withOwner(ownerUuid, ownerName));
+            return;
+        }
+        if (type == Type.STRUCTURE) {
+            index.put(block.withStructure(BlockKeys.unpackX(anchor), BlockKeys.unpackY(anchor),
+                    BlockKeys.unpackZ(anchor), members()));
+            return;
+        }
+        switch (type) {
+            case TRUST -> block.addTrustedPlayer(playerUuid);
+            case UNTRUST -> block.removeTrustedPlayer(playerUuid);
+            case FLAGS -> {
+                block.setAllowRedstone(allowRedstone);
+                block.setAllowHoppers(allowHoppers);
+            }
+            default -> {
+            }
+        }
+        // The block is a view, write the change back (this also marks the region dirty)
+        index.update(block);
+    }
+
+    private long[] members() {
+        return members != null ? members : ProtectedBlock.NO_MEMBERS;
+    }
+}
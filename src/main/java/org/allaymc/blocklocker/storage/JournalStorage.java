@@ -0,0 +1,889 @@
+package org.allaymc.blocklocker.storage;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import org.allaymc.blocklocker.config.BlockLockerConfig;
+import org.allaymc.blocklocker.data.ProtectedBlock;
+import org.allaymc.blocklocker.data.TrustSet;
+import org.allaymc.blocklocker.index.DimensionIndex;
+import org.allaymc.blocklocker.index.ProtectionIndex;
+import org.allaymc.blocklocker.index.Region;
+import org.allaymc.blocklocker.metrics.BlockLockerMetrics;
+import org.slf4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Persists protections as per-region data in a {@link ProtectionStore} plus an
+ * append-only change journal.
+ * <p>
+ * Every mutation becomes one small journal line, written and synced by a background
+ * thread, so the cost of a change does not depend on how many protections exist.
+ * Once the journal grows past a threshold, the regions changed since the last
+ * compaction are rewritten and a new journal is started. The region manifest carries
+ * a generation number and only the journal of the same generation is replayed, so a
+ * crash at any point during compaction is safe.
+ * <p>
+ * Regions are loaded lazily when their chunks load and dropped from memory again
+ * once their chunks have been unloaded for a while. Single-file snapshots and JSON
+ * data from older versions are imported automatically on first load.
+ */
+public class JournalStorage implements AutoCloseable {
+
+    private static final String SNAPSHOT_FILE = "protected_blocks.dat";
+    private static final String LEGACY_SNAPSHOT_FILE = "protected_blocks.json";
+    private static final String JOURNAL_PREFIX = "protected_blocks-";
+    private static final String JOURNAL_SUFFIX = ".journal";
+    private static final String REGIONS_FOLDER = "regions";
+    private static final String JSON_REGIONS_FOLDER = "regions-json";
+    private static final String DATABASE_FOLDER = "database";
+
+    // Backends of storage.backend, in the order other backends are checked for data to migrate
+    private static final List<String> BACKENDS = List.of("regions", "json", "sqlite");
+
+    // Horizontal neighbours checked by ensureLoadedAround
+    private static final int[][] BORDER_OFFSETS = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}};
+
+    private final Path dataFolder;
+    private final Path snapshotFile;
+    private final Path legacySnapshotFile;
+    private final Gson gson;
+    private final Logger logger;
+    private final ProtectionIndex index;
+    private final BlockLockerMetrics metrics;
+    private final String backend;
+    private final boolean compressSnapshots;
+    private final ProtectionStore store;
+    private final long compactionThresholdBytes;
+    private final boolean mappedOwnerIndex;
+    private final long regionEvictAfterNanos;
+
+    // Periodically evicts idle regions
+    private final ScheduledExecutorService regionExecutor;
+
+    // Decodes region files in parallel, at startup and whenever regions load
+    private final ForkJoinPool loadPool;
+
+    private final BlockingQueue<JournalRecord> queue = new LinkedBlockingQueue<>();
+    private final Thread writerThread;
+    private volatile boolean running;
+
+    private long generation;
+    private FileChannel journal;
+    private long journalSize;
+
+    public JournalStorage(Path dataFolder, Logger logger, ProtectionIndex index, BlockLockerMetrics metrics,
+                          BlockLockerConfig.Storage config) {
+        this.dataFolder = dataFolder;
+        this.snapshotFile = dataFolder.resolve(SNAPSHOT_FILE);
+        this.legacySnapshotFile = dataFolder.resolve(LEGACY_SNAPSHOT_FILE);
+        // Compact output: journal records must stay on a single line
+        this.gson = new GsonBuilder().disableHtmlEscaping().create();
+        this.logger = logger;
+        this.index = index;
+        this.metrics = metrics;
+        this.backend = config.getBackend();
+        this.compressSnapshots = config.isCompressSnapshots();
+        this.store = openStore(backend);
+        this.compactionThresholdBytes = config.getCompactionThresholdBytes();
+        this.mappedOwnerIndex = config.isMappedOwnerIndex();
+        this.regionEvictAfterNanos = TimeUnit.SECONDS.toNanos(config.getRegionEvictAfterSeconds());
+        this.regionExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "BlockLocker-RegionEvictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        int loadThreads = config.getLoadThreads() > 0 ? config.getLoadThreads() : Runtime.getRuntime().availableProcessors();
+        this.loadPool = new ForkJoinPool(loadThreads, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("BlockLocker-Loader-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+        this.writerThread = new Thread(this::runWriter, "BlockLocker-Journal");
+        this.writerThread.setDaemon(true);
+    }
+
+    /**
+     * Open the region storage, replay the journal and start the journal writer.
+     * Data in the older single-file formats is imported into region files first, and data
+     * of another storage backend is migrated to the configured one.
+     * <p>
+     * If this fails, the storage stays closed and {@link #isOpen()} keeps returning
+     * {@code false}, so protected blocks stay locked instead of becoming accessible.
+     */
+    public void load() throws IOException {
+        long start = System.nanoTime();
+        Files.createDirectories(dataFolder);
+        Path importSource = null;
+        if (store == null) {
+            throw new IOException("Unknown storage backend '" + backend + "', expected one of " + BACKENDS);
+        }
+        if (mappedOwnerIndex) {
+            index.getOwners().mapInto(store.getOwnerTableFolder());
+        }
+        if (!store.exists()) {
+            migrateFromOtherBackend();
+        }
+        if (store.exists()) {
+            checkNoOtherBackend();
+            generation = store.readGeneration();
+            logger.info("Using " + backend + " storage (generation " + generation + "), protections load with their chunks.");
+            loadOwners();
+        } else if (Files.exists(snapshotFile) || Files.exists(legacySnapshotFile)) {
+            importSource = Files.exists(snapshotFile) ? snapshotFile : legacySnapshotFile;
+            try {
+                if (importSource == snapshotFile) {
+                    readSnapshot();
+                } else {
+                    readLegacySnapshot();
+                }
+                logger.info("Loaded " + index.size() + " protected blocks from " + importSource.getFileName()
+                        + " (generation " + generation + ").");
+            } catch (IOException e) {
+                // Keep a copy and refuse to start, so nothing is written over the only copy of the data
+                Path backup = dataFolder.resolve(importSource.getFileName() + ".corrupt");
+                Files.copy(importSource, backup, StandardCopyOption.REPLACE_EXISTING);
+                throw new IOException("Failed to import " + importSource.getFileName()
+                        + ", a copy was kept as " + backup.getFileName() + ": " + e.getMessage(), e);
+            }
+        } else {
+            logger.info("No existing protection data found. Starting fresh.");
+        }
+
+        // While importing everything is in memory; otherwise each record needs its region
+        boolean fullyLoaded = !store.exists();
+        index.setComplete(fullyLoaded);
+        Path journalFile = journalFile(generation);
+        List<JournalRecord> records = new ArrayList<>();
+        long validBytes = 0;
+        if (Files.exists(journalFile)) {
+            try (BufferedReader reader = Files.newBufferedReader(journalFile, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    JournalRecord record;
+                    try {
+                        record = gson.fromJson(line, JournalRecord.class);
+                    } catch (JsonParseException e) {
+                        // A torn last line from a crash; everything before it is intact
+                        logger.warn("Ignoring incomplete journal record at byte " + validBytes + ".");
+                        break;
+                    }
+                    if (record != null && record.getType() != null) {
+                        records.add(record);
+                    }
+                    validBytes += line.getBytes(StandardCharsets.UTF_8).length + 1;
+                }
+            }
+            if (!fullyLoaded) {
+                prefetchRegions(records);
+            }
+            for (JournalRecord record : records) {
+                if (!fullyLoaded) {
+                    ensureLoadedAround(record.getWorldName(), record.getDimensionId(), record.getX(), record.getZ());
+                }
+                record.apply(index);
+            }
+            logger.info("Replayed " + records.size() + " journal records.");
+        }
+        deleteStaleJournals();
+
+        journal = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if (validBytes > journal.size()) {
+            // The last record is complete but lost its line break
+            journal.position(journal.size());
+            journal.write(ByteBuffer.wrap(new byte[]{'\n'}));
+        }
+        // Cut off anything after the last complete record so new records follow valid data
+        journal.truncate(validBytes);
+        journal.position(validBytes);
+        journalSize = validBytes;
+
+        running = true;
+        writerThread.start();
+        long evictionPeriod = Math.max(regionEvictAfterNanos / 4, TimeUnit.SECONDS.toNanos(15));
+        regionExecutor.scheduleWithFixedDelay(this::evictIdleRegions, evictionPeriod, evictionPeriod, TimeUnit.NANOSECONDS);
+
+        if (fullyLoaded || !records.isEmpty()) {
+            // Write the replayed state (or the imported data) into region files
+            compact();
+        }
+        // From now on the store holds data the index may not, so regions must be loaded before changes
+        index.setComplete(false);
+        if (importSource != null) {
+            AtomicFiles.move(importSource, dataFolder.resolve(importSource.getFileName() + ".imported"));
+            logger.info("Imported " + index.size() + " protected blocks from " + importSource.getFileName()
+                    + " into region files.");
+        }
+        long elapsed = System.nanoTime() - start;
+        metrics.setStartupLoadNanos(elapsed);
+        logger.info("Protection data ready after " + TimeUnit.NANOSECONDS.toMillis(elapsed) + " ms.");
+    }
+
+    /**
+     * Run {@link #load()} on a background thread, so server startup does not wait for it.
+     * {@link #isOpen()} stays {@code false}, and every protectable block locked, until
+     * the returned future completes.
+     */
+    public CompletableFuture<Void> loadAsync() {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        Thread thread = new Thread(() -> {
+            try {
+                load();
+                future.complete(null);
+            } catch (IOException | RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        }, "BlockLocker-Startup");
+        thread.setDaemon(true);
+        thread.start();
+        return future;
+    }
+
+    /**
+     * Read the regions touched by journal records in parallel, instead of one at a time
+     * while replaying. Failures are ignored here; replay loads the region again and reports them.
+     */
+    private void prefetchRegions(List<JournalRecord> records) {
+        for (JournalRecord record : records) {
+            requestLoadAround(record.getWorldName(), record.getDimensionId(), record.getX(), record.getZ());
+        }
+        List<Region> regions = new ArrayList<>();
+        for (DimensionIndex dimension : index.getDimensions()) {
+            regions.addAll(dimension.getRegions());
+        }
+        if (regions.isEmpty()) {
+            return;
+        }
+        logger.info("Loading " + regions.size() + " protection regions changed since the last save...");
+        for (Region region : regions) {
+            region.getLoadFuture().exceptionally(e -> null).join();
+        }
+    }
+
+    private ProtectionStore openStore(String name) {
+        return switch (name) {
+            case "regions" -> new RegionFileStore(storeFolder(name), compressSnapshots);
+            case "json" -> new JsonRegionStore(storeFolder(name));
+            case "sqlite" -> new SqliteProtectionStore(storeFolder(name));
+            default -> null;
+        };
+    }
+
+    private Path storeFolder(String name) {
+        return dataFolder.resolve(switch (name) {
+            case "regions" -> REGIONS_FOLDER;
+            case "json" -> JSON_REGIONS_FOLDER;
+            default -> DATABASE_FOLDER;
+        });
+    }
+
+    /**
+     * Refuse to start if another backend holds data next to the configured one, for
+     * example after a migration was interrupted before the old data was moved aside.
+     * Either could be the current one, and switching to the other later would silently
+     * bring back old protections.
+     */
+    private void checkNoOtherBackend() throws IOException {
+        for (String other : BACKENDS) {
+            if (other.equals(backend)) {
+                continue;
+            }
+            try (ProtectionStore source = openStore(other)) {
+                if (source.exists()) {
+                    throw new IOException("Both the " + backend + " and the " + other + " storage backends hold "
+                            + "protection data; move " + storeFolder(other).getFileName() + " out of "
+                            + dataFolder + " if " + backend + " is the one in use");
+                }
+            }
+        }
+    }
+
+    /**
+     * Copy the data of the first other backend that has any into the configured store,
+     * after {@code storage.backend} was changed. Regions are copied in parallel on the load
+     * pool and the generation is written last, so an interrupted migration starts over on
+     * the next start. The journal is shared by all backends and replays as usual; the owner
+     * index is rebuilt from the copied regions. The old data is then renamed with a
+     * {@code .migrated} suffix, so it is never taken for current data again.
+     */
+    private void migrateFromOtherBackend() throws IOException {
+        for (String other : BACKENDS) {
+            if (other.equals(backend)) {
+                continue;
+            }
+            int blocks;
+            try (ProtectionStore source = openStore(other)) {
+                if (!source.exists()) {
+                    continue;
+                }
+                blocks = migrate(source, other);
+            }
+            // Only once the source is closed, an open database cannot be moved everywhere
+            Path folder = storeFolder(other);
+            Path migrated = folder.resolveSibling(folder.getFileName() + ".migrated");
+            for (int i = 2; Files.exists(migrated); i++) {
+                migrated = folder.resolveSibling(folder.getFileName() + ".migrated-" + i);
+            }
+            AtomicFiles.move(folder, migrated);
+            logger.info("Migrated " + blocks + " protected blocks from the " + other + " storage backend; "
+                    + "its data was kept as " + migrated.getFileName() + " and can be deleted.");
+            return;
+        }
+    }
+
+    private int migrate(ProtectionStore source, String other) throws IOException {
+        long sourceGeneration = source.readGeneration();
+        List<ProtectionStore.StoredRegion> regions = source.listRegions();
+        logger.info("Migrating " + regions.size() + " protection regions from the " + other
+                + " storage backend to " + backend + "...");
+        AtomicInteger blocks = new AtomicInteger();
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(regions.size());
+        for (ProtectionStore.StoredRegion region : regions) {
+            tasks.add(loadPool.submit(() -> {
+                List<ProtectedBlock> regionBlocks = region.read();
+                if (!regionBlocks.isEmpty()) {
+                    ProtectedBlock first = regionBlocks.get(0);
+                    store.write(first.getWorldName(), first.getDimensionId(),
+                            first.getX() >> Region.BLOCK_SHIFT, first.getZ() >> Region.BLOCK_SHIFT,
+                            regionBlocks, sourceGeneration);
+                    blocks.addAndGet(regionBlocks.size());
+                }
+                return null;
+            }));
+        }
+        awaitAll(tasks, "migrating protection data");
+        store.writeGeneration(sourceGeneration);
+        return blocks.get();
+    }
+
+    /**
+     * Load the owner index saved with the current generation, or rebuild it from the
+     * region files if it is missing or belongs to an interrupted compaction.
+     */
+    private void loadOwners() throws IOException {
+        long ownersGeneration;
+        try {
+            ownersGeneration = store.readOwners(index);
+        } catch (IOException e) {
+            logger.warn("Failed to read owner index: " + e.getMessage());
+            ownersGeneration = -1;
+        }
+        if (ownersGeneration != generation) {
+            rebuildOwners();
+        }
+        logger.info("Indexed " + index.getOwners().size() + " protected blocks by owner.");
+    }
+
+    /**
+     * Rebuild the owner index from every stored region. The regions are read in parallel
+     * on the load pool, each merged into the index in one step.
+     */
+    private void rebuildOwners() throws IOException {
+        List<ProtectionStore.StoredRegion> regions = store.listRegions();
+        logger.info("Rebuilding owner index from " + regions.size() + " stored regions...");
+        index.getOwners().clear();
+        AtomicInteger done = new AtomicInteger();
+        int step = Math.max(1, regions.size() / 10);
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(regions.size());
+        for (ProtectionStore.StoredRegion region : regions) {
+            tasks.add(loadPool.submit(() -> {
+                List<ProtectedBlock> blocks = region.read();
+                if (!blocks.isEmpty()) {
+                    ProtectedBlock first = blocks.get(0);
+                    index.getOwners().setAll(index.getOrCreateDimension(first.getWorldName(), first.getDimensionId()),
+                            blocks);
+                }
+                int count = done.incrementAndGet();
+                if (count % step == 0 && count < regions.size()) {
+                    logger.info("Rebuilding owner index: " + count + "/" + regions.size() + " stored regions.");
+                }
+                return null;
+            }));
+        }
+        awaitAll(tasks, "rebuilding the owner index");
+    }
+
+    private static void awaitAll(List<ForkJoinTask<?>> tasks, String what) throws IOException {
+        for (ForkJoinTask<?> task : tasks) {
+            try {
+                task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while " + what, e);
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause().getMessage(), e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Whether the storage loaded successfully and accepts changes.
+     */
+    public boolean isOpen() {
+        return running;
+    }
+
+    /**
+     * Make sure the region containing a chunk is in memory, reading it from disk on the
+     * calling thread if needed. Must be called before changing protections inside it.
+     */
+    public void ensureLoaded(String worldName, int dimensionId, int chunkX, int chunkZ) throws IOException {
+        DimensionIndex dimension = index.getOrCreateDimension(worldName, dimensionId);
+        boolean[] created = new boolean[1];
+        Region region = dimension.getOrCreateRegionOfChunk(chunkX, chunkZ, created);
+        if (created[0]) {
+            loadRegion(region);
+        } else if (!region.isLoaded()) {
+            try {
+                region.getLoadFuture().join();
+            } catch (CompletionException e) {
+                throw new IOException("Failed to load protection region: " + e.getCause().getMessage(), e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Load the region containing a chunk like {@link #ensureLoaded} and pin it, so it stays
+     * in memory until {@link Region#unpin()}.
+     */
+    public Region pinLoaded(String worldName, int dimensionId, int chunkX, int chunkZ) throws IOException {
+        DimensionIndex dimension = index.getOrCreateDimension(worldName, dimensionId);
+        while (true) {
+            boolean[] created = new boolean[1];
+            Region region = dimension.getOrCreateRegionOfChunk(chunkX, chunkZ, created);
+            region.pin();
+            try {
+                if (created[0]) {
+                    loadRegion(region);
+                } else if (!region.isLoaded()) {
+                    region.getLoadFuture().join();
+                }
+            } catch (CompletionException e) {
+                region.unpin();
+                throw new IOException("Failed to load protection region: " + e.getCause().getMessage(), e.getCause());
+            } catch (IOException | RuntimeException e) {
+                region.unpin();
+                throw e;
+            }
+            if (dimension.getRegionOfChunk(chunkX, chunkZ) == region) {
+                return region;
+            }
+            // Evicted before the pin was taken; the next pass loads it again
+            region.unpin();
+        }
+    }
+
+    /**
+     * Pin the region of a block position and, next to a region border, the neighbouring
+     * region, loading them if needed. Changes around the block are safe from eviction until
+     * the regions are unpinned with {@link #unpin(Region[])}.
+     */
+    public Region[] pinAround(String worldName, int dimensionId, int x, int z) throws IOException {
+        List<Region> pinned = new ArrayList<>(3);
+        try {
+            pinned.add(pinLoaded(worldName, dimensionId, x >> 4, z >> 4));
+            for (int[] offset : BORDER_OFFSETS) {
+                int neighbourX = x + offset[0];
+                int neighbourZ = z + offset[1];
+                if (neighbourX >> Region.BLOCK_SHIFT != x >> Region.BLOCK_SHIFT
+                        || neighbourZ >> Region.BLOCK_SHIFT != z >> Region.BLOCK_SHIFT) {
+                    pinned.add(pinLoaded(worldName, dimensionId, neighbourX >> 4, neighbourZ >> 4));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            unpin(pinned.toArray(new Region[0]));
+            throw e;
+        }
+        return pinned.toArray(new Region[0]);
+    }
+
+    public static void unpin(Region[] regions) {
+        for (Region region : regions) {
+            region.unpin();
+        }
+    }
+
+    /**
+     * Make sure the region of a block position is in memory, together with the neighbouring
+     * region if the block lies on a region border, since a door or double chest may reach
+     * across it.
+     */
+    public void ensureLoadedAround(String worldName, int dimensionId, int x, int z) throws IOException {
+        ensureLoaded(worldName, dimensionId, x >> 4, z >> 4);
+        for (int[] offset : BORDER_OFFSETS) {
+            int neighbourX = x + offset[0];
+            int neighbourZ = z + offset[1];
+            if (neighbourX >> Region.BLOCK_SHIFT != x >> Region.BLOCK_SHIFT
+                    || neighbourZ >> Region.BLOCK_SHIFT != z >> Region.BLOCK_SHIFT) {
+                ensureLoaded(worldName, dimensionId, neighbourX >> 4, neighbourZ >> 4);
+            }
+        }
+    }
+
+    /**
+     * Background variant of {@link #ensureLoadedAround}.
+     */
+    public void requestLoadAround(String worldName, int dimensionId, int x, int z) {
+        requestLoad(worldName, dimensionId, x >> 4, z >> 4);
+        for (int[] offset : BORDER_OFFSETS) {
+            int neighbourX = x + offset[0];
+            int neighbourZ = z + offset[1];
+            if (neighbourX >> Region.BLOCK_SHIFT != x >> Region.BLOCK_SHIFT
+                    || neighbourZ >> Region.BLOCK_SHIFT != z >> Region.BLOCK_SHIFT) {
+                requestLoad(worldName, dimensionId, neighbourX >> 4, neighbourZ >> 4);
+            }
+        }
+    }
+
+    /**
+     * Start loading the region containing a chunk in the background, if it is not resident.
+     *
+     * @return the region, which may still be loading
+     */
+    public Region requestLoad(String worldName, int dimensionId, int chunkX, int chunkZ) {
+        DimensionIndex dimension = index.getOrCreateDimension(worldName, dimensionId);
+        boolean[] created = new boolean[1];
+        Region region = dimension.getOrCreateRegionOfChunk(chunkX, chunkZ, created);
+        if (created[0]) {
+            loadPool.execute(() -> {
+                try {
+                    loadRegion(region);
+                } catch (IOException e) {
+                    logger.error(e.getMessage());
+                }
+            });
+        }
+        return region;
+    }
+
+    private void loadRegion(Region region) throws IOException {
+        long start = System.nanoTime();
+        DimensionIndex dimension = region.getDimension();
+        try {
+            List<ProtectedBlock> blocks = store.read(dimension.getWorldName(), dimension.getDimensionId(),
+                    region.getRegionX(), region.getRegionZ());
+            dimension.completeRegionLoad(region, blocks);
+            metrics.getRegionLoadLatency().recordSince(start);
+        } catch (IOException | RuntimeException e) {
+            // The region stays unknown (and locked); the next access tries again
+            dimension.discardRegion(region);
+            region.getLoadFuture().completeExceptionally(e);
+            throw new IOException("Failed to load protection region " + region.getRegionX() + ", "
+                    + region.getRegionZ() + " of " + dimension.getWorldName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Write changed regions whose chunks are all unloaded and drop them from memory.
+     */
+    synchronized void evictIdleRegions() {
+        int evicted = 0;
+        for (DimensionIndex dimension : index.getDimensions()) {
+            for (Region region : dimension.getRegions()) {
+                if (!region.isLoaded() || region.hasLoadedChunks() || region.getIdleNanos() < regionEvictAfterNanos) {
+                    continue;
+                }
+                try {
+                    if (region.isDirty()) {
+                        // The journal still holds these changes, so the generation stays the same
+                        writeRegion(dimension, region, generation);
+                    }
+                    if (dimension.evictRegion(region)) {
+                        evicted++;
+                    }
+                } catch (IOException | RuntimeException e) {
+                    logger.error("Failed to write protection region before eviction: " + e.getMessage());
+                }
+            }
+        }
+        if (evicted > 0) {
+            logger.debug("Evicted " + evicted + " idle protection regions.");
+        }
+    }
+
+    private void writeRegion(DimensionIndex dimension, Region region, long generation) throws IOException {
+        List<ProtectedBlock> blocks = dimension.snapshotRegion(region);
+        try {
+            metrics.getBytesWritten().add(store.write(dimension.getWorldName(), dimension.getDimensionId(),
+                    region.getRegionX(), region.getRegionZ(), blocks, generation));
+        } catch (IOException e) {
+            dimension.markDirty(region);
+            throw e;
+        }
+    }
+
+    /**
+     * Queue a change for the journal. Never blocks on I/O.
+     */
+    public void append(JournalRecord record) {
+        queue.add(record);
+    }
+
+    /**
+     * Number of changes not yet written to the journal.
+     */
+    public int getPendingRecords() {
+        return queue.size();
+    }
+
+    /**
+     * Number of resident regions with changes not yet written to their region file.
+     */
+    public int getDirtyRegions() {
+        int dirty = 0;
+        for (DimensionIndex dimension : index.getDimensions()) {
+            for (Region region : dimension.getRegions()) {
+                if (region.isLoaded() && region.isDirty()) {
+                    dirty++;
+                }
+            }
+        }
+        return dirty;
+    }
+
+    /**
+     * Size of the current journal in bytes.
+     */
+    public synchronized long getJournalSize() {
+        return journalSize;
+    }
+
+    private void runWriter() {
+        List<JournalRecord> batch = new ArrayList<>();
+        while (running || !queue.isEmpty() || !batch.isEmpty()) {
+            try {
+                if (batch.isEmpty()) {
+                    JournalRecord first = queue.poll(500, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                }
+                queue.drainTo(batch);
+                writeBatch(batch);
+                batch.clear();
+                if (getJournalSize() >= compactionThresholdBytes) {
+                    compact();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException e) {
+                // Keep the failed batch and retry it before anything newer, so order is preserved
+                logger.error("Failed to write protection journal, will retry: " + e.getMessage());
+                if (!running) {
+                    // Hand the batch back so close() can make a last attempt
+                    List<JournalRecord> remaining = new ArrayList<>(batch);
+                    queue.drainTo(remaining);
+                    queue.addAll(remaining);
+                    return;
+                }
+                sleepQuietly();
+            }
+        }
+    }
+
+    /**
+     * Append records to the journal and sync them to disk (group commit).
+     */
+    private synchronized void writeBatch(List<JournalRecord> batch) throws IOException {
+        StringBuilder builder = new StringBuilder(batch.size() * 128);
+        for (JournalRecord record : batch) {
+            builder.append(gson.toJson(record)).append('\n');
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(builder.toString().getBytes(StandardCharsets.UTF_8));
+        try {
+            while (buffer.hasRemaining()) {
+                journal.write(buffer);
+            }
+            journal.force(false);
+        } catch (IOException e) {
+            // Drop a partially written batch so the journal never contains a torn line mid-file
+            journal.truncate(journalSize);
+            journal.position(journalSize);
+            throw e;
+        }
+        metrics.getBytesWritten().add(journal.position() - journalSize);
+        journalSize = journal.position();
+    }
+
+    /**
+     * Write every region changed since the last compaction and start an empty journal.
+     */
+    public synchronized void compact() throws IOException {
+        long start = System.nanoTime();
+        long nextGeneration = generation + 1;
+        int written = 0;
+        for (DimensionIndex dimension : index.getDimensions()) {
+            for (Region region : dimension.getRegions()) {
+                if (region.isLoaded() && region.isDirty()) {
+                    writeRegion(dimension, region, nextGeneration);
+                    written++;
+                }
+            }
+        }
+        metrics.getBytesWritten().add(store.writeOwners(index, nextGeneration));
+        store.writeGeneration(nextGeneration);
+
+        // The stored regions no longer need the old journal, so it can be swapped out
+        FileChannel next = FileChannel.open(journalFile(nextGeneration),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        FileChannel previous = journal;
+        journal = next;
+        journalSize = 0;
+        if (previous != null) {
+            previous.close();
+        }
+        Files.deleteIfExists(journalFile(generation));
+        generation = nextGeneration;
+        metrics.getSaveLatency().recordSince(start);
+        logger.debug("Compacted journal, wrote " + written + " protection regions.");
+    }
+
+    /**
+     * Write all protections, including those of regions not in memory, as human-readable
+     * JSON, for debugging.
+     */
+    public void exportJson(Path target) throws IOException {
+        Gson pretty = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
+        List<ProtectedBlock> blocks = new ArrayList<>();
+        synchronized (this) {
+            // Bring the store up to date, then read everything
+            compact();
+            store.forEachStored(blocks::add);
+        }
+        AtomicFiles.write(target, writer -> pretty.toJson(blocks, writer));
+    }
+
+    /**
+     * Stop the writer, write remaining records and all changed regions.
+     */
+    @Override
+    public void close() throws IOException {
+        // The writer notices within one poll interval; interrupting it would close the channel
+        running = false;
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        regionExecutor.shutdownNow();
+        loadPool.shutdownNow();
+        try (ProtectionStore closing = store) {
+            if (journal == null) {
+                // Never loaded; there is nothing that could be written safely
+                return;
+            }
+
+            List<JournalRecord> remaining = new ArrayList<>();
+            queue.drainTo(remaining);
+            if (!remaining.isEmpty()) {
+                writeBatch(remaining);
+            }
+            compact();
+            journal.close();
+        }
+    }
+
+    /**
+     * Read a single-file binary snapshot written by older versions.
+     */
+    private void readSnapshot() throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(snapshotFile), 1 << 16)) {
+            // Blocks go straight into the index as they are decoded
+            generation = SnapshotCodec.read(in, index::put);
+        }
+    }
+
+    /**
+     * Read a JSON snapshot written by older versions: either a plain list of blocks or
+     * an object holding a generation and the block list.
+     */
+    private void readLegacySnapshot() throws IOException {
+        try (Reader reader = Files.newBufferedReader(legacySnapshotFile, StandardCharsets.UTF_8)) {
+            JsonReader json = gson.newJsonReader(reader);
+            List<ProtectedBlock> blocks;
+            if (json.peek() == JsonToken.BEGIN_ARRAY) {
+                blocks = gson.fromJson(json, new TypeToken<List<ProtectedBlock>>() {}.getType());
+                generation = 0;
+            } else {
+                LegacySnapshot snapshot = gson.fromJson(json, LegacySnapshot.class);
+                blocks = snapshot != null ? snapshot.blocks : null;
+                generation = snapshot != null ? snapshot.generation : 0;
+            }
+            if (blocks != null) {
+                for (ProtectedBlock block : blocks) {
+                    if (block.getTrustedPlayers() == null) {
+                        block.setTrustedPlayers(TrustSet.EMPTY);
+                    }
+                    index.put(block);
+                }
+            }
+        } catch (JsonParseException e) {
+            throw new IOException("Corrupt snapshot " + legacySnapshotFile.getFileName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    private void deleteStaleJournals() throws IOException {
+        Path current = journalFile(generation);
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dataFolder, JOURNAL_PREFIX + "*" + JOURNAL_SUFFIX)) {
+            for (Path path : stream) {
+                if (!path.equals(current)) {
+                    // Left over from a compaction interrupted after its snapshot was written
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+    }
+
+    private Path journalFile(long generation) {
+        return dataFolder.resolve(JOURNAL_PREFIX + generation + JOURNAL_SUFFIX);
+    }
+
+    private void sleepQuietly() {
+        try {
+            Thread.sleep(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * JSON snapshot layout used before the binary format.
+     */
+    private static class LegacySnapshot {
+        private long generation;
+        private List<ProtectedBlock> blocks;
+    }
+}
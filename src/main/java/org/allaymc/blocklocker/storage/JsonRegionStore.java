@@ -0,0 +1,85 @@
+package org.allaymc.blocklocker.storage;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import org.allaymc.blocklocker.data.ProtectedBlock;
+import org.allaymc.blocklocker.data.TrustSet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Region files as readable JSON instead of the binary snapshot format, for servers that
+ * want to inspect or hand-edit their data: {@code <root>/<world>/<dimension>/r.<x>.<z>.json},
+ * each an object holding the generation and the list of protections in the layout of
+ * {@code /blocklocker export}. Larger and slower to read than {@link RegionFileStore}.
+ */
+public class JsonRegionStore extends RegionFileStore {
+
+    private final Gson gson = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
+
+    public JsonRegionStore(Path root) {
+        super(root, false);
+    }
+
+    @Override
+    protected void encode(OutputStream out, long generation, List<ProtectedBlock> blocks) throws IOException {
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        JsonWriter json = gson.newJsonWriter(writer);
+        json.beginObject();
+        json.name("generation").value(generation);
+        json.name("blocks").beginArray();
+        for (ProtectedBlock block : blocks) {
+            gson.toJson(block, ProtectedBlock.class, json);
+        }
+        json.endArray();
+        json.endObject();
+        json.flush();
+    }
+
+    @Override
+    protected void decode(InputStream in, Consumer<ProtectedBlock> consumer) throws IOException {
+        try {
+            JsonReader json = gson.newJsonReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            json.beginObject();
+            while (json.hasNext()) {
+                if (!json.nextName().equals("blocks")) {
+                    json.skipValue();
+                    continue;
+                }
+                json.beginArray();
+                while (json.hasNext()) {
+                    ProtectedBlock block = gson.fromJson(json, ProtectedBlock.class);
+                    // Hand-edited files may leave these out
+                    if (block.getTrustedPlayers() == null) {
+                        block.setTrustedPlayers(TrustSet.EMPTY);
+                    }
+                    if (block.getMembers() == null) {
+                        block.setMembers(ProtectedBlock.NO_MEMBERS);
+                    }
+                    consumer.accept(block);
+                }
+                json.endArray();
+            }
+            json.endObject();
+        } catch (JsonParseException | IllegalStateException e) {
+            throw new IOException("Corrupt JSON region: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    protected String extension() {
+        return ".json";
+    }
+}
@@ -0,0 +1,223 @@
+package org.allaymc.blocklocker.storage;
+
+import org.allaymc.blocklocker.index.DimensionIndex;
+import org.allaymc.blocklocker.index.OwnedProtection;
+import org.allaymc.blocklocker.index.OwnerIndex;
+import org.allaymc.blocklocker.index.ProtectionIndex;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.allaymc.blocklocker.storage.SnapshotCodec.readVarInt;
+import static org.allaymc.blocklocker.storage.SnapshotCodec.readVarLong;
+import static org.allaymc.blocklocker.storage.SnapshotCodec.writeVarInt;
+import static org.allaymc.blocklocker.storage.SnapshotCodec.writeVarLong;
+
+/**
+ * Binary format of the owner index, saved next to the region files so owner
+ * queries work without loading every region.
+ * <p>
+ * Layout (version 1):
+ * <pre>
+ * header:  int magic "BLOI", byte version, long generation
+ * body:    varint dimensionCount, dimensionCount x (UTF world, varint dimensionId)
+ *          varint ownerCount,     ownerCount     x (long msb, long lsb)
+ *          varint entryCount,     entryCount     x entry
+ * entry:   varint dimension, zigzag varint x/y/z, varint owner, varlong createdAt
+ * </pre>
+ * Version 2 is written when the owner index is memory-mapped. The entries stay in the
+ * mapped table, so the file only holds what is needed to reopen it:
+ * <pre>
+ * header:  int magic "BLOI", byte version, long generation
+ * body:    varint dimensionCount, dimensionCount x (UTF world, varint dimensionId), in id order
+ *          UTF tableFile
+ *          varint ownerCount,     ownerCount     x (long msb, long lsb, int head, varint count)
+ * </pre>
+ */
+public final class OwnerIndexCodec {
+
+    private static final int MAGIC = 0x424C4F49; // "BLOI"
+    private static final int VERSION = 1;
+    private static final int MAPPED_VERSION = 2;
+
+    private OwnerIndexCodec() {
+    }
+
+    /**
+     * Read a saved owner index file into a protection index.
+     *
+     * @return the generation of the saved index, or -1 if there is no file
+     */
+    public static long readFile(Path file, ProtectionIndex index) throws IOException {
+        if (!Files.exists(file)) {
+            return -1;
+        }
+        try (InputStream in = Files.newInputStream(file)) {
+            return read(in, index);
+        }
+    }
+
+    /**
+     * Save the owner index of a protection index: all entries, or only a checkpoint
+     * of the table if it is memory-mapped.
+     *
+     * @return the number of bytes written
+     */
+    public static long writeFile(Path file, ProtectionIndex index, long generation) throws IOException {
+        OwnerIndex owners = index.getOwners();
+        if (owners.isMapped()) {
+            OwnerIndex.Checkpoint checkpoint = owners.checkpoint(generation);
+            List<DimensionIndex> dimensions = index.getDimensions();
+            return AtomicFiles.writeBinary(file, out -> writeMapped(out, dimensions, checkpoint));
+        }
+        List<OwnedProtection> entries = owners.values();
+        return AtomicFiles.writeBinary(file, out -> write(out, generation, entries));
+    }
+
+    public static void write(OutputStream target, long generation, List<OwnedProtection> entries) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(target, 1 << 16));
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeLong(generation);
+
+        Map<DimensionIndex, Integer> dimensions = new LinkedHashMap<>();
+        Map<UUID, Integer> owners = new LinkedHashMap<>();
+        for (OwnedProtection entry : entries) {
+            dimensions.putIfAbsent(entry.getDimension(), dimensions.size());
+            owners.putIfAbsent(entry.getOwnerUuid(), owners.size());
+        }
+
+        writeVarInt(out, dimensions.size());
+        for (DimensionIndex dimension : dimensions.keySet()) {
+            out.writeUTF(dimension.getWorldName());
+            writeVarInt(out, dimension.getDimensionId());
+        }
+        writeVarInt(out, owners.size());
+        for (UUID owner : owners.keySet()) {
+            out.writeLong(owner.getMostSignificantBits());
+            out.writeLong(owner.getLeastSignificantBits());
+        }
+        writeVarInt(out, entries.size());
+        for (OwnedProtection entry : entries) {
+            writeVarInt(out, dimensions.get(entry.getDimension()));
+            writeVarInt(out, zigzag(entry.getX()));
+            writeVarInt(out, zigzag(entry.getY()));
+            writeVarInt(out, zigzag(entry.getZ()));
+            writeVarInt(out, owners.get(entry.getOwnerUuid()));
+            writeVarLong(out, entry.getCreatedAt());
+        }
+        out.flush();
+    }
+
+    /**
+     * Write the checkpoint of a memory-mapped owner index.
+     */
+    public static void writeMapped(OutputStream target, List<DimensionIndex> dimensions,
+                                   OwnerIndex.Checkpoint checkpoint) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(target, 1 << 16));
+        out.writeInt(MAGIC);
+        out.writeByte(MAPPED_VERSION);
+        out.writeLong(checkpoint.generation());
+
+        writeVarInt(out, dimensions.size());
+        for (DimensionIndex dimension : dimensions) {
+            out.writeUTF(dimension.getWorldName());
+            writeVarInt(out, dimension.getDimensionId());
+        }
+        out.writeUTF(checkpoint.tableName());
+        List<UUID> owners = checkpoint.owners();
+        writeVarInt(out, owners.size());
+        for (int i = 0; i < owners.size(); i++) {
+            out.writeLong(owners.get(i).getMostSignificantBits());
+            out.writeLong(owners.get(i).getLeastSignificantBits());
+            out.writeInt(checkpoint.heads()[i]);
+            writeVarInt(out, checkpoint.counts()[i]);
+        }
+        out.flush();
+    }
+
+    /**
+     * Read an owner index into the owners of a protection index.
+     *
+     * @return the generation stored in the file, or -1 if a mapped table could not be
+     * reopened and the index has to be rebuilt
+     */
+    public static long read(InputStream source, ProtectionIndex index) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(source, 1 << 16));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a BlockLocker owner index");
+        }
+        int version = in.readUnsignedByte();
+        if (version == MAPPED_VERSION) {
+            return readMapped(in, index);
+        }
+        if (version != VERSION) {
+            throw new IOException("Unsupported owner index version " + version);
+        }
+        long generation = in.readLong();
+
+        DimensionIndex[] dimensions = new DimensionIndex[readVarInt(in)];
+        for (int i = 0; i < dimensions.length; i++) {
+            String world = in.readUTF();
+            dimensions[i] = index.getOrCreateDimension(world, readVarInt(in));
+        }
+        UUID[] owners = new UUID[readVarInt(in)];
+        for (int i = 0; i < owners.length; i++) {
+            owners[i] = new UUID(in.readLong(), in.readLong());
+        }
+        int entryCount = readVarInt(in);
+        for (int i = 0; i < entryCount; i++) {
+            DimensionIndex dimension = dimensions[readVarInt(in)];
+            int x = unzigzag(readVarInt(in));
+            int y = unzigzag(readVarInt(in));
+            int z = unzigzag(readVarInt(in));
+            UUID owner = owners[readVarInt(in)];
+            index.getOwners().set(dimension, x, y, z, owner, readVarLong(in));
+        }
+        return generation;
+    }
+
+    private static long readMapped(DataInputStream in, ProtectionIndex index) throws IOException {
+        long generation = in.readLong();
+        int dimensionCount = readVarInt(in);
+        for (int i = 0; i < dimensionCount; i++) {
+            String world = in.readUTF();
+            // The table stores interned dimension ids, so they must come out the same
+            if (index.getOrCreateDimension(world, readVarInt(in)).getId() != i) {
+                return -1;
+            }
+        }
+        String tableName = in.readUTF();
+        int ownerCount = readVarInt(in);
+        List<UUID> owners = new ArrayList<>(ownerCount);
+        int[] heads = new int[ownerCount];
+        int[] counts = new int[ownerCount];
+        for (int i = 0; i < ownerCount; i++) {
+            owners.add(new UUID(in.readLong(), in.readLong()));
+            heads[i] = in.readInt();
+            counts[i] = readVarInt(in);
+        }
+        OwnerIndex.Checkpoint checkpoint = new OwnerIndex.Checkpoint(tableName, generation, owners, heads, counts);
+        return index.getOwners().restore(checkpoint) ? generation : -1;
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,129 @@
+package org.allaymc.blocklocker.storage;
+
+import org.allaymc.blocklocker.data.ProtectedBlock;
+import org.allaymc.blocklocker.index.ProtectionIndex;
+import org.allaymc.blocklocker.index.Region;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Where protections are persisted, below the change journal of {@link JournalStorage}.
+ * <p>
+ * Protections are stored per {@link Region}: a region is loaded as a whole when its
+ * chunks load, and written as a whole, in one batch, when it changed and the journal is
+ * compacted or the region is evicted. Writing a region replaces what was stored for it,
+ * so it covers inserts, updates and deletes at once. A store also keeps the generation
+ * of the journal that has to be replayed on top of it, and the saved owner index.
+ * <p>
+ * Implementations: {@link RegionFileStore} (binary region files, the default),
+ * {@link JsonRegionStore} (readable region files) and {@link SqliteProtectionStore}
+ * (an embedded database). All methods may be called from several threads.
+ */
+public interface ProtectionStore extends Closeable {
+
+    /**
+     * Whether the store holds data, that is a generation was written.
+     */
+    boolean exists() throws IOException;
+
+    /**
+     * Generation of the journal to replay on top of the stored data.
+     */
+    long readGeneration() throws IOException;
+
+    void writeGeneration(long generation) throws IOException;
+
+    /**
+     * Read the protections of a region, or an empty list if it has none.
+     */
+    List<ProtectedBlock> read(String worldName, int dimensionId, int regionX, int regionZ) throws IOException;
+
+    /**
+     * Replace the protections of a region in one batch. An empty list deletes the region.
+     *
+     * @return the number of bytes written, or an estimate where the store cannot tell
+     */
+    long write(String worldName, int dimensionId, int regionX, int regionZ,
+               List<ProtectedBlock> blocks, long generation) throws IOException;
+
+    /**
+     * Read the saved owner index into a protection index.
+     *
+     * @return the generation of the saved index, or -1 if there is none
+     */
+    long readOwners(ProtectionIndex index) throws IOException;
+
+    /**
+     * Save the owner index of a protection index.
+     *
+     * @return the number of bytes written
+     */
+    long writeOwners(ProtectionIndex index, long generation) throws IOException;
+
+    /**
+     * Folder for the files of a memory-mapped owner index.
+     */
+    Path getOwnerTableFolder();
+
+    /**
+     * All stored regions, each to be read on its own, possibly in parallel.
+     */
+    List<StoredRegion> listRegions() throws IOException;
+
+    /**
+     * Stream all stored protections.
+     */
+    default void forEachStored(Consumer<ProtectedBlock> consumer) throws IOException {
+        for (StoredRegion region : listRegions()) {
+            region.read().forEach(consumer);
+        }
+    }
+
+    /**
+     * Stored protections of an owner, without loading them into the index. By default
+     * every stored region is scanned, as for region and JSON files; the SQLite store
+     * answers from its owner index.
+     */
+    default List<ProtectedBlock> queryByOwner(UUID ownerUuid) throws IOException {
+        List<ProtectedBlock> owned = new ArrayList<>();
+        forEachStored(block -> {
+            if (block.getOwnerUuid().equals(ownerUuid)) {
+                owned.add(block);
+            }
+        });
+        return owned;
+    }
+
+    /**
+     * Stored protections anchored in a chunk, without loading them into the index. By
+     * default only the region holding the chunk is read.
+     */
+    default List<ProtectedBlock> queryByChunk(String worldName, int dimensionId, int chunkX, int chunkZ) throws IOException {
+        List<ProtectedBlock> inChunk = new ArrayList<>();
+        for (ProtectedBlock block : read(worldName, dimensionId, chunkX >> Region.SHIFT, chunkZ >> Region.SHIFT)) {
+            if (block.getX() >> 4 == chunkX && block.getZ() >> 4 == chunkZ) {
+                inChunk.add(block);
+            }
+        }
+        return inChunk;
+    }
+
+    @Override
+    default void close() throws IOException {
+    }
+
+    /**
+     * A region in the store, not read yet.
+     */
+    @FunctionalInterface
+    interface StoredRegion {
+
+        List<ProtectedBlock> read() throws IOException;
+    }
+}
@@ -0,0 +1,213 @@
+package org.allaymc.blocklocker.storage;
+
+import org.allaymc.blocklocker.data.ProtectedBlock;
+import org.allaymc.blocklocker.index.ProtectionIndex;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Region files on disk, one per 32x32 chunk area, similar to the Anvil layout:
+ * {@code regions/<world>/<dimension>/r.<x>.<z>.dat}. Each file is a
+ * {@link SnapshotCodec} snapshot holding only that region's protections.
+ * <p>
+ * A small manifest records the generation of the change journal that must be
+ * replayed on top of the region files, and {@code owners.dat} holds the owner
+ * index of the same generation. A memory-mapped owner index keeps its table files
+ * in {@code owners/}.
+ * <p>
+ * Subclasses may store the region files in another format, see {@link JsonRegionStore}.
+ */
+public class RegionFileStore implements ProtectionStore {
+
+    private static final String MANIFEST_FILE = "manifest";
+    private static final String OWNERS_FILE = "owners.dat";
+    private static final String OWNER_TABLE_FOLDER = "owners";
+
+    private final Path root;
+    private final boolean compress;
+
+    public RegionFileStore(Path root, boolean compress) {
+        this.root = root;
+        this.compress = compress;
+    }
+
+    /**
+     * Whether region storage has been initialized (a manifest was written).
+     */
+    @Override
+    public boolean exists() {
+        return Files.exists(root.resolve(MANIFEST_FILE));
+    }
+
+    @Override
+    public long readGeneration() throws IOException {
+        try {
+            return Long.parseLong(Files.readString(root.resolve(MANIFEST_FILE), StandardCharsets.UTF_8).trim());
+        } catch (NumberFormatException e) {
+            throw new IOException("Corrupt region manifest: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void writeGeneration(long generation) throws IOException {
+        AtomicFiles.write(root.resolve(MANIFEST_FILE), writer -> writer.write(Long.toString(generation)));
+    }
+
+    /**
+     * Read the protections of a region, or an empty list if it has no file.
+     */
+    @Override
+    public List<ProtectedBlock> read(String worldName, int dimensionId, int regionX, int regionZ) throws IOException {
+        Path file = regionFile(worldName, dimensionId, regionX, regionZ);
+        List<ProtectedBlock> blocks = new ArrayList<>();
+        if (Files.exists(file)) {
+            readFile(file, blocks::add);
+        }
+        return blocks;
+    }
+
+    /**
+     * Replace the file of a region. An empty region has its file deleted.
+     *
+     * @return the number of bytes written
+     */
+    @Override
+    public long write(String worldName, int dimensionId, int regionX, int regionZ,
+                      List<ProtectedBlock> blocks, long generation) throws IOException {
+        Path file = regionFile(worldName, dimensionId, regionX, regionZ);
+        if (blocks.isEmpty()) {
+            Files.deleteIfExists(file);
+            return 0;
+        }
+        return AtomicFiles.writeBinary(file, out -> encode(out, generation, blocks));
+    }
+
+    /**
+     * Write the protections of one region file.
+     */
+    protected void encode(OutputStream out, long generation, List<ProtectedBlock> blocks) throws IOException {
+        SnapshotCodec.write(out, generation, blocks, compress);
+    }
+
+    /**
+     * Read the protections of one region file.
+     */
+    protected void decode(InputStream in, Consumer<ProtectedBlock> consumer) throws IOException {
+        SnapshotCodec.read(in, consumer);
+    }
+
+    /**
+     * File name extension of region files, including the dot.
+     */
+    protected String extension() {
+        return ".dat";
+    }
+
+    /**
+     * Read the saved owner index into a protection index.
+     *
+     * @return the generation of the saved index, or -1 if there is none
+     */
+    @Override
+    public long readOwners(ProtectionIndex index) throws IOException {
+        return OwnerIndexCodec.readFile(root.resolve(OWNERS_FILE), index);
+    }
+
+    /**
+     * Save the owner index of a protection index: all entries, or only a checkpoint
+     * of the table if it is memory-mapped.
+     *
+     * @return the number of bytes written
+     */
+    @Override
+    public long writeOwners(ProtectionIndex index, long generation) throws IOException {
+        return OwnerIndexCodec.writeFile(root.resolve(OWNERS_FILE), index, generation);
+    }
+
+    /**
+     * Folder of the memory-mapped owner table files.
+     */
+    @Override
+    public Path getOwnerTableFolder() {
+        return root.resolve(OWNER_TABLE_FOLDER);
+    }
+
+    /**
+     * Stream the protections of every region file on disk.
+     */
+    @Override
+    public void forEachStored(Consumer<ProtectedBlock> consumer) throws IOException {
+        for (Path file : listRegionFiles()) {
+            readFile(file, consumer);
+        }
+    }
+
+    /**
+     * All region files on disk. Each holds the protections of one dimension only.
+     */
+    @Override
+    public List<StoredRegion> listRegions() throws IOException {
+        List<StoredRegion> regions = new ArrayList<>();
+        for (Path file : listRegionFiles()) {
+            regions.add(() -> {
+                List<ProtectedBlock> blocks = new ArrayList<>();
+                readFile(file, blocks::add);
+                return blocks;
+            });
+        }
+        return regions;
+    }
+
+    private List<Path> listRegionFiles() throws IOException {
+        if (!Files.isDirectory(root)) {
+            return List.of();
+        }
+        String extension = extension();
+        try (Stream<Path> stream = Files.walk(root)) {
+            return stream.filter(path -> {
+                String name = path.getFileName().toString();
+                return name.startsWith("r.") && name.endsWith(extension);
+            }).toList();
+        }
+    }
+
+    private void readFile(Path file, Consumer<ProtectedBlock> consumer) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file), 1 << 16)) {
+            decode(in, consumer);
+        } catch (IOException e) {
+            throw new IOException("Failed to read " + root.relativize(file) + ": " + e.getMessage(), e);
+        }
+    }
+
+    private Path regionFile(String worldName, int dimensionId, int regionX, int regionZ) {
+        return root.resolve(sanitize(worldName))
+                .resolve(Integer.toString(dimensionId))
+                .resolve("r." + regionX + "." + regionZ + extension());
+    }
+
+    /**
+     * Escape a world name into a safe directory name. The mapping is reversible, so two
+     * worlds never share a directory.
+     */
+    private static String sanitize(String worldName) {
+        StringBuilder builder = new StringBuilder(worldName.length());
+        for (char c : worldName.toCharArray()) {
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_' || c == '-') {
+                builder.append(c);
+            } else {
+                builder.append('%').append(String.format("%04x", (int) c));
+            }
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,283 @@
+package org.allaymc.blocklocker.storage;
+
+import org.allaymc.blocklocker.data.ProtectedBlock;
+import org.allaymc.blocklocker.data.TrustSet;
+import org.allaymc.blocklocker.index.BlockKeys;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compact binary snapshot format.
+ * <p>
+ * Layout (version 2):
+ * <pre>
+ * header:  int magic "BLCK", byte version, byte flags (bit 0: deflate), long generation
+ * body:    (deflated if flagged)
+ *          varint worldCount,  worldCount  x UTF name
+ *          varint ownerCount,  ownerCount  x (long msb, long lsb, UTF name)
+ *          varint playerCount, playerCount x (long msb, long lsb)
+ *          varint blockCount,  blockCount  x block
+ * block:   varint world, varint dimensionId, zigzag varint x/y/z, varint owner,
+ *          varlong createdAt, byte flags (bit 0: redstone, bit 1: hoppers, bit 2: members),
+ *          varint trustedCount, trustedCount x varint player,
+ *          [if bit 2: varint memberCount, memberCount x zigzag varint dx/dy/dz]
+ * </pre>
+ * World and owner names are stored once in string tables instead of once per block.
+ * Member blocks of doors and double chests are stored relative to their anchor.
+ * Version 1 snapshots (no members) are still read.
+ */
+public final class SnapshotCodec {
+
+    private static final int MAGIC = 0x424C434B; // "BLCK"
+    private static final int VERSION = 2;
+    private static final int FLAG_DEFLATE = 1;
+    private static final int BLOCK_ALLOW_REDSTONE = 1;
+    private static final int BLOCK_ALLOW_HOPPERS = 1 << 1;
+    private static final int BLOCK_HAS_MEMBERS = 1 << 2;
+
+    private SnapshotCodec() {
+    }
+
+    /**
+     * Encode blocks into a snapshot.
+     */
+    public static void write(OutputStream target, long generation, List<ProtectedBlock> blocks, boolean compress)
+            throws IOException {
+        DataOutputStream header = new DataOutputStream(target);
+        header.writeInt(MAGIC);
+        header.writeByte(VERSION);
+        header.writeByte(compress ? FLAG_DEFLATE : 0);
+        header.writeLong(generation);
+        header.flush();
+
+        Deflater deflater = compress ? new Deflater(Deflater.BEST_SPEED) : null;
+        try {
+            OutputStream body = compress ? new DeflaterOutputStream(target, deflater, 1 << 16) : target;
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(body, 1 << 16));
+
+            // Build string tables; trust sets are captured once since they may be swapped concurrently
+            Map<String, Integer> worlds = new LinkedHashMap<>();
+            Map<OwnerKey, Integer> owners = new LinkedHashMap<>();
+            Map<UUID, Integer> players = new LinkedHashMap<>();
+            List<TrustSet> trustSets = new ArrayList<>(blocks.size());
+            for (ProtectedBlock block : blocks) {
+                worlds.putIfAbsent(block.getWorldName(), worlds.size());
+                owners.putIfAbsent(new OwnerKey(block.getOwnerUuid(), block.getOwnerName()), owners.size());
+                TrustSet trusted = block.getTrustedPlayers();
+                trustSets.add(trusted);
+                for (UUID player : trusted) {
+                    players.putIfAbsent(player, players.size());
+                }
+            }
+
+            writeVarInt(out, worlds.size());
+            for (String world : worlds.keySet()) {
+                out.writeUTF(world);
+            }
+            writeVarInt(out, owners.size());
+            for (OwnerKey owner : owners.keySet()) {
+                writeUuid(out, owner.uuid());
+                out.writeUTF(owner.name() != null ? owner.name() : "");
+            }
+            writeVarInt(out, players.size());
+            for (UUID player : players.keySet()) {
+                writeUuid(out, player);
+            }
+
+            writeVarInt(out, blocks.size());
+            for (int i = 0; i < blocks.size(); i++) {
+                ProtectedBlock block = blocks.get(i);
+                writeVarInt(out, worlds.get(block.getWorldName()));
+                writeVarInt(out, block.getDimensionId());
+                writeVarInt(out, zigzag(block.getX()));
+                writeVarInt(out, zigzag(block.getY()));
+                writeVarInt(out, zigzag(block.getZ()));
+                writeVarInt(out, owners.get(new OwnerKey(block.getOwnerUuid(), block.getOwnerName())));
+                writeVarLong(out, block.getCreatedAt());
+                long[] members = block.getMembers();
+                out.writeByte((block.isAllowRedstone() ? BLOCK_ALLOW_REDSTONE : 0)
+                        | (block.isAllowHoppers() ? BLOCK_ALLOW_HOPPERS : 0)
+                        | (members.length > 0 ? BLOCK_HAS_MEMBERS : 0));
+                TrustSet trusted = trustSets.get(i);
+                writeVarInt(out, trusted.size());
+                for (UUID player : trusted) {
+                    writeVarInt(out, players.get(player));
+                }
+                if (members.length > 0) {
+                    writeVarInt(out, members.length);
+                    for (long member : members) {
+                        writeVarInt(out, zigzag(BlockKeys.unpackX(member) - block.getX()));
+                        writeVarInt(out, zigzag(BlockKeys.unpackY(member) - block.getY()));
+                        writeVarInt(out, zigzag(BlockKeys.unpackZ(member) - block.getZ()));
+                    }
+                }
+            }
+
+            out.flush();
+            if (body instanceof DeflaterOutputStream deflating) {
+                deflating.finish();
+            }
+        } finally {
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+    }
+
+    /**
+     * Decode a snapshot, handing each block to the consumer as soon as it is read.
+     * No intermediate list of blocks is built.
+     *
+     * @return the generation stored in the snapshot
+     */
+    public static long read(InputStream source, Consumer<ProtectedBlock> consumer) throws IOException {
+        DataInputStream header = new DataInputStream(source);
+        if (header.readInt() != MAGIC) {
+            throw new IOException("Not a BlockLocker snapshot");
+        }
+        int version = header.readUnsignedByte();
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+        int flags = header.readUnsignedByte();
+        long generation = header.readLong();
+
+        Inflater inflater = (flags & FLAG_DEFLATE) != 0 ? new Inflater() : null;
+        try {
+            InputStream body = inflater != null ? new InflaterInputStream(source, inflater, 1 << 16) : source;
+            return readBody(new DataInputStream(new BufferedInputStream(body, 1 << 16)), generation, consumer);
+        } finally {
+            if (inflater != null) {
+                inflater.end();
+            }
+        }
+    }
+
+    private static long readBody(DataInputStream in, long generation, Consumer<ProtectedBlock> consumer)
+            throws IOException {
+        String[] worlds = new String[readVarInt(in)];
+        for (int i = 0; i < worlds.length; i++) {
+            worlds[i] = in.readUTF();
+        }
+        int ownerCount = readVarInt(in);
+        UUID[] ownerUuids = new UUID[ownerCount];
+        String[] ownerNames = new String[ownerCount];
+        for (int i = 0; i < ownerCount; i++) {
+            ownerUuids[i] = readUuid(in);
+            ownerNames[i] = in.readUTF();
+        }
+        UUID[] players = new UUID[readVarInt(in)];
+        for (int i = 0; i < players.length; i++) {
+            players[i] = readUuid(in);
+        }
+
+        int blockCount = readVarInt(in);
+        List<UUID> trusted = new ArrayList<>();
+        for (int i = 0; i < blockCount; i++) {
+            String world = worlds[readVarInt(in)];
+            int dimensionId = readVarInt(in);
+            int x = unzigzag(readVarInt(in));
+            int y = unzigzag(readVarInt(in));
+            int z = unzigzag(readVarInt(in));
+            int owner = readVarInt(in);
+            long createdAt = readVarLong(in);
+            int blockFlags = in.readUnsignedByte();
+            int trustedCount = readVarInt(in);
+            trusted.clear();
+            for (int j = 0; j < trustedCount; j++) {
+                trusted.add(players[readVarInt(in)]);
+            }
+            long[] members = ProtectedBlock.NO_MEMBERS;
+            if ((blockFlags & BLOCK_HAS_MEMBERS) != 0) {
+                members = new long[readVarInt(in)];
+                for (int j = 0; j < members.length; j++) {
+                    members[j] = BlockKeys.pack(x + unzigzag(readVarInt(in)), y + unzigzag(readVarInt(in)),
+                            z + unzigzag(readVarInt(in)));
+                }
+            }
+            consumer.accept(new ProtectedBlock(world, dimensionId, x, y, z, ownerUuids[owner], ownerNames[owner],
+                    createdAt, TrustSet.of(trusted),
+                    (blockFlags & BLOCK_ALLOW_REDSTONE) != 0, (blockFlags & BLOCK_ALLOW_HOPPERS) != 0, members));
+        }
+        return generation;
+    }
+
+    static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("VarInt too long");
+    }
+
+    static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("VarLong too long");
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeUuid(DataOutputStream out, UUID uuid) throws IOException {
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+    }
+
+    private static UUID readUuid(DataInputStream in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+
+    /**
+     * Owner table key: the same player may appear under different names after a rename.
+     */
+    private record OwnerKey(UUID uuid, String name) {
+    }
+}
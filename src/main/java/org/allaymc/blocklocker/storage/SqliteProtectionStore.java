@@ -0,0 +1,396 @@
+package org.allaymc.blocklocker.storage;
+
+import org.allaymc.blocklocker.data.ProtectedBlock;
+import org.allaymc.blocklocker.data.TrustSet;
+import org.allaymc.blocklocker.index.ProtectionIndex;
+import org.allaymc.blocklocker.index.Region;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Protections in an embedded SQLite database, {@code database/protections.db}: one
+ * indexed row per protection, so tools can query by owner or area without reading
+ * everything, and a changed region is written as one transaction of batched statements
+ * instead of a rewritten file.
+ * <p>
+ * A JDBC connection must not be shared between threads, so every statement runs on a
+ * dedicated I/O thread and callers wait for it; region loads from the load pool queue up
+ * there. The generation is kept in a {@code meta} table. The owner index is saved as a
+ * file next to the database, like with region files. Needs the SQLite JDBC driver
+ * ({@code org.xerial:sqlite-jdbc}) at runtime.
+ * <p>
+ * Trusted players are stored as a comma-separated list of UUIDs, and the other blocks of
+ * a multi-block structure as a blob of packed positions, 8 bytes each.
+ */
+public class SqliteProtectionStore implements ProtectionStore {
+
+    private static final String DATABASE_FILE = "protections.db";
+    private static final String OWNERS_FILE = "owners.dat";
+    private static final String OWNER_TABLE_FOLDER = "owners";
+
+    // Rough size of a row without trust list and members, for the bytes-written metric
+    private static final int ROW_BYTES = 96;
+
+    private static final String COLUMNS = "world, dimension, x, y, z, owner, owner_name, created_at, trusted, "
+            + "allow_redstone, allow_hoppers, members";
+
+    private static final String[] SCHEMA = {
+            "CREATE TABLE IF NOT EXISTS meta (key TEXT PRIMARY KEY, value INTEGER NOT NULL)",
+            "CREATE TABLE IF NOT EXISTS protections ("
+                    + "world TEXT NOT NULL, dimension INTEGER NOT NULL, "
+                    + "x INTEGER NOT NULL, y INTEGER NOT NULL, z INTEGER NOT NULL, "
+                    + "region_x INTEGER NOT NULL, region_z INTEGER NOT NULL, "
+                    + "owner TEXT NOT NULL, owner_name TEXT, created_at INTEGER NOT NULL, "
+                    + "trusted TEXT NOT NULL, allow_redstone INTEGER NOT NULL, allow_hoppers INTEGER NOT NULL, "
+                    + "members BLOB, "
+                    + "PRIMARY KEY (world, dimension, x, y, z))",
+            "CREATE INDEX IF NOT EXISTS protections_region ON protections (world, dimension, region_x, region_z)",
+            "CREATE INDEX IF NOT EXISTS protections_owner ON protections (owner)"
+    };
+
+    private final Path root;
+    private final ExecutorService executor;
+
+    // Only touched on the I/O thread
+    private Connection connection;
+    private PreparedStatement selectRegion;
+    private PreparedStatement deleteRegion;
+    private PreparedStatement insert;
+
+    public SqliteProtectionStore(Path root) {
+        this.root = root;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "BlockLocker-SQLite");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public boolean exists() throws IOException {
+        if (!Files.exists(root.resolve(DATABASE_FILE))) {
+            // Do not create a database just to find it empty
+            return false;
+        }
+        return call(connection -> readMeta(connection, "generation") != null);
+    }
+
+    @Override
+    public long readGeneration() throws IOException {
+        Long generation = call(connection -> readMeta(connection, "generation"));
+        if (generation == null) {
+            throw new IOException("The protection database has no generation");
+        }
+        return generation;
+    }
+
+    @Override
+    public void writeGeneration(long generation) throws IOException {
+        call(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "INSERT OR REPLACE INTO meta (key, value) VALUES ('generation', ?)")) {
+                statement.setLong(1, generation);
+                statement.executeUpdate();
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public List<ProtectedBlock> read(String worldName, int dimensionId, int regionX, int regionZ) throws IOException {
+        return call(connection -> {
+            selectRegion.setString(1, worldName);
+            selectRegion.setInt(2, dimensionId);
+            selectRegion.setInt(3, regionX);
+            selectRegion.setInt(4, regionZ);
+            List<ProtectedBlock> blocks = new ArrayList<>();
+            try (ResultSet rows = selectRegion.executeQuery()) {
+                while (rows.next()) {
+                    blocks.add(readRow(rows));
+                }
+            }
+            return blocks;
+        });
+    }
+
+    /**
+     * Replace the rows of a region in one transaction: one delete, then all rows as a
+     * single batch of inserts.
+     */
+    @Override
+    public long write(String worldName, int dimensionId, int regionX, int regionZ,
+                      List<ProtectedBlock> blocks, long generation) throws IOException {
+        return call(connection -> {
+            long bytes = 0;
+            connection.setAutoCommit(false);
+            try {
+                deleteRegion.setString(1, worldName);
+                deleteRegion.setInt(2, dimensionId);
+                deleteRegion.setInt(3, regionX);
+                deleteRegion.setInt(4, regionZ);
+                deleteRegion.executeUpdate();
+                for (ProtectedBlock block : blocks) {
+                    bytes += bindRow(insert, block);
+                    insert.addBatch();
+                }
+                if (!blocks.isEmpty()) {
+                    insert.executeBatch();
+                }
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                insert.clearBatch();
+                connection.setAutoCommit(true);
+            }
+            return bytes;
+        });
+    }
+
+    @Override
+    public long readOwners(ProtectionIndex index) throws IOException {
+        return OwnerIndexCodec.readFile(root.resolve(OWNERS_FILE), index);
+    }
+
+    @Override
+    public long writeOwners(ProtectionIndex index, long generation) throws IOException {
+        return OwnerIndexCodec.writeFile(root.resolve(OWNERS_FILE), index, generation);
+    }
+
+    @Override
+    public Path getOwnerTableFolder() {
+        return root.resolve(OWNER_TABLE_FOLDER);
+    }
+
+    @Override
+    public List<StoredRegion> listRegions() throws IOException {
+        return call(connection -> {
+            List<StoredRegion> regions = new ArrayList<>();
+            try (Statement statement = connection.createStatement();
+                 ResultSet rows = statement.executeQuery(
+                         "SELECT DISTINCT world, dimension, region_x, region_z FROM protections")) {
+                while (rows.next()) {
+                    String worldName = rows.getString(1);
+                    int dimensionId = rows.getInt(2);
+                    int regionX = rows.getInt(3);
+                    int regionZ = rows.getInt(4);
+                    regions.add(() -> read(worldName, dimensionId, regionX, regionZ));
+                }
+            }
+            return regions;
+        });
+    }
+
+    /**
+     * Stream all rows in one query. The consumer runs on the I/O thread.
+     */
+    @Override
+    public void forEachStored(Consumer<ProtectedBlock> consumer) throws IOException {
+        call(connection -> {
+            try (Statement statement = connection.createStatement();
+                 ResultSet rows = statement.executeQuery("SELECT " + COLUMNS + " FROM protections")) {
+                while (rows.next()) {
+                    consumer.accept(readRow(rows));
+                }
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public List<ProtectedBlock> queryByOwner(UUID ownerUuid) throws IOException {
+        return call(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT " + COLUMNS + " FROM protections WHERE owner = ?")) {
+                statement.setString(1, ownerUuid.toString());
+                return readRows(statement);
+            }
+        });
+    }
+
+    @Override
+    public List<ProtectedBlock> queryByChunk(String worldName, int dimensionId, int chunkX, int chunkZ) throws IOException {
+        return call(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement("SELECT " + COLUMNS + " FROM protections"
+                    + " WHERE world = ? AND dimension = ? AND region_x = ? AND region_z = ?"
+                    + " AND x BETWEEN ? AND ? AND z BETWEEN ? AND ?")) {
+                statement.setString(1, worldName);
+                statement.setInt(2, dimensionId);
+                statement.setInt(3, chunkX >> Region.SHIFT);
+                statement.setInt(4, chunkZ >> Region.SHIFT);
+                statement.setInt(5, chunkX << 4);
+                statement.setInt(6, (chunkX << 4) + 15);
+                statement.setInt(7, chunkZ << 4);
+                statement.setInt(8, (chunkZ << 4) + 15);
+                return readRows(statement);
+            }
+        });
+    }
+
+    /**
+     * Close the connection and stop the I/O thread.
+     */
+    @Override
+    public void close() throws IOException {
+        Future<Void> closed = executor.submit(() -> {
+            // Not through call(), which would open a database that was never used
+            if (connection != null) {
+                connection.close();
+                connection = null;
+            }
+            return null;
+        });
+        executor.shutdown();
+        await(closed);
+    }
+
+    /**
+     * Work on the database, run on the I/O thread.
+     */
+    @FunctionalInterface
+    private interface SqlAction<T> {
+
+        T run(Connection connection) throws SQLException, IOException;
+    }
+
+    private <T> T call(SqlAction<T> action) throws IOException {
+        return await(executor.submit(() -> action.run(connection())));
+    }
+
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the protection database", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException("Protection database error: " + cause.getMessage(), cause);
+        }
+    }
+
+    // Open the database and create the schema on first use
+    private Connection connection() throws SQLException, IOException {
+        if (connection != null) {
+            return connection;
+        }
+        Files.createDirectories(root);
+        try {
+            // Plugin class loaders are not searched by DriverManager's service lookup
+            Class.forName("org.sqlite.JDBC");
+        } catch (ClassNotFoundException e) {
+            throw new IOException("The SQLite JDBC driver (org.xerial:sqlite-jdbc) is not available", e);
+        }
+        Connection opened = DriverManager.getConnection("jdbc:sqlite:" + root.resolve(DATABASE_FILE).toAbsolutePath());
+        try (Statement statement = opened.createStatement()) {
+            // Readers do not block the writer, and every commit is synced
+            statement.execute("PRAGMA journal_mode=WAL");
+            statement.execute("PRAGMA synchronous=FULL");
+            for (String sql : SCHEMA) {
+                statement.execute(sql);
+            }
+        }
+        selectRegion = opened.prepareStatement("SELECT " + COLUMNS + " FROM protections"
+                + " WHERE world = ? AND dimension = ? AND region_x = ? AND region_z = ?");
+        deleteRegion = opened.prepareStatement(
+                "DELETE FROM protections WHERE world = ? AND dimension = ? AND region_x = ? AND region_z = ?");
+        insert = opened.prepareStatement("INSERT OR REPLACE INTO protections (" + COLUMNS
+                + ", region_x, region_z) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+        connection = opened;
+        return opened;
+    }
+
+    private static Long readMeta(Connection connection, String key) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT value FROM meta WHERE key = ?")) {
+            statement.setString(1, key);
+            try (ResultSet rows = statement.executeQuery()) {
+                return rows.next() ? rows.getLong(1) : null;
+            }
+        }
+    }
+
+    private static List<ProtectedBlock> readRows(PreparedStatement statement) throws SQLException {
+        List<ProtectedBlock> blocks = new ArrayList<>();
+        try (ResultSet rows = statement.executeQuery()) {
+            while (rows.next()) {
+                blocks.add(readRow(rows));
+            }
+        }
+        return blocks;
+    }
+
+    // Columns in the order of COLUMNS
+    private static ProtectedBlock readRow(ResultSet rows) throws SQLException {
+        String trusted = rows.getString(9);
+        List<UUID> players = new ArrayList<>();
+        if (!trusted.isEmpty()) {
+            for (String player : trusted.split(",")) {
+                players.add(UUID.fromString(player));
+            }
+        }
+        byte[] memberBytes = rows.getBytes(12);
+        long[] members = ProtectedBlock.NO_MEMBERS;
+        if (memberBytes != null && memberBytes.length > 0) {
+            members = new long[memberBytes.length / Long.BYTES];
+            ByteBuffer.wrap(memberBytes).asLongBuffer().get(members);
+        }
+        return new ProtectedBlock(rows.getString(1), rows.getInt(2), rows.getInt(3), rows.getInt(4), rows.getInt(5),
+                UUID.fromString(rows.getString(6)), rows.getString(7), rows.getLong(8), TrustSet.of(players),
+                rows.getInt(10) != 0, rows.getInt(11) != 0, members);
+    }
+
+    // Bind a block to the insert statement; returns the approximate size of the row
+    private static int bindRow(PreparedStatement statement, ProtectedBlock block) throws SQLException {
+        StringBuilder trusted = new StringBuilder();
+        for (UUID player : block.getTrustedPlayers()) {
+            if (!trusted.isEmpty()) {
+                trusted.append(',');
+            }
+            trusted.append(player);
+        }
+        long[] members = block.getMembers();
+        statement.setString(1, block.getWorldName());
+        statement.setInt(2, block.getDimensionId());
+        statement.setInt(3, block.getX());
+        statement.setInt(4, block.getY());
+        statement.setInt(5, block.getZ());
+        statement.setString(6, block.getOwnerUuid().toString());
+        statement.setString(7, block.getOwnerName());
+        statement.setLong(8, block.getCreatedAt());
+        statement.setString(9, trusted.toString());
+        statement.setInt(10, block.isAllowRedstone() ? 1 : 0);
+        statement.setInt(11, block.isAllowHoppers() ? 1 : 0);
+        if (members.length > 0) {
+            ByteBuffer buffer = ByteBuffer.allocate(members.length * Long.BYTES);
+            buffer.asLongBuffer().put(members);
+            statement.setBytes(12, buffer.array());
+        } else {
+            statement.setNull(12, Types.BLOB);
+        }
+        statement.setInt(13, block.getX() >> Region.BLOCK_SHIFT);
+        statement.setInt(14, block.getZ() >> Region.BLOCK_SHIFT);
+        return ROW_BYTES + trusted.length() + members.length * Long.BYTES;
+    }
+}
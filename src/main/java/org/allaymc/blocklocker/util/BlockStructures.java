@@ -0,0 +1,52 @@
+package org.allaymc.blocklocker.util;
+
+import org.allaymc.api.block.property.type.BlockPropertyTypes;
+import org.allaymc.api.block.type.BlockState;
+import org.allaymc.api.blockentity.component.BlockEntityPairableComponent;
+import org.allaymc.api.world.Dimension;
+import org.allaymc.blocklocker.data.ProtectedBlock;
+import org.allaymc.blocklocker.index.BlockKeys;
+
+/**
+ * Finds the other blocks of multi-block structures in the world: the second half of
+ * a door and the paired half of a double chest. Those blocks are protected together
+ * with the block that was locked.
+ */
+public final class BlockStructures {
+
+    private BlockStructures() {
+    }
+
+    /**
+     * Packed positions (see {@link BlockKeys#pack}) of the blocks that form one structure
+     * with the block at a position, not including the block itself.
+     */
+    public static long[] findMembers(Dimension dimension, int x, int y, int z) {
+        BlockState state = dimension.getBlockState(x, y, z);
+        if (isTwoHigh(state)) {
+            // Doors: the upper half sits directly on the lower half
+            int otherY = Boolean.TRUE.equals(state.getPropertyValue(BlockPropertyTypes.UPPER_BLOCK_BIT)) ? y - 1 : y + 1;
+            if (dimension.getBlockState(x, otherY, z).getBlockType() == state.getBlockType()) {
+                return new long[]{BlockKeys.pack(x, otherY, z)};
+            }
+            return ProtectedBlock.NO_MEMBERS;
+        }
+        // Chests and other pairable containers
+        if (dimension.getBlockEntity(x, y, z) instanceof BlockEntityPairableComponent pairable && pairable.isPaired()) {
+            var pair = pairable.getPair();
+            if (pair != null) {
+                var pairPos = pair.getPosition();
+                return new long[]{BlockKeys.pack(pairPos.x(), pairPos.y(), pairPos.z())};
+            }
+        }
+        return ProtectedBlock.NO_MEMBERS;
+    }
+
+    /**
+     * Whether a structure is two blocks stacked on top of each other, so breaking
+     * one half breaks the other.
+     */
+    public static boolean isTwoHigh(BlockState state) {
+        return state.getBlockType().getProperties().containsKey(BlockPropertyTypes.UPPER_BLOCK_BIT.getName());
+    }
+}
@@ -0,0 +1,152 @@
+package org.allaymc.blocklocker.util;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from primitive {@code long} keys to non-negative {@code int}
+ * values, the primitive counterpart of {@link LongObjectHashMap}. Neither keys nor
+ * values are boxed. Values are stored plus one, so a zero slot marks a free one.
+ * <p>
+ * Not thread-safe.
+ */
+public class LongIntHashMap {
+
+    /**
+     * Returned by {@link #get(long)} and {@link #remove(long)} for absent keys.
+     */
+    public static final int MISSING = -1;
+
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+    private int resizeThreshold;
+
+    public LongIntHashMap() {
+        this.keys = new long[DEFAULT_CAPACITY];
+        this.values = new int[DEFAULT_CAPACITY];
+        this.resizeThreshold = (int) (DEFAULT_CAPACITY * LOAD_FACTOR);
+    }
+
+    /**
+     * Get the value mapped to a key, or {@link #MISSING}.
+     */
+    public int get(long key) {
+        int mask = keys.length - 1;
+        int index = mix(key) & mask;
+        while (values[index] != 0) {
+            if (keys[index] == key) {
+                return values[index] - 1;
+            }
+            index = (index + 1) & mask;
+        }
+        return MISSING;
+    }
+
+    /**
+     * Map a key to a non-negative value.
+     *
+     * @return the previous value, or {@link #MISSING} if the key was absent
+     */
+    public int put(long key, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative value: " + value);
+        }
+        int mask = keys.length - 1;
+        int index = mix(key) & mask;
+        while (values[index] != 0) {
+            if (keys[index] == key) {
+                int previous = values[index] - 1;
+                values[index] = value + 1;
+                return previous;
+            }
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        values[index] = value + 1;
+        if (++size > resizeThreshold) {
+            rehash(keys.length << 1);
+        }
+        return MISSING;
+    }
+
+    /**
+     * Remove a key.
+     *
+     * @return the removed value, or {@link #MISSING} if the key was absent
+     */
+    public int remove(long key) {
+        int mask = keys.length - 1;
+        int index = mix(key) & mask;
+        while (values[index] != 0) {
+            if (keys[index] == key) {
+                int previous = values[index] - 1;
+                shiftKeys(index);
+                size--;
+                return previous;
+            }
+            index = (index + 1) & mask;
+        }
+        return MISSING;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(values, 0);
+        size = 0;
+    }
+
+    /**
+     * Close the gap left at {@code slot} by moving later entries of the same probe run back.
+     */
+    private void shiftKeys(int slot) {
+        int mask = keys.length - 1;
+        int last = slot;
+        int current = (slot + 1) & mask;
+        while (values[current] != 0) {
+            int home = mix(keys[current]) & mask;
+            // Move the entry if its home slot is not cyclically within (last, current]
+            boolean movable = last <= current
+                    ? last >= home || home > current
+                    : last >= home && home > current;
+            if (movable) {
+                keys[last] = keys[current];
+                values[last] = values[current];
+                last = current;
+            }
+            current = (current + 1) & mask;
+        }
+        values[last] = 0;
+    }
+
+    private void rehash(int newCapacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        long[] newKeys = new long[newCapacity];
+        int[] newValues = new int[newCapacity];
+        int mask = newCapacity - 1;
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != 0) {
+                int index = mix(oldKeys[i]) & mask;
+                while (newValues[index] != 0) {
+                    index = (index + 1) & mask;
+                }
+                newKeys[index] = oldKeys[i];
+                newValues[index] = oldValues[i];
+            }
+        }
+        this.keys = newKeys;
+        this.values = newValues;
+        this.resizeThreshold = (int) (newCapacity * LOAD_FACTOR);
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
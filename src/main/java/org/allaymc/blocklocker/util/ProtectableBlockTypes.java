@@ -0,0 +1,95 @@
+package org.allaymc.blocklocker.util;
+
+import org.allaymc.api.block.type.BlockType;
+import org.allaymc.api.registry.Registries;
+import org.allaymc.blocklocker.config.BlockLockerConfig;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * The block types that can be locked, resolved once at startup from the include and
+ * exclude patterns in the config. Checking a block afterwards is a single identity
+ * set lookup, with no string work.
+ */
+public class ProtectableBlockTypes {
+
+    private final Set<BlockType<?>> types;
+
+    private ProtectableBlockTypes(Set<BlockType<?>> types) {
+        this.types = types;
+    }
+
+    /**
+     * Match every registered block type against the configured patterns.
+     */
+    public static ProtectableBlockTypes resolve(BlockLockerConfig.ProtectableBlocks config, Logger logger) {
+        List<Pattern> include = compile(config.getInclude());
+        List<Pattern> exclude = compile(config.getExclude());
+        Set<BlockType<?>> types = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (BlockType<?> type : Registries.BLOCKS.getContent().values()) {
+            String identifier = type.getIdentifier().toString();
+            if (matchesAny(include, identifier) && !matchesAny(exclude, identifier)) {
+                types.add(type);
+            }
+        }
+        logger.info("Resolved " + types.size() + " protectable block types.");
+        return new ProtectableBlockTypes(types);
+    }
+
+    /**
+     * Build the set from already resolved types, e.g. for benchmarks without a running server.
+     */
+    public static ProtectableBlockTypes of(Collection<? extends BlockType<?>> types) {
+        Set<BlockType<?>> set = Collections.newSetFromMap(new IdentityHashMap<>());
+        set.addAll(types);
+        return new ProtectableBlockTypes(set);
+    }
+
+    public boolean contains(BlockType<?> type) {
+        return types.contains(type);
+    }
+
+    public int size() {
+        return types.size();
+    }
+
+    private static boolean matchesAny(List<Pattern> patterns, String identifier) {
+        for (Pattern pattern : patterns) {
+            if (pattern.matcher(identifier).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Turn glob patterns ({@code *} and {@code ?}) into regular expressions. A pattern
+     * without a namespace matches block identifiers of any namespace.
+     */
+    private static List<Pattern> compile(List<String> globs) {
+        List<Pattern> patterns = new ArrayList<>();
+        if (globs == null) {
+            return patterns;
+        }
+        for (String glob : globs) {
+            String full = glob.contains(":") ? glob : "*:" + glob;
+            StringBuilder regex = new StringBuilder();
+            for (char c : full.toCharArray()) {
+                switch (c) {
+                    case '*' -> regex.append("[^:]*");
+                    case '?' -> regex.append("[^:]");
+                    default -> regex.append(Pattern.quote(String.valueOf(c)));
+                }
+            }
+            patterns.add(Pattern.compile(regex.toString()));
+        }
+        return patterns;
+    }
+}
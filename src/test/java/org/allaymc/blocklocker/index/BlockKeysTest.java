@@ -0,0 +1,88 @@
+package org.allaymc.blocklocker.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BlockKeysTest {
+
+    private static final int MIN_XZ = -(1 << 25);
+    private static final int MAX_XZ = (1 << 25) - 1;
+    private static final int MIN_Y = -(1 << 11);
+    private static final int MAX_Y = (1 << 11) - 1;
+
+    @Test
+    void packRoundTripsNegativeCoordinates() {
+        int[][] positions = {
+                {-1, -1, -1},
+                {-1, 0, 1},
+                {-16, -64, -17},
+                {-12345, 319, 67890},
+                {0, 0, 0},
+        };
+        for (int[] position : positions) {
+            assertRoundTrip(position[0], position[1], position[2]);
+        }
+    }
+
+    @Test
+    void packRoundTripsBitEdges() {
+        int[] xz = {MIN_XZ, MIN_XZ + 1, -1, 0, 1, MAX_XZ - 1, MAX_XZ};
+        int[] y = {MIN_Y, MIN_Y + 1, -1, 0, 1, MAX_Y - 1, MAX_Y};
+        for (int x : xz) {
+            for (int z : xz) {
+                for (int blockY : y) {
+                    assertRoundTrip(x, blockY, z);
+                }
+            }
+        }
+    }
+
+    @Test
+    void edgesDoNotCollide() {
+        int[] xz = {MIN_XZ, -1, 0, MAX_XZ};
+        int[] y = {MIN_Y, -1, 0, MAX_Y};
+        Set<Long> keys = new HashSet<>();
+        for (int x : xz) {
+            for (int z : xz) {
+                for (int blockY : y) {
+                    assertTrue(keys.add(BlockKeys.pack(x, blockY, z)), x + " " + blockY + " " + z);
+                }
+            }
+        }
+    }
+
+    @Test
+    void chunkKeyRoundTripsNegativeCoordinates() {
+        int[] coordinates = {Integer.MIN_VALUE, MIN_XZ >> 4, -1, 0, 1, MAX_XZ >> 4, Integer.MAX_VALUE};
+        for (int chunkX : coordinates) {
+            for (int chunkZ : coordinates) {
+                long key = BlockKeys.chunkKey(chunkX, chunkZ);
+                assertEquals(chunkX, BlockKeys.chunkX(key));
+                assertEquals(chunkZ, BlockKeys.chunkZ(key));
+            }
+        }
+    }
+
+    @Test
+    void localKeyKeepsTheBlockInsideItsChunk() {
+        int[][] positions = {{-1, MIN_Y, -1}, {-16, -1, 15}, {17, MAX_Y, -17}, {MIN_XZ, 0, MAX_XZ}};
+        for (int[] position : positions) {
+            int key = BlockKeys.localKey(position[0], position[1], position[2]);
+            assertEquals(position[0] & 15, BlockKeys.localX(key));
+            assertEquals(position[1], BlockKeys.localY(key));
+            assertEquals(position[2] & 15, BlockKeys.localZ(key));
+        }
+    }
+
+    private static void assertRoundTrip(int x, int y, int z) {
+        long key = BlockKeys.pack(x, y, z);
+        assertEquals(x, BlockKeys.unpackX(key), "x of " + x + " " + y + " " + z);
+        assertEquals(y, BlockKeys.unpackY(key), "y of " + x + " " + y + " " + z);
+        assertEquals(z, BlockKeys.unpackZ(key), "z of " + x + " " + y + " " + z);
+    }
+}
@@ -0,0 +1,105 @@
+package org.allaymc.blocklocker.index;
+
+import org.allaymc.blocklocker.data.Access;
+import org.allaymc.blocklocker.data.ProtectedBlock;
+import org.allaymc.blocklocker.data.TrustSet;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChunkProtectionsTest {
+
+    private static final String WORLD = "world";
+    private static final UUID OWNER = UUID.fromString("00000000-0000-0000-0000-000000000001");
+    private static final UUID STRANGER = UUID.fromString("00000000-0000-0000-0000-000000000002");
+
+    @Test
+    void aliasRowsPointToTheirAnchorAndAreNotCounted() {
+        ChunkProtections chunk = new ChunkProtections(-1, -1);
+        long anchor = BlockKeys.pack(-16, 64, -16);
+        chunk.putAnchor(-16, 64, -16, 0, 1L, ChunkProtections.HOPPERS, TrustSet.EMPTY, new long[]{BlockKeys.pack(-16, 65, -16)});
+        chunk.putAlias(-16, 65, -16, anchor);
+
+        int anchorRow = chunk.find(-16, 64, -16);
+        int aliasRow = chunk.find(-16, 65, -16);
+        assertTrue(anchorRow >= 0);
+        assertTrue(aliasRow >= 0);
+        assertFalse(chunk.isAlias(anchorRow));
+        assertTrue(chunk.isAlias(aliasRow));
+        assertEquals(anchor, chunk.anchorOf(aliasRow));
+        assertEquals(1, chunk.size());
+
+        int[] visited = new int[1];
+        chunk.forEachAnchor((anchorChunk, row) -> visited[0]++);
+        assertEquals(1, visited[0]);
+    }
+
+    @Test
+    void removingTheLastRowOfAColumnClearsItsBit() {
+        ChunkProtections chunk = new ChunkProtections(0, 0);
+        long anchor = BlockKeys.pack(3, 10, 4);
+        chunk.putAnchor(3, 10, 4, 0, 1L, (byte) 0, TrustSet.EMPTY, ProtectedBlock.NO_MEMBERS);
+        chunk.putAlias(3, 11, 4, anchor);
+
+        chunk.removeRow(chunk.find(3, 11, 4));
+        assertTrue(chunk.mayContainColumn(3, 4));
+        chunk.removeRow(chunk.find(3, 10, 4));
+        assertFalse(chunk.mayContainColumn(3, 4));
+        assertTrue(chunk.isEmpty());
+        assertEquals(0, chunk.size());
+    }
+
+    @Test
+    void anchorOverwritingAnAliasIsCountedOnce() {
+        ChunkProtections chunk = new ChunkProtections(0, 0);
+        chunk.putAlias(1, 1, 1, BlockKeys.pack(1, 2, 1));
+        chunk.putAnchor(1, 1, 1, 0, 1L, (byte) 0, TrustSet.EMPTY, ProtectedBlock.NO_MEMBERS);
+        chunk.putAnchor(1, 1, 1, 0, 2L, (byte) 0, TrustSet.EMPTY, ProtectedBlock.NO_MEMBERS);
+        assertEquals(1, chunk.size());
+    }
+
+    @Test
+    void multiBlockAnchorAcrossAChunkBorderResolvesFromEitherHalf() {
+        ProtectionIndex index = new ProtectionIndex();
+        // A double chest whose halves sit in chunks -1 and 0
+        ProtectedBlock chest = new ProtectedBlock(WORLD, 0, -1, 64, 5, OWNER, "owner")
+                .withStructure(-1, 64, 5, new long[]{BlockKeys.pack(0, 64, 5)});
+        index.put(chest);
+
+        ProtectedBlock fromMember = index.get(WORLD, 0, 0, 64, 5);
+        assertEquals(-1, fromMember.getX());
+        assertEquals(1, fromMember.getMembers().length);
+        assertEquals(Access.OWNER, index.access(WORLD, 0, 0, 64, 5, OWNER));
+        assertEquals(Access.DENIED, index.access(WORLD, 0, 0, 64, 5, STRANGER));
+        assertEquals(1, index.size());
+        assertTrue(index.getInChunk(WORLD, 0, 0, 0).isEmpty());
+        assertEquals(1, index.getInChunk(WORLD, 0, -1, 0).size());
+
+        ProtectedBlock removed = index.remove(WORLD, 0, 0, 64, 5);
+        assertEquals(-1, removed.getX());
+        assertFalse(index.contains(WORLD, 0, -1, 64, 5));
+        assertFalse(index.contains(WORLD, 0, 0, 64, 5));
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    void protectionOverAMemberDisplacesTheWholeStructure() {
+        ProtectionIndex index = new ProtectionIndex();
+        ProtectedBlock door = new ProtectedBlock(WORLD, 0, 8, 70, 8, OWNER, "owner")
+                .withStructure(8, 70, 8, new long[]{BlockKeys.pack(8, 71, 8)});
+        index.put(door);
+
+        List<ProtectedBlock> displaced = index.put(new ProtectedBlock(WORLD, 0, 8, 71, 8, STRANGER, "stranger"));
+        assertEquals(1, displaced.size());
+        assertEquals(70, displaced.get(0).getY());
+        assertNull(index.get(WORLD, 0, 8, 70, 8));
+        assertEquals(STRANGER, index.get(WORLD, 0, 8, 71, 8).getOwnerUuid());
+        assertEquals(1, index.size());
+    }
+}
@@ -0,0 +1,75 @@
+package org.allaymc.blocklocker.index;
+
+import org.allaymc.blocklocker.data.ProtectedBlock;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProtectionIndexTest {
+
+    private static final String WORLD = "world";
+    private static final UUID OWNER = UUID.fromString("00000000-0000-0000-0000-000000000001");
+
+    // Blocks on both sides of the chunk borders at 0 and 16 and the region borders at -512 and 0
+    private static final int[] EDGES = {-513, -512, -511, -17, -16, -1, 0, 1, 15, 16, 511, 512};
+
+    @Test
+    void boxAcrossChunkAndRegionBordersFindsExactlyTheBlocksInside() {
+        ProtectionIndex index = new ProtectionIndex();
+        List<long[]> all = new ArrayList<>();
+        for (int x : EDGES) {
+            for (int z : EDGES) {
+                index.put(new ProtectedBlock(WORLD, 0, x, 64, z, OWNER, "owner"));
+                all.add(new long[]{x, z});
+            }
+        }
+
+        int[][] boxes = {
+                {-1, 0, -1, 0},
+                {-16, -1, 0, 16},
+                {-513, -511, -513, -511},
+                {-512, 512, -1, 1},
+                {-600, 600, -600, 600},
+                {15, 16, -17, -16},
+        };
+        for (int[] box : boxes) {
+            List<ProtectedBlock> found = index.getInBox(WORLD, 0, box[0], 0, box[2], box[1], 255, box[3]);
+            long expected = all.stream()
+                    .filter(p -> p[0] >= box[0] && p[0] <= box[1] && p[1] >= box[2] && p[1] <= box[3])
+                    .count();
+            assertEquals(expected, found.size(), "box " + box[0] + ".." + box[1] + " x " + box[2] + ".." + box[3]);
+            for (ProtectedBlock block : found) {
+                assertTrue(block.getX() >= box[0] && block.getX() <= box[1]);
+                assertTrue(block.getZ() >= box[2] && block.getZ() <= box[3]);
+            }
+        }
+    }
+
+    @Test
+    void boxBoundsAreInclusiveAndMayBeSwapped() {
+        ProtectionIndex index = new ProtectionIndex();
+        index.put(new ProtectedBlock(WORLD, 0, -1, -64, 16, OWNER, "owner"));
+        index.put(new ProtectedBlock(WORLD, 0, -1, -63, 16, OWNER, "owner"));
+
+        assertEquals(1, index.getInBox(WORLD, 0, -1, -64, 16, -1, -64, 16).size());
+        assertEquals(2, index.getInBox(WORLD, 0, 0, -63, 17, -1, -64, 16).size());
+        assertTrue(index.getInBox(WORLD, 0, 0, -64, 16, 15, 0, 31).isEmpty());
+        assertTrue(index.getInBox("other", 0, -1, -64, 16, -1, -64, 16).isEmpty());
+    }
+
+    @Test
+    void boxReturnsAMultiBlockProtectionOnlyByItsAnchor() {
+        ProtectionIndex index = new ProtectionIndex();
+        // Anchor in region -1, member across the border in region 0
+        index.put(new ProtectedBlock(WORLD, 0, -1, 64, 0, OWNER, "owner")
+                .withStructure(-1, 64, 0, new long[]{BlockKeys.pack(0, 64, 0)}));
+
+        assertEquals(1, index.getInBox(WORLD, 0, -1, 64, 0, 0, 64, 0).size());
+        assertTrue(index.getInBox(WORLD, 0, 0, 64, 0, 0, 64, 0).isEmpty());
+    }
+}
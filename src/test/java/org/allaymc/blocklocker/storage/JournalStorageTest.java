@@ -0,0 +1,256 @@
+package org.allaymc.blocklocker.storage;
+
+import org.allaymc.blocklocker.config.BlockLockerConfig;
+import org.allaymc.blocklocker.data.ProtectedBlock;
+import org.allaymc.blocklocker.index.BlockKeys;
+import org.allaymc.blocklocker.index.DimensionIndex;
+import org.allaymc.blocklocker.index.ProtectionIndex;
+import org.allaymc.blocklocker.index.Region;
+import org.allaymc.blocklocker.metrics.BlockLockerMetrics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.helpers.NOPLogger;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+class JournalStorageTest {
+
+    private static final String WORLD = "world";
+    private static final UUID OWNER = UUID.fromString("00000000-0000-0000-0000-000000000001");
+
+    @TempDir
+    Path dataFolder;
+
+    @Test
+    void replayStopsAtARecordTruncatedMidLine() throws IOException {
+        ProtectionIndex crashedIndex = new ProtectionIndex();
+        JournalStorage crashed = open("regions", 300, crashedIndex);
+        lock(crashed, crashedIndex, block(1, 64, 1));
+        crashed.compact();
+        lock(crashed, crashedIndex, block(2, 64, 2));
+        lock(crashed, crashedIndex, block(3, 64, 3));
+        // Never closed, so nothing but the journal holds the last two changes
+        Path journal = awaitJournalLines(2);
+
+        // Cut the last record in half, as a crash in the middle of a write would
+        long length = Files.size(journal);
+        try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.WRITE)) {
+            channel.truncate(length - 20);
+        }
+
+        ProtectionIndex index = new ProtectionIndex();
+        JournalStorage storage = open("regions", 300, index);
+        assertTrue(isProtected(storage, index, 1, 64, 1));
+        assertTrue(isProtected(storage, index, 2, 64, 2));
+        assertFalse(isProtected(storage, index, 3, 64, 3));
+
+        // New records must follow the last complete one, not the torn tail
+        lock(storage, index, block(4, 64, 4));
+        storage.close();
+
+        ProtectionIndex reloaded = new ProtectionIndex();
+        JournalStorage reopened = open("regions", 300, reloaded);
+        assertTrue(isProtected(reopened, reloaded, 2, 64, 2));
+        assertFalse(isProtected(reopened, reloaded, 3, 64, 3));
+        assertTrue(isProtected(reopened, reloaded, 4, 64, 4));
+        reopened.close();
+    }
+
+    @Test
+    void compactWritesRegionsAndStartsAnEmptyJournal() throws IOException {
+        ProtectionIndex index = new ProtectionIndex();
+        JournalStorage storage = open("regions", 300, index);
+        // A double chest across the border of regions -1 and 0
+        ProtectedBlock chest = block(-1, 70, 8).withStructure(-1, 70, 8, new long[]{BlockKeys.pack(0, 70, 8)});
+        lock(storage, index, chest);
+        lock(storage, index, block(100, 64, 100));
+        awaitJournalLines(2);
+
+        storage.compact();
+        assertEquals(0, storage.getJournalSize());
+        assertEquals(0, storage.getDirtyRegions());
+        Path journal = journalFile();
+        assertEquals(0, Files.size(journal));
+
+        storage.append(JournalRecord.unlock(WORLD, 0, 100, 64, 100));
+        index.remove(WORLD, 0, 100, 64, 100);
+        storage.close();
+
+        ProtectionIndex reloaded = new ProtectionIndex();
+        JournalStorage reopened = open("regions", 300, reloaded);
+        assertTrue(isProtected(reopened, reloaded, 0, 70, 8));
+        ProtectedBlock fromMember = reloaded.get(WORLD, 0, 0, 70, 8);
+        assertEquals(-1, fromMember.getX());
+        assertTrue(isProtected(reopened, reloaded, -1, 70, 8));
+        assertFalse(isProtected(reopened, reloaded, 100, 64, 100));
+        assertEquals(1, reloaded.getOwners().size());
+        reopened.close();
+    }
+
+    @Test
+    void pinnedRegionIsKeptAndReloadsAfterEviction() throws IOException {
+        ProtectionIndex index = new ProtectionIndex();
+        JournalStorage storage = open("regions", 0, index);
+        lock(storage, index, block(40, 64, 40));
+
+        Region pinned = storage.pinLoaded(WORLD, 0, 40 >> 4, 40 >> 4);
+        storage.evictIdleRegions();
+        DimensionIndex dimension = index.getDimension(WORLD, 0);
+        assertSame(pinned, dimension.getRegionOfChunk(40 >> 4, 40 >> 4));
+        assertTrue(index.contains(WORLD, 0, 40, 64, 40));
+
+        pinned.unpin();
+        storage.evictIdleRegions();
+        assertNull(dimension.getRegionOfChunk(40 >> 4, 40 >> 4));
+        assertFalse(dimension.isReady(40, 40));
+        assertFalse(index.contains(WORLD, 0, 40, 64, 40));
+
+        // Written on eviction, so it comes back from the region file
+        storage.ensureLoaded(WORLD, 0, 40 >> 4, 40 >> 4);
+        assertTrue(index.contains(WORLD, 0, 40, 64, 40));
+        assertTrue(dimension.isReady(40, 40));
+        storage.close();
+    }
+
+    @Test
+    void migratesBetweenRegionsJsonAndSqlite() throws IOException {
+        ProtectionIndex index = new ProtectionIndex();
+        JournalStorage storage = open("regions", 300, index);
+        lock(storage, index, block(-600, 64, 5));
+        lock(storage, index, block(5, 64, 5).withStructure(5, 64, 5, new long[]{BlockKeys.pack(5, 65, 5)}));
+        storage.close();
+
+        String[][] steps = {
+                {"json", "regions.migrated"},
+                {"sqlite", "regions-json.migrated"},
+                {"regions", "database.migrated"},
+        };
+        for (int i = 0; i < steps.length; i++) {
+            String[] step = steps[i];
+            ProtectionIndex migrated = new ProtectionIndex();
+            JournalStorage next = open(step[0], 300, migrated);
+            assertTrue(Files.exists(dataFolder.resolve(step[1])), step[1]);
+            assertTrue(isProtected(next, migrated, -600, 64, 5), step[0]);
+            assertTrue(isProtected(next, migrated, 5, 65, 5), step[0]);
+            assertEquals(2 + i, migrated.getOwners().size(), step[0]);
+
+            // A change made after the migration must survive the next one
+            lock(next, migrated, block(step[0].length(), 80, 0));
+            next.close();
+        }
+
+        ProtectionIndex last = new ProtectionIndex();
+        JournalStorage reopened = open("regions", 300, last);
+        for (String[] step : steps) {
+            assertTrue(isProtected(reopened, last, step[0].length(), 80, 0), step[0]);
+        }
+        reopened.close();
+    }
+
+    @Test
+    void refusesToStartWhenTwoBackendsHoldData() throws IOException {
+        ProtectionIndex index = new ProtectionIndex();
+        JournalStorage storage = open("regions", 300, index);
+        lock(storage, index, block(1, 64, 1));
+        storage.close();
+        open("json", 300).close();
+        Files.move(dataFolder.resolve("regions.migrated"), dataFolder.resolve("regions"));
+
+        JournalStorage conflicting = storage("json", 300, new ProtectionIndex());
+        try {
+            conflicting.load();
+            fail("Expected the second backend to be refused");
+        } catch (IOException expected) {
+            assertFalse(conflicting.isOpen());
+        } finally {
+            conflicting.close();
+        }
+    }
+
+    private JournalStorage open(String backend, int evictAfterSeconds) throws IOException {
+        return open(backend, evictAfterSeconds, new ProtectionIndex());
+    }
+
+    private JournalStorage open(String backend, int evictAfterSeconds, ProtectionIndex index) throws IOException {
+        JournalStorage storage = storage(backend, evictAfterSeconds, index);
+        storage.load();
+        return storage;
+    }
+
+    private JournalStorage storage(String backend, int evictAfterSeconds, ProtectionIndex index) {
+        BlockLockerConfig.Storage config = new BlockLockerConfig.Storage();
+        config.setBackend(backend);
+        config.setRegionEvictAfterSeconds(evictAfterSeconds);
+        config.setLoadThreads(2);
+        return new JournalStorage(dataFolder, NOPLogger.NOP_LOGGER, index, new BlockLockerMetrics(), config);
+    }
+
+    private static ProtectedBlock block(int x, int y, int z) {
+        return new ProtectedBlock(WORLD, 0, x, y, z, OWNER, "owner");
+    }
+
+    /**
+     * Lock a block the way the protection manager does: pin, change the index, journal.
+     */
+    private static void lock(JournalStorage storage, ProtectionIndex index, ProtectedBlock block) throws IOException {
+        Region[] pinned = storage.pinAround(WORLD, 0, block.getX(), block.getZ());
+        try {
+            index.put(block);
+            storage.append(JournalRecord.lock(block));
+        } finally {
+            JournalStorage.unpin(pinned);
+        }
+    }
+
+    private static boolean isProtected(JournalStorage storage, ProtectionIndex index, int x, int y, int z)
+            throws IOException {
+        storage.ensureLoadedAround(WORLD, 0, x, z);
+        return index.contains(WORLD, 0, x, y, z);
+    }
+
+    private Path journalFile() throws IOException {
+        try (var files = Files.list(dataFolder)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(".journal"))
+                    .findFirst()
+                    .orElseThrow();
+        }
+    }
+
+    private Path awaitJournalLines(int lines) throws IOException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            Path journal = journalFile();
+            byte[] content = Files.readAllBytes(journal);
+            int count = 0;
+            for (byte b : content) {
+                if (b == '\n') {
+                    count++;
+                }
+            }
+            if (count >= lines) {
+                return journal;
+            }
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        fail("Journal did not reach " + lines + " records");
+        return null;
+    }
+}
@@ -0,0 +1,100 @@
+package org.allaymc.blocklocker.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LongObjectHashMapTest {
+
+    @Test
+    void keepsEntriesAcrossResizes() {
+        LongObjectHashMap<String> map = new LongObjectHashMap<>(2);
+        for (long key = -5_000; key < 5_000; key++) {
+            assertNull(map.put(key * 31, "v" + key));
+        }
+        assertEquals(10_000, map.size());
+        for (long key = -5_000; key < 5_000; key++) {
+            assertEquals("v" + key, map.get(key * 31));
+        }
+        assertNull(map.get(7));
+    }
+
+    @Test
+    void putReplacesWithoutGrowing() {
+        LongObjectHashMap<String> map = new LongObjectHashMap<>();
+        assertNull(map.put(42, "a"));
+        assertEquals("a", map.put(42, "b"));
+        assertEquals(1, map.size());
+        assertEquals("b", map.get(42));
+        assertThrows(NullPointerException.class, () -> map.put(1, null));
+    }
+
+    @Test
+    void removeKeepsLaterEntriesOfTheProbeRunReachable() {
+        // Deletion shifts the rest of a probe run back instead of leaving a tombstone, so every
+        // key that collided with a removed one must still be found, and the freed slots reused
+        LongObjectHashMap<Long> map = new LongObjectHashMap<>(64);
+        int count = 60;
+        for (long key = 0; key < count; key++) {
+            map.put(key << 40, key);
+        }
+        for (long key = 0; key < count; key += 2) {
+            assertEquals(key, map.remove(key << 40));
+        }
+        assertEquals(count / 2, map.size());
+        for (long key = 0; key < count; key++) {
+            if ((key & 1) == 0) {
+                assertFalse(map.containsKey(key << 40));
+            } else {
+                assertEquals(key, map.get(key << 40));
+            }
+        }
+        assertNull(map.remove(0));
+
+        for (long key = 0; key < count; key += 2) {
+            assertNull(map.put(key << 40, -key));
+        }
+        assertEquals(count, map.size());
+        for (long key = 0; key < count; key++) {
+            assertEquals((key & 1) == 0 ? -key : key, map.get(key << 40));
+        }
+    }
+
+    @Test
+    void matchesHashMapUnderRandomChurn() {
+        LongObjectHashMap<Integer> map = new LongObjectHashMap<>();
+        Map<Long, Integer> expected = new HashMap<>();
+        Random random = new Random(1);
+        for (int i = 0; i < 200_000; i++) {
+            // A small key space so that removals hit occupied runs often
+            long key = random.nextInt(4_096) - 2_048L;
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                assertEquals(expected.put(key, i), map.put(key, i));
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        expected.forEach((key, value) -> assertEquals(value, map.get(key)));
+        map.forEach((key, value) -> assertEquals(expected.get(key), value));
+    }
+
+    @Test
+    void clearEmptiesTheMap() {
+        LongObjectHashMap<String> map = new LongObjectHashMap<>();
+        map.put(1, "a");
+        map.put(-1, "b");
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(1));
+        assertTrue(map.values().isEmpty());
+    }
+}